@@ -1,26 +1,38 @@
 package cli;
 
+import java.awt.Dimension;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Scanner;
 
 import javax.imageio.ImageIO;
 
+import cli.parse.AutotuneArgs;
 import cli.parse.BenchmarkArgs;
 import cli.parse.CliUtil;
 import cli.parse.DenoiseArgs;
 import cli.parse.EvalArgs;
 import cli.parse.NoiseArgs;
+import core.acp.AutoTuner;
 import core.acp.Benchmark;
+import core.acp.DenoiseOptions;
+import core.acp.DenoiseReport;
 import core.acp.ImageDenoiser;
 import core.eval.ImageQualityMetrics;
 import core.image.Album;
 import core.image.ImageFile;
+import core.image.NoiseGenerator;
+import core.image.PngEncoder;
+import core.patch.AggregationWindow;
 
 /**
  * Classe principale de l'application en ligne de commande pour le traitement d'images.
@@ -59,6 +71,7 @@ public class Main {
                     case "denoise" -> runDenoise(DenoiseArgs.parse(rest));
                     case "eval" -> runEval(EvalArgs.parse(rest));
                     case "benchmark" -> runBenchmark(BenchmarkArgs.parse(rest));
+                    case "autotune" -> runAutotune(AutotuneArgs.parse(rest));
                     case "--help", "-h", "help" -> CliUtil.printGlobalHelp();
 
                     default -> throw new IllegalArgumentException("Commande inconnue : " + cmd);
@@ -152,7 +165,7 @@ public class Main {
                       CliUtil.defaultOutNoise(input, sigma) : Paths.get(outputStr);
         
         try {
-            NoiseArgs args = new NoiseArgs(input, sigma, output);
+            NoiseArgs args = new NoiseArgs(input, sigma, output, null, null);
             runNoise(args);
         } catch (IOException e) {
             System.err.println("Erreur d'entrée/sortie: " + e.getMessage());
@@ -198,7 +211,7 @@ public class Main {
         double sigma;
         if (sigmaStr.isEmpty()) {
             // Essayer d'extraire sigma du nom du fichier
-            sigma = DenoiseArgs.parse(new String[]{"-i", inputStr}).getSigma();
+            sigma = DenoiseArgs.parse(new String[]{"-i", inputStr}).getOptions().getSigmas()[0];
         } else {
             try {
                 sigma = Double.parseDouble(sigmaStr);
@@ -246,8 +259,14 @@ public class Main {
         }
         
         try {
-            DenoiseArgs args = new DenoiseArgs(input, output, isGlobal, threshold, shrink, sigma, patchPercent);
-            runDenoise(args);
+            DenoiseOptions options = DenoiseOptions.builder()
+                .global(isGlobal)
+                .threshold(DenoiseArgs.parseThreshold(threshold))
+                .shrink(shrink != null ? shrink : "v")
+                .sigmas(sigma)
+                .patchPercent(patchPercent)
+                .build();
+            runDenoise(new DenoiseArgs(input, output, options));
         } catch (IllegalArgumentException e) {
             System.err.println("Erreur d'argument: " + e.getMessage());
             System.exit(1);
@@ -349,12 +368,29 @@ public class Main {
         Album album = new Album(pathStr);
         System.out.println(album);
 
-        List<ImageFile> imgArray = album.getAlbum();
+        // Graine explicite : bruit reproductible, propre à chaque image (dérivé de son nom)
+        NoiseGenerator noise = a.hasSeed() ? new NoiseGenerator(a.getSeed()) : null;
+        // Niveau de compression explicite : écriture directe des octets, compression parallèle
+        PngEncoder encoder = a.getEncoder();
         
-        // Pour chaque image de l'album, ajouter du bruit et l'enregistrer
-        for (ImageFile img : imgArray) {
+        // Pour chaque image de l'album, ajouter du bruit et l'enregistrer (une seule image décodée à la fois)
+        // Une image illisible est signalée et ignorée : le reste de l'album est traité
+        int skipped = 0;
+        for (Iterator<ImageFile> images = album.iterator(); images.hasNext(); ) {
+            ImageFile img;
+            try {
+                img = images.next();
+            } catch (UncheckedIOException e) {
+                System.err.println(e.getMessage() + " (" + e.getCause().getMessage() + "), image ignorée");
+                skipped++;
+                continue;
+            }
             // Créer une image bruitée avec le sigma spécifié
-            img.noisify(a.getSigma());
+            if (noise != null) {
+                noise.forImage(img.getName()).apply(img, a.getSigma());
+            } else {
+                img.noisify(a.getSigma());
+            }
             
             // Chemin de sortie pour cette image
             Path outputPath;
@@ -396,9 +432,12 @@ public class Main {
             }
             
             // Sauvegarder l'image bruitée
-            img.saveImage(outputPath.toString());
+            img.saveImage(outputPath.toString(), encoder);
             System.out.println("Image bruitée sauvegardée: " + outputPath);
         }
+        if (skipped > 0) {
+            System.err.println(skipped + " image(s) illisible(s) ignorée(s) sur " + album.size());
+        }
     }
 
     /**
@@ -409,6 +448,7 @@ public class Main {
      */
     private static void runDenoise(DenoiseArgs args) {
         try {
+            DenoiseOptions options = args.getOptions();
             File inputFile = args.getInput().toFile();
             
             if (inputFile.isDirectory()) {
@@ -434,39 +474,18 @@ public class Main {
                     String inputPath = file.getAbsolutePath();
                     String outputPath = outputDir.getAbsolutePath() + "/" + 
                                       file.getName().replaceFirst("[.][^.]+$", "") + 
-                                      "_denoised_" + (args.isGlobal() ? "global" : "local") + 
-                                      "_" + args.getThreshold() + 
-                                      (args.getShrink() != null ? "_" + args.getShrink() : "") + 
+                                      "_denoised_" + (options.isGlobal() ? "global" : "local") + 
+                                      "_" + options.getThreshold() + "_" + options.getShrink() + 
                                       ".png";
                     
                     System.out.println("Traitement de : " + file.getName());
                     
                     // Débruiter l'image
-                    ImageDenoiser.ImageDen(
-                        inputPath,
-                        outputPath,
-                        args.isGlobal(),
-                        args.getThreshold(),
-                        args.getShrink(),
-                        args.getSigma(),
-                        args.getPatchPercent()
-                    );
-                    
-                    System.out.println("Image débruitée sauvegardée dans: " + outputPath);
+                    denoiseFile(options, inputPath, Paths.get(outputPath));
                 }
             } else {
                 // Traiter une seule image
-                ImageDenoiser.ImageDen(
-                    args.getInput().toString(),
-                    args.getOutput().toString(),
-                    args.isGlobal(),
-                    args.getThreshold(),
-                    args.getShrink(),
-                    args.getSigma(),
-                    args.getPatchPercent()
-                );
-                
-                System.out.println("Image débruitée sauvegardée dans: " + args.getOutput());
+                denoiseFile(options, args.getInput().toString(), args.getOutput());
             }
                 
         } catch (Exception e) {
@@ -475,6 +494,65 @@ public class Main {
         }
     }
     
+    /**
+     * Débruite une image avec les paramètres donnés.
+     * Si plusieurs valeurs de sigma sont données, une seule ACP est calculée et une image
+     * est sauvegardée par valeur, avec le suffixe {@code _s<sigma>}.
+     * 
+     * @param options Paramètres du débruitage
+     * @param inputPath Chemin de l'image à débruiter
+     * @param output Chemin de l'image débruitée
+     * @throws IOException si une erreur survient lors de la lecture/écriture des fichiers
+     */
+    private static void denoiseFile(DenoiseOptions options, String inputPath, Path output) throws IOException {
+        double[] sigmas = options.getSigmas();
+        List<String> outputPaths = new ArrayList<>();
+        for (double sigma : sigmas) {
+            outputPaths.add(sigmas.length > 1 ? CliUtil.withSigmaSuffix(output, sigma).toString() : output.toString());
+        }
+        // Une seule ACP (ou un seul regroupement), quel que soit le nombre de valeurs de sigma
+        DenoiseReport report = ImageDenoiser.ImageDen(inputPath, outputPaths, options);
+        printReport(report);
+        for (String outputPath : outputPaths) {
+            System.out.println("Image débruitée sauvegardée dans: " + outputPath);
+        }
+    }
+    
+    /**
+     * Affiche le compte rendu d'un débruitage : patchs écartés, regroupés ou stockés selon le mode.
+     * 
+     * @param report compte rendu renvoyé par {@link ImageDenoiser#ImageDen(String, List, DenoiseOptions)}
+     */
+    private static void printReport(DenoiseReport report) {
+        if (report.isBlockMatching()) {
+            System.out.println("Groupes de patchs semblables : " + report.getGroupCount()
+                               + " (" + report.getPatchCount() + " patchs)");
+        }
+        if (report.isClustered()) {
+            System.out.println("Groupes de patchs : " + report.getClusterCount() + " (demandés : "
+                               + report.getRequestedClusterCount() + ", " + report.getPatchCount() + " patchs)");
+        }
+        if (report.getFlatPatchCount() > 0) {
+            System.out.println("Patchs uniformes remplacés par leur moyenne : "
+                               + report.getFlatPatchCount() + " / " + report.getPatchCount());
+        }
+        if (report.isStriped()) {
+            System.out.println(String.format(Locale.ROOT, "Image %dx%d lue par bandes de %d lignes (%d bandes décodées)",
+                               report.getWidth(), report.getHeight(), report.getStripHeight(),
+                               report.getDecodedStripCount()));
+        }
+        if (report.isOffHeap()) {
+            System.out.println(String.format(Locale.ROOT, "Patchs stockés hors tas : %d (%.1f Mo, %s)",
+                               report.getPatchCount(), report.getOffHeapByteSize() / (1024.0 * 1024.0),
+                               report.getOffHeapStorage().name().toLowerCase(Locale.ROOT)));
+        }
+        if (report.isDeduplicated()) {
+            System.out.println(String.format(Locale.ROOT, "Patchs identiques débruités une seule fois : %d / %d (%.1f %%)",
+                               report.getDuplicatePatchCount(), report.getPatchCount(),
+                               100.0 * report.getDuplicatePatchCount() / Math.max(1, report.getPatchCount())));
+        }
+    }
+    
     /**
      * Fonction récursive pour trouver tous les fichiers images dans un dossier et ses sous-dossiers.
      * 
@@ -574,6 +652,55 @@ public class Main {
         }
     }
 
+    /**
+     * Exécute la recherche automatique des paramètres de débruitage, puis débruite l'image
+     * en pleine résolution avec la meilleure configuration trouvée.
+     * 
+     * @param args Arguments pour l'opération autotune
+     */
+    private static void runAutotune(AutotuneArgs args) {
+        try {
+            // Aperçu décodé directement à échelle réduite (et limité à la zone demandée) : l'image entière n'est pas chargée
+            String inputPath = args.getInput().toString();
+            Dimension size = ImageFile.readSize(inputPath);
+            Rectangle region = args.getRegion() != null ? args.getRegion().intersection(new Rectangle(size)) : new Rectangle(size);
+            if (region.isEmpty()) {
+                throw new IllegalArgumentException("La zone est hors de l'image (" + size.width + "x" + size.height + ")");
+            }
+            int factor = AutoTuner.previewFactor(region.width, region.height, args.getMaxDimension());
+            ImageFile image = new ImageFile(inputPath, region, factor);
+            AggregationWindow window = AggregationWindow.parse(args.getWindow());
+            AutoTuner tuner = new AutoTuner(image, args.getSigma(), args.getMaxDimension(), window);
+            System.out.println("Recherche sur un aperçu de " + tuner.getPreview().getWidth() + "x" 
+                               + tuner.getPreview().getHeight() + " pixels...");
+            AutoTuner.Result best = tuner.tune();
+            System.out.println("Meilleure configuration (" + tuner.getDecompositionCount() + " ACP évaluées) : " + best);
+
+            Path output = args.getOutput();
+            if (output == null) {
+                output = CliUtil.defaultOutDenoise(args.getInput(), best.isGlobal() ? "global" : "local",
+                                                   best.getThreshold(), "_" + best.getShrink(), ".png");
+            }
+            // Le pourcentage est relatif à la zone : même taille de patch en pixels sur l'image entière
+            double patchPercent = args.getRegion() == null ? best.getPatchPercent()
+                : Math.min(1.0, best.getPatchPercent() * Math.min(region.width, region.height) / Math.min(size.width, size.height));
+            DenoiseOptions options = DenoiseOptions.builder()
+                .global(best.isGlobal())
+                .threshold(best.getThreshold())
+                .shrink(best.getShrink())
+                .sigmas(args.getSigma())
+                .patchPercent(patchPercent)
+                .window(window)
+                .encoder(args.getEncoder())
+                .build();
+            printReport(ImageDenoiser.ImageDen(inputPath, List.of(output.toString()), options));
+            System.out.println("Image débruitée sauvegardée dans: " + output);
+        } catch (Exception e) {
+            System.err.println("Erreur lors de la recherche des paramètres: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
     private static void runBenchmark(BenchmarkArgs args) {
         try {
             // Créer le répertoire de sortie s'il n'existe pas
@@ -0,0 +1,183 @@
+package cli.parse;
+
+import java.awt.Rectangle;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import core.acp.AutoTuner;
+import core.image.PngEncoder;
+
+/**
+ * Gestion des arguments de la commande "autotune" qui recherche automatiquement les paramètres
+ * de débruitage d'une image puis applique la meilleure configuration.
+ *
+ * Les arguments reconnus en ligne de commande sont :
+ * <ul>
+ *   <li>--input, -i : chemin de l'image à débruiter (obligatoire)</li>
+ *   <li>--output, -o : chemin de destination (facultatif, déduit de la configuration retenue sinon)</li>
+ *   <li>--sigma, -s : écart type du bruit (défaut : déduit du nom du fichier ou 30.0)</li>
+ *   <li>--maxDim, -md : plus grande dimension de l'aperçu utilisé pour la recherche (défaut : 256)</li>
+ *   <li>--region, -rg : zone x,y,largeur,hauteur de l'image sur laquelle faire la recherche (défaut : image entière)</li>
+ *   <li>--window, -wd : fenêtre de pondération des patchs, pour la recherche et l'image finale ("flat", "linear", "hann" ou "kaiser", défaut : "flat")</li>
+ *   <li>--compression, -cl : niveau de compression PNG de l'image débruitée, de 0 (stockage) à 9 (facultatif)</li>
+ *   <li>--help, -h : affiche l'aide et quitte le programme</li>
+ * </ul>
+ */
+public final class AutotuneArgs {
+    private final Path input;
+    private final Path output;
+    private final double sigma;
+    private final int maxDimension;
+    private final Rectangle region;
+    private final String window;
+    private final PngEncoder encoder;
+
+    /**
+     * Crée une nouvelle instance AutotuneArgs.
+     *
+     * @param input chemin vers l'image à débruiter
+     * @param output chemin où l'image débruitée sera sauvegardée (null pour un chemin par défaut)
+     * @param sigma écart type du bruit
+     * @param maxDimension plus grande dimension de l'aperçu utilisé pour la recherche
+     * @param region zone de l'image sur laquelle faire la recherche (null pour l'image entière)
+     * @param window fenêtre de pondération des patchs ("flat", "linear", "hann" ou "kaiser" ; null pour "flat")
+     * @param compression niveau de compression PNG de l'image débruitée (null pour l'écriture par défaut d'ImageIO)
+     * @throws IllegalArgumentException si les paramètres sont invalides
+     */
+    public AutotuneArgs(Path input, Path output, double sigma, int maxDimension, Rectangle region,
+                        String window, Integer compression) {
+        if (input == null || !input.toFile().isFile()) {
+            throw new IllegalArgumentException("Le chemin d'entrée doit être un fichier existant: " + input);
+        }
+        if (!DenoiseArgs.isImageFile(input)) {
+            throw new IllegalArgumentException("Format d'image non supporté pour le fichier d'entrée: " + input);
+        }
+        if (sigma <= 0) {
+            throw new IllegalArgumentException("Sigma doit être un nombre strictement positif");
+        }
+        if (maxDimension <= 0) {
+            throw new IllegalArgumentException("La dimension de l'aperçu doit être un entier strictement positif");
+        }
+        if (region != null && (region.x < 0 || region.y < 0 || region.width <= 0 || region.height <= 0)) {
+            throw new IllegalArgumentException("La zone doit avoir une origine positive et des dimensions strictement positives");
+        }
+        this.input = input;
+        this.output = output;
+        this.sigma = sigma;
+        this.maxDimension = maxDimension;
+        this.region = region == null ? null : new Rectangle(region);
+        this.window = window != null ? window : "flat";
+        this.encoder = compression != null ? new PngEncoder(compression) : null;   // niveau vérifié par l'encodeur
+    }
+
+    /**
+     * @return le chemin vers l'image à débruiter
+     */
+    public Path getInput() { return input; }
+
+    /**
+     * @return le chemin de sortie, ou null s'il doit être déduit de la configuration retenue
+     */
+    public Path getOutput() { return output; }
+
+    /**
+     * @return l'écart type du bruit
+     */
+    public double getSigma() { return sigma; }
+
+    /**
+     * @return la plus grande dimension de l'aperçu utilisé pour la recherche
+     */
+    public int getMaxDimension() { return maxDimension; }
+
+    /**
+     * @return la zone de l'image sur laquelle faire la recherche (copie), ou null pour l'image entière
+     */
+    public Rectangle getRegion() { return region == null ? null : new Rectangle(region); }
+
+    /**
+     * @return la fenêtre de pondération des patchs, utilisée pendant la recherche et pour l'image finale
+     */
+    public String getWindow() { return window; }
+
+    /**
+     * @return l'encodeur PNG au niveau de compression choisi, ou null pour l'écriture par défaut d'ImageIO
+     */
+    public PngEncoder getEncoder() { return encoder; }
+
+    /**
+     * Lit une zone sous la forme "x,y,largeur,hauteur".
+     *
+     * @param value texte de la zone
+     * @return rectangle correspondant
+     * @throws IllegalArgumentException si le texte n'a pas quatre entiers séparés par des virgules
+     */
+    public static Rectangle parseRegion(String value) {
+        String[] parts = value.split(",");
+        if (parts.length != 4) {
+            throw new IllegalArgumentException("La zone doit être de la forme x,y,largeur,hauteur : " + value);
+        }
+        try {
+            return new Rectangle(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()),
+                                 Integer.parseInt(parts[2].trim()), Integer.parseInt(parts[3].trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("La zone doit être de la forme x,y,largeur,hauteur : " + value);
+        }
+    }
+
+    /**
+     * Parse les arguments en ligne de commande pour créer un objet AutotuneArgs.
+     *
+     * @param args arguments de ligne de commande
+     * @return une nouvelle instance de AutotuneArgs contenant les paramètres validés
+     * @throws IllegalArgumentException si un argument est manquant ou invalide
+     */
+    public static AutotuneArgs parse(String[] args) {
+        Path input = null, output = null;
+        double sigma = 30.0;      // Valeur par défaut pour sigma
+        boolean explicitSigma = false;
+        int maxDimension = AutoTuner.DEFAULT_MAX_DIMENSION;
+        Rectangle region = null;
+        String window = null;
+        Integer compression = null;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--input", "-i" -> input = Paths.get(CliUtil.next(args, ++i, "--input"));
+                case "--output", "-o" -> output = Paths.get(CliUtil.next(args, ++i, "--output"));
+                case "--sigma", "-s" -> {
+                    try {
+                        sigma = Double.parseDouble(CliUtil.next(args, ++i, "--sigma"));
+                        explicitSigma = true;
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Sigma doit être un nombre valide");
+                    }
+                }
+                case "--maxDim", "-md" -> {
+                    try {
+                        maxDimension = Integer.parseInt(CliUtil.next(args, ++i, "--maxDim"));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("La dimension de l'aperçu doit être un entier valide");
+                    }
+                }
+                case "--region", "-rg" -> region = parseRegion(CliUtil.next(args, ++i, "--region"));
+                case "--window", "-wd" -> window = CliUtil.next(args, ++i, "--window");
+                case "--compression", "-cl" -> compression = CliUtil.parseCompression(CliUtil.next(args, ++i, "--compression"));
+                case "-h", "--help" -> { CliUtil.printAutotuneHelp(); System.exit(0); }
+                default -> throw new IllegalArgumentException("Option inconnue : " + args[i]);
+            }
+        }
+
+        if (input == null) throw new IllegalArgumentException("--input est obligatoire");
+
+        // Essayer d'extraire sigma du nom du fichier s'il n'est pas donné
+        if (!explicitSigma) {
+            double extractedSigma = DenoiseArgs.extractSigmaFromFilename(input);
+            if (extractedSigma > 0) {
+                sigma = extractedSigma;
+            }
+        }
+
+        return new AutotuneArgs(input, output, sigma, maxDimension, region, window, compression);
+    }
+}
@@ -98,6 +98,38 @@ public final class CliUtil {
         return defaultOutDenoise(input, "local", "hard", "", ".png");
     }
 
+    /**
+     * Ajoute la valeur de sigma au nom d'un fichier de sortie, avant l'extension
+     * (ex : {@code lena_denoised.png} devient {@code lena_denoised_s30.png}).
+     * Utilisé quand une seule commande produit une image par valeur de sigma.
+     *
+     * @param output chemin de sortie
+     * @param sigma valeur de sigma
+     * @return chemin de sortie suffixé
+     */
+    public static Path withSigmaSuffix(Path output, double sigma) {
+        String f = output.getFileName().toString();
+        int dot = f.lastIndexOf('.');
+        String sigmaStr = (sigma == Math.rint(sigma)) ? String.valueOf((long) sigma) : String.valueOf(sigma);
+        String fileName = (dot == -1 ? f : f.substring(0, dot)) + "_s" + sigmaStr + (dot == -1 ? "" : f.substring(dot));
+        return output.resolveSibling(fileName);
+    }
+
+    /**
+     * Lit un niveau de compression PNG. Sa plage (0 à 9) est vérifiée par {@link core.image.PngEncoder}.
+     *
+     * @param value valeur de l'option
+     * @return niveau de compression
+     * @throws IllegalArgumentException si la valeur n'est pas un entier
+     */
+    public static int parseCompression(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Le niveau de compression doit être un entier valide");
+        }
+    }
+
     public static String baseName(Path p) {
         String f = p.getFileName().toString();
         int dot = f.lastIndexOf('.');
@@ -121,6 +153,7 @@ public final class CliUtil {
           denoise  Débruiter une image
           eval     Évaluer la qualité du débruitage
           benchmark Effectuer un benchmark complet
+          autotune Rechercher automatiquement les paramètres de débruitage
         
         Pour plus d'informations sur une commande:
           image-denoising-PCA [command] --help
@@ -135,13 +168,19 @@ public final class CliUtil {
               -i, --input <path>     Chemin vers l'image ou le dossier d'images à bruiter (obligatoire)
               -o, --output <path>    Chemin pour l'image bruitée ou le dossier de sortie (optionnel)
               -s, --sigma <value>    Écart type du bruit (défaut: 30.0)
+              -sd, --seed <n>        Graine du bruit : même graine, même image bruitée (optionnel)
+              -cl, --compression <n> Niveau de compression PNG, de 0 (aucune) à 9, compression parallèle (optionnel)
               -h, --help            Affiche cette aide
             
             Exemples:
               # Ajout de bruit à une seule image
               noise -i image.png -s 30
+              noise -i image.png -s 30 -sd 42
               noise -i image.png -o sortie.png -s 25.0
             
+              # Images intermédiaires écrites sans compression
+              noise -i image.png -s 30 -cl 0
+            
               # Ajout de bruit à toutes les images d'un dossier
               noise -i dossier_images/ -o dossier_sortie/ -s 30
             
@@ -167,9 +206,19 @@ public final class CliUtil {
               -g, --global          Active la méthode de débruitage globale
               -l, --local           Active la méthode de débruitage locale (défaut)
               -t, --threshold <type> Type de seuillage (hard/h ou soft/s, défaut: hard)
-              -sh, --shrink <type>   Type de seuillage adaptatif (v pour VisuShrink, b pour BayesShrink)
-              -s, --sigma <value>    Écart type du bruit (défaut: 30.0)
+              -sh, --shrink <type>   Type de seuillage adaptatif (v pour VisuShrink, b pour BayesShrink, w pour Wiener)
+              -s, --sigma <value>    Écart type du bruit, ou liste séparée par des virgules (défaut: 30.0)
               -pp, --patchPercent <value> Pourcentage de la taille minimale pour le patch (entre 0 et 1, défaut: 0.05)
+              -st, --stride <n>     Pas de la grille dense de patchs (1 = tous les patchs), méthode globale traitée par bandes
+              -wd, --window <type>   Fenêtre de reconstruction des patchs (flat, linear, hann ou kaiser, défaut: flat)
+              -k, --clusters <n>    Regroupe les patchs semblables en n groupes, une ACP par groupe (patchs petits conseillés)
+              -bm, --blockMatching <n> Une ACP par groupe des n patchs les plus semblables à chaque référence (n >= s², patchs petits)
+              -sr, --searchRadius <n> Avec -bm, cherche les patchs semblables à moins de n pixels de la référence (défaut: toute l'image)
+              -dd, --dedup          Ne décompose qu'une fois les patchs identiques (images de synthèse, captures d'écran)
+              -oh, --offHeap <type> Stocke les patchs hors du tas Java (direct ou mapped), méthode globale, très grandes images
+              -bd, --border <type>  Bords de l'image (inside, reflect ou replicate, défaut: inside) : grille régulière débordant de l'image
+              -sp, --strips <n>     Lit l'image par bandes de n lignes et écrit le PNG au fil de l'eau (méthode globale, images géantes)
+              -cl, --compression <n> Niveau de compression PNG, de 0 (aucune) à 9, compression parallèle (défaut: ImageIO)
               -h, --help            Affiche cette aide
             
             Exemples:
@@ -177,6 +226,34 @@ public final class CliUtil {
               denoise -i image.png -t hard -sh v -s 25.0
               denoise -i image.png -g -t soft -sh b
             
+              # Une image débruitée par sigma, à partir d'une seule ACP (suffixe _s<sigma>)
+              denoise -i image.png -s 10,20,30
+            
+              # Grille dense (un patch tous les 2 pixels), sans garder tous les patchs en mémoire
+              denoise -i image.png -st 2 -pp 0.02
+            
+              # Patchs pondérés par une fenêtre de Hann à la reconstruction (jointures plus douces)
+              denoise -i image.png -wd hann
+            
+              # Une ACP par groupe de patchs semblables (images mêlant plusieurs textures)
+              denoise -i image.png -k 32 -pp 0.015
+            
+              # Mise en correspondance de blocs : groupes de 98 patchs 7x7 semblables
+              denoise -i image.png -bm 98 -pp 0.015
+              denoise -i image.png -bm 98 -pp 0.015 -sr 24
+            
+              # Capture d'écran : les patchs identiques ne sont débruités qu'une fois
+              denoise -i capture.png -g -dd
+            
+              # Très grande image : patchs stockés dans un fichier temporaire projeté en mémoire
+              denoise -i panorama.png -oh mapped -st 4
+            
+              # Grille exactement régulière, bords lus par symétrie
+              denoise -i image.png -g -bd reflect
+            
+              # Image géante : lue par bandes de 512 lignes, jamais chargée entièrement
+              denoise -i gigapixel.tif -o gigapixel_denoised.png -sp 512 -st 4
+            
               # Débruitage de toutes les images d'un dossier
               denoise -i dossier_images/ -o dossier_sortie/ -t hard -sh v
               denoise -i dossier_images/ -g -t soft -sh b -pp 0.15
@@ -188,6 +265,35 @@ public final class CliUtil {
             """);
     }
 
+    /**
+     * Affiche l'aide pour la commande autotune.
+     */
+    public static void printAutotuneHelp() {
+        System.out.println("""
+            Usage: autotune [options]
+            
+            Options:
+              -i, --input <path>     Chemin vers l'image à débruiter (obligatoire)
+              -o, --output <path>    Chemin pour l'image débruitée (optionnel)
+              -s, --sigma <value>    Écart type du bruit (défaut: déduit du nom du fichier ou 30.0)
+              -md, --maxDim <value>  Plus grande dimension de l'aperçu utilisé pour la recherche (défaut: 256)
+              -rg, --region <x,y,w,h> Zone de l'image sur laquelle faire la recherche (défaut: image entière)
+              -wd, --window <type>   Fenêtre de reconstruction, pour la recherche et l'image finale (défaut: flat)
+              -cl, --compression <n> Niveau de compression PNG de l'image débruitée, de 0 (aucune) à 9 (défaut: ImageIO)
+              -h, --help            Affiche cette aide
+            
+            Exemple:
+              autotune -i img/img_noised/lena_noised_30.png
+              autotune -i scan.tif -s 12 -rg 4000,3000,2048,2048
+            
+            La recherche (méthode globale/locale, pourcentage de patch, seuillage dur/doux,
+            VisuShrink/BayesShrink) est faite sur une copie réduite de l'image avec un score sans référence,
+            puis seule la meilleure configuration est appliquée à l'image en pleine résolution.
+            L'aperçu est décodé directement à échelle réduite (et limité à la zone) : pour une très grande
+            image, seule une fraction des pixels est chargée en mémoire pendant la recherche.
+            """);
+    }
+
     /**
      * Affiche l'aide pour la commande eval.
      */
@@ -1,25 +1,27 @@
 package cli.parse;
 
-import java.io.File;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Locale;
+import java.util.Objects;
 import java.util.Set;
 
+import core.acp.DenoiseOptions;
+import core.image.PngEncoder;
+import core.patch.AggregationWindow;
+import core.patch.OffHeapPatchMatrix;
+import core.patch.PatchGrid;
+
 /**
  * Gestion des arguments de la commande "denoise" qui permet de débruiter une image.
  * 
  * Cette classe immutable encapsule :
  * <ul>
- *   <li>input : le chemin vers l'image à débruiter</li>
+ *   <li>input : le chemin vers l'image (ou le dossier d'images) à débruiter</li>
  *   <li>output : le chemin où l'image débruitée sera sauvegardée</li>
- *   <li>isGlobal : indique si on utilise la méthode globale (true) ou locale (false)</li>
- *   <li>threshold : type de seuillage à appliquer ("hard" ou "soft")</li>
- *   <li>shrink : type de seuillage adaptatif ("v" pour VisuShrink, "b" pour BayesShrink)</li>
- *   <li>sigma : écart type du bruit</li>
- *   <li>patchPercent : pourcentage de la taille minimale pour le patch</li>
+ *   <li>options : les paramètres du débruitage ({@link DenoiseOptions})</li>
  * </ul>
  * 
  * Les arguments reconnus en ligne de commande sont :
@@ -29,53 +31,50 @@ import java.util.Set;
  *   <li>--global, -g : active la méthode de débruitage globale</li>
  *   <li>--local, -l : active la méthode de débruitage locale (défaut si ni global ni local n'est spécifié)</li>
  *   <li>--threshold, -t : type de seuillage ("hard" ou "soft", défaut: "hard")</li>
- *   <li>--shrink, -sh : type de seuillage adaptatif ("v" pour VisuShrink, "b" pour BayesShrink)</li>
- *   <li>--sigma, -s : écart type du bruit</li>
+ *   <li>--shrink, -sh : type de seuillage adaptatif ("v" pour VisuShrink, "b" pour BayesShrink, "w" pour le filtrage linéaire de Wiener)</li>
+ *   <li>--sigma, -s : écart type du bruit, ou liste de valeurs séparées par des virgules (ex : 10,20,30)</li>
  *   <li>--patchPercent, -pp : pourcentage de la taille minimale pour le patch (entre 0 et 1)</li>
+ *   <li>--stride, -st : pas de la grille dense de patchs, traitée par bandes (méthode globale uniquement)</li>
+ *   <li>--window, -wd : fenêtre de pondération des patchs à la reconstruction ("flat", "linear", "hann" ou "kaiser", défaut: "flat")</li>
+ *   <li>--clusters, -k : regroupe les patchs semblables en k groupes et calcule une ACP par groupe (incompatible avec --local)</li>
+ *   <li>--blockMatching, -bm : une ACP par groupe des n patchs les plus semblables à chaque patch de référence (incompatible avec --local et --clusters)</li>
+ *   <li>--searchRadius, -sr : cherche les blocs semblables à moins de n pixels du patch de référence, au lieu de toute l'image (avec --blockMatching)</li>
+ *   <li>--dedup, -dd : ne décompose qu'une fois les patchs identiques (images de synthèse, captures d'écran ; grille par défaut uniquement)</li>
+ *   <li>--offHeap, -oh : stocke les patchs hors du tas Java ("direct" ou "mapped") pour les très grandes images (méthode globale uniquement)</li>
+ *   <li>--border, -bd : traitement des bords ("inside", "reflect" ou "replicate", défaut: "inside") ; avec un bord rembourré, grille de patchs exactement régulière</li>
+ *   <li>--strips, -sp : lit l'image par bandes de n lignes et écrit le résultat au fil de l'eau, pour les images trop grandes pour la mémoire (méthode globale uniquement)</li>
+ *   <li>--compression, -cl : niveau de compression PNG de 0 (stockage) à 9, écriture directe et compression parallèle</li>
  *   <li>--help, -h : affiche l'aide et quitte le programme</li>
  * </ul>
  * 
  * Si le chemin de sortie n'est pas spécifié, un chemin par défaut est généré
  * dans le dossier "img/img_denoised/" avec le nom de l'image source et le type de débruitage.
  * 
+ * Cette classe ne fait que lire les valeurs : les règles sur les valeurs des paramètres et sur leurs
+ * combinaisons ne sont vérifiées qu'à un seul endroit, par {@link DenoiseOptions.Builder#build()}, dont
+ * l'{@link IllegalArgumentException} est transmise telle quelle.
+ * 
  * @author Martial-png
  * @version 1.0
  */
 public final class DenoiseArgs {
     private final Path input;
     private final Path output;
-    private final boolean isGlobal;
-    private final String threshold;
-    private final String shrink;
-    private final double sigma;
-    private final double patchPercent;
+    private final DenoiseOptions options;
     
     // Set des extensions d'images supportées
     private static final Set<String> SUPPORTED_EXTENSIONS = new HashSet<>(
             Arrays.asList(".png", ".jpg", ".jpeg", ".bmp", ".gif", ".tiff", ".tif"));
     
-    // Set des types de seuillage supportés
-    private static final Set<String> SUPPORTED_THRESHOLDS = new HashSet<>(
-            Arrays.asList("hard", "soft", "h", "s"));
-    
-    // Set des types de seuillage adaptatif supportés
-    private static final Set<String> SUPPORTED_SHRINKS = new HashSet<>(
-            Arrays.asList("v", "b"));
-    
     /**
-     * Crée une nouvelle instance DenoiseArgs avec les paramètres spécifiés.
+     * Crée une nouvelle instance DenoiseArgs.
      * 
-     * @param input chemin vers l'image à débruiter
+     * @param input chemin vers l'image ou le dossier d'images à débruiter
      * @param output chemin où l'image débruitée sera sauvegardée
-     * @param isGlobal indique si la méthode de débruitage est globale (true) ou locale (false)
-     * @param threshold type de seuillage à appliquer ("hard" ou "soft")
-     * @param shrink type de seuillage adaptatif ("v" ou "b")
-     * @param sigma écart type du bruit
-     * @param patchPercent pourcentage de la taille minimale pour le patch (entre 0 et 1)
-     * @throws IllegalArgumentException si les paramètres sont invalides
+     * @param options paramètres du débruitage, déjà vérifiés
+     * @throws IllegalArgumentException si les chemins sont invalides
      */
-    public DenoiseArgs(Path input, Path output, boolean isGlobal, String threshold, 
-                      String shrink, double sigma, double patchPercent) {
+    public DenoiseArgs(Path input, Path output, DenoiseOptions options) {
         // Vérifier que le chemin d'entrée existe
         if (input == null || !input.toFile().exists()) {
             throw new IllegalArgumentException("Le chemin d'entrée doit exister: " + input);
@@ -91,46 +90,9 @@ public final class DenoiseArgs {
             throw new IllegalArgumentException("Format d'image non supporté pour le fichier d'entrée: " + input);
         }
         
-        // Vérifier le type de seuillage
-        String thresholdLower = threshold.toLowerCase();
-        if (!SUPPORTED_THRESHOLDS.contains(thresholdLower)) {
-            throw new IllegalArgumentException(
-                "Type de seuillage non supporté: " + threshold + 
-                ". Utilisez 'hard'/'h' ou 'soft'/'s'");
-        }
-        
-        // Convertir les versions courtes en versions longues
-        if (thresholdLower.equals("h")) {
-            thresholdLower = "hard";
-        } else if (thresholdLower.equals("s")) {
-            thresholdLower = "soft";
-        }
-        
-        // Vérifier le type de seuillage adaptatif si fourni
-        String shrinkLower = shrink != null ? shrink.toLowerCase() : "v";
-        if (shrinkLower != null && !SUPPORTED_SHRINKS.contains(shrinkLower)) {
-            throw new IllegalArgumentException(
-                "Type de seuillage adaptatif non supporté: " + shrink + 
-                ". Utilisez 'v' (VisuShrink) ou 'b' (BayesShrink)");
-        }
-        
-        // Vérifier que sigma est positif
-        if (sigma <= 0) {
-            throw new IllegalArgumentException("Sigma doit être un nombre strictement positif");
-        }
-        
-        // Vérifier que patchPercent est entre 0 et 1
-        if (patchPercent <= 0 || patchPercent > 1) {
-            throw new IllegalArgumentException("Le pourcentage de taille de patch doit être entre 0 et 1");
-        }
-        
         this.input = input;
         this.output = output;
-        this.isGlobal = isGlobal;
-        this.threshold = thresholdLower;
-        this.shrink = shrinkLower;
-        this.sigma = sigma;
-        this.patchPercent = patchPercent;
+        this.options = Objects.requireNonNull(options, "Les paramètres du débruitage ne peuvent pas être nuls");
     }
 
     /**
@@ -144,29 +106,24 @@ public final class DenoiseArgs {
     public Path getOutput() { return output; }
     
     /**
-     * @return true si la méthode de débruitage est globale, false si elle est locale
+     * @return les paramètres du débruitage
      */
-    public boolean isGlobal() { return isGlobal; }
+    public DenoiseOptions getOptions() { return options; }
     
     /**
-     * @return le type de seuillage à appliquer ("hard" ou "soft")
-     */
-    public String getThreshold() { return threshold; }
-    
-    /**
-     * @return le type de seuillage adaptatif (null si méthode globale ou non spécifié)
-     */
-    public String getShrink() { return shrink; }
-    
-    /**
-     * @return l'écart type du bruit
-     */
-    public double getSigma() { return sigma; }
-    
-    /**
-     * @return le pourcentage de la taille minimale pour le patch
+     * Lit un type de seuillage, forme courte comprise.
+     * 
+     * @param value "hard"/"h" ou "soft"/"s" (insensible à la casse)
+     * @return "hard" ou "soft" ; toute autre valeur est rendue en minuscules et refusée par {@link DenoiseOptions.Builder#build()}
      */
-    public double getPatchPercent() { return patchPercent; }
+    public static String parseThreshold(String value) {
+        String lower = value.toLowerCase(Locale.ROOT);
+        return switch (lower) {
+            case "h" -> "hard";
+            case "s" -> "soft";
+            default -> lower;
+        };
+    }
     
     /**
      * Vérifie si un fichier est une image supportée en se basant sur son extension.
@@ -197,7 +154,7 @@ public final class DenoiseArgs {
      * @param path chemin du fichier
      * @return la valeur de sigma extraite, ou -1 si non trouvée
      */
-    private static double extractSigmaFromFilename(Path path) {
+    static double extractSigmaFromFilename(Path path) {
         String filename = path.getFileName().toString();
         int index = filename.indexOf("_noised_");
         if (index != -1) {
@@ -220,6 +177,29 @@ public final class DenoiseArgs {
         return -1;
     }
 
+    /**
+     * Lit une valeur de sigma ou une liste de valeurs séparées par des virgules (ex : "10,20,30").
+     * 
+     * @param value valeur de l'option --sigma
+     * @return les valeurs de sigma
+     * @throws IllegalArgumentException si une valeur est invalide ou n'est pas strictement positive
+     */
+    static double[] parseSigmas(String value) {
+        String[] parts = value.split(",");
+        double[] sigmas = new double[parts.length];
+        for (int k = 0; k < parts.length; k++) {
+            try {
+                sigmas[k] = Double.parseDouble(parts[k].trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Sigma doit être un nombre valide");
+            }
+            if (sigmas[k] <= 0) {
+                throw new IllegalArgumentException("Sigma doit être un nombre strictement positif");
+            }
+        }
+        return sigmas;
+    }
+
     /**
      * Parse les arguments en ligne de commande pour créer un objet DenoiseArgs.
      *
@@ -228,72 +208,66 @@ public final class DenoiseArgs {
      * @throws IllegalArgumentException si un argument est manquant ou invalide
      */
     public static DenoiseArgs parse(String[] args) {
+        DenoiseOptions.Builder builder = DenoiseOptions.builder().sigmas(30.0).patchPercent(0.5);   // valeurs par défaut de la ligne de commande
         Path input = null, output = null;
         boolean isGlobal = false;
         boolean explicitLocal = false;
-        String threshold = "hard"; // Valeur par défaut
-        String shrink = "v";      // VisuuShrink par défaut
-        double sigma = 30.0;      // Valeur par défaut pour sigma
-        double patchPercent = 0.5; // Valeur par défaut pour patchPercent
+        boolean impliesGlobal = false;   // --stride, --clusters, --blockMatching, --offHeap et --strips
+        String threshold = "hard";       // Valeur par défaut
+        String shrink = "v";             // VisuShrink par défaut
+        int clusters = 0;
+        int groupSize = 0;
+        int stripHeight = 0;
 
         for (int i = 0; i < args.length; i++) {
             switch (args[i]) {
                 case "--input", "-i" -> {
                     input = Paths.get(CliUtil.next(args, ++i, "--input"));
-                    // Vérifier l'existence du chemin d'entrée
-                    if (!input.toFile().exists()) {
-                        throw new IllegalArgumentException("Le chemin d'entrée spécifié n'existe pas: " + input);
-                    }
-                    // Vérifier si c'est un fichier image valide (si c'est un fichier)
-                    File inputFile = input.toFile();
-                    if (inputFile.isFile() && !isImageFile(input)) {
-                        throw new IllegalArgumentException("Format d'image non supporté pour le fichier d'entrée: " + input);
-                    }
                     // Essayer d'extraire sigma du nom du fichier
                     double extractedSigma = extractSigmaFromFilename(input);
                     if (extractedSigma > 0) {
-                        sigma = extractedSigma;
+                        builder.sigmas(extractedSigma);
                     }
                 }
                 case "--output", "-o" -> output = Paths.get(CliUtil.next(args, ++i, "--output"));
                 case "--global", "-g" -> isGlobal = true;
                 case "--local", "-l" -> explicitLocal = true;
-                case "--threshold", "-t" -> {
-                    threshold = CliUtil.next(args, ++i, "--threshold").toLowerCase();
-                    if (!SUPPORTED_THRESHOLDS.contains(threshold)) {
-                        throw new IllegalArgumentException(
-                            "Type de seuillage non supporté: " + threshold + 
-                            ". Utilisez 'hard'/'h' ou 'soft'/'s'");
-                    }
-                }
-                case "--shrink", "-sh" -> {
-                    shrink = CliUtil.next(args, ++i, "--shrink").toLowerCase();
-                    if (!SUPPORTED_SHRINKS.contains(shrink)) {
-                        throw new IllegalArgumentException(
-                            "Type de seuillage adaptatif non supporté: " + shrink + 
-                            ". Utilisez 'v' (VisuShrink) ou 'b' (BayesShrink)");
-                    }
-                }
-                case "--sigma", "-s" -> {
-                    try {
-                        sigma = Double.parseDouble(CliUtil.next(args, ++i, "--sigma"));
-                        if (sigma <= 0) {
-                            throw new IllegalArgumentException("Sigma doit être un nombre strictement positif");
-                        }
-                    } catch (NumberFormatException e) {
-                        throw new IllegalArgumentException("Sigma doit être un nombre valide");
-                    }
-                }
+                case "--dedup", "-dd" -> builder.deduplicate(true);
+                case "--threshold", "-t" -> threshold = parseThreshold(CliUtil.next(args, ++i, "--threshold"));
+                case "--shrink", "-sh" -> shrink = CliUtil.next(args, ++i, "--shrink").toLowerCase(Locale.ROOT);
+                case "--sigma", "-s" -> builder.sigmas(parseSigmas(CliUtil.next(args, ++i, "--sigma")));
                 case "--patchPercent", "-pp" -> {
                     try {
-                        patchPercent = Double.parseDouble(CliUtil.next(args, ++i, "--patchPercent"));
-                        if (patchPercent <= 0 || patchPercent > 1) {
-                            throw new IllegalArgumentException("Le pourcentage de taille de patch doit être entre 0 et 1");
-                        }
+                        builder.patchPercent(Double.parseDouble(CliUtil.next(args, ++i, "--patchPercent")));
                     } catch (NumberFormatException e) {
                         throw new IllegalArgumentException("Le pourcentage de taille de patch doit être un nombre valide");
                     }
                 }
+                case "--stride", "-st" -> {
+                    builder.stride(parseInt(CliUtil.next(args, ++i, "--stride"), "Le pas d'extraction doit être un entier valide"));
+                    impliesGlobal = true;
+                }
+                case "--window", "-wd" -> builder.window(AggregationWindow.parse(CliUtil.next(args, ++i, "--window")));
+                case "--offHeap", "-oh" -> {
+                    builder.offHeap(OffHeapPatchMatrix.Storage.parse(CliUtil.next(args, ++i, "--offHeap")));
+                    impliesGlobal = true;
+                }
+                case "--border", "-bd" -> builder.border(PatchGrid.BorderPolicy.parse(CliUtil.next(args, ++i, "--border")));
+                case "--strips", "-sp" -> {
+                    stripHeight = parseInt(CliUtil.next(args, ++i, "--strips"), "La hauteur des bandes doit être un entier valide");
+                    impliesGlobal = true;
+                }
+                case "--compression", "-cl" -> builder.encoder(new PngEncoder(CliUtil.parseCompression(CliUtil.next(args, ++i, "--compression"))));
+                case "--clusters", "-k" -> {
+                    clusters = parseInt(CliUtil.next(args, ++i, "--clusters"), "Le nombre de groupes doit être un entier valide");
+                    impliesGlobal = true;
+                }
+                case "--blockMatching", "-bm" -> {
+                    groupSize = parseInt(CliUtil.next(args, ++i, "--blockMatching"), "Le nombre de patchs par groupe doit être un entier valide");
+                    impliesGlobal = true;
+                }
+                case "--searchRadius", "-sr" -> builder.searchRadius(
+                    parseInt(CliUtil.next(args, ++i, "--searchRadius"), "Le rayon de recherche doit être un entier valide"));
                 case "-h", "--help" -> { CliUtil.printDenoiseHelp(); System.exit(0); }
                 default -> throw new IllegalArgumentException("Option inconnue : " + args[i]);
             }
@@ -307,22 +281,22 @@ public final class DenoiseArgs {
             throw new IllegalArgumentException("Les options --global et --local ne peuvent pas être utilisées ensemble");
         }
         
-        // Si --local est spécifié, s'assurer que isGlobal est false
-        if (explicitLocal) {
-            isGlobal = false;
-        }
+        // Les modes de la méthode globale l'impliquent, sauf si --local est demandé (refusé par DenoiseOptions)
+        isGlobal = !explicitLocal && (isGlobal || impliesGlobal);
+        DenoiseOptions options = builder.global(isGlobal).threshold(threshold).shrink(shrink)
+            .clusters(clusters).groupSize(groupSize).stripHeight(stripHeight).build();
         
         // Générer le chemin de sortie par défaut si non spécifié
         if (output == null) {
-            String method = isGlobal ? "global" : "local";
-            // Toujours inclure le shrink s'il est spécifié, quelle que soit la méthode
-            String shrinkStr = (shrink != null) ? "_" + shrink : "";
+            String method = groupSize > 0 ? "bm" : clusters > 0 ? "cluster" : isGlobal ? "global" : "local";
+            // Toujours inclure le shrink, quelle que soit la méthode
+            String shrinkStr = "_" + shrink;
             
             // Préserver l'extension d'origine si c'est un fichier
             if (input.toFile().isFile()) {
                 String extension = getFileExtension(input);
-                // Si l'extension n'est pas supportée, utiliser PNG par défaut
-                if (extension.isEmpty() || !SUPPORTED_EXTENSIONS.contains(extension.toLowerCase(Locale.ROOT))) {
+                // Si l'extension n'est pas supportée, ou si l'image est écrite par bandes, utiliser PNG par défaut
+                if (stripHeight > 0 || extension.isEmpty() || !SUPPORTED_EXTENSIONS.contains(extension.toLowerCase(Locale.ROOT))) {
                     extension = ".png";
                 }
                 output = CliUtil.defaultOutDenoise(input, method, threshold, shrinkStr, extension);
@@ -332,6 +306,17 @@ public final class DenoiseArgs {
             }
         }
         
-        return new DenoiseArgs(input, output, isGlobal, threshold, shrink, sigma, patchPercent);
+        return new DenoiseArgs(input, output, options);
+    }
+
+    /**
+     * Lit un entier d'option ; sa plage est vérifiée par {@link DenoiseOptions.Builder#build()}.
+     */
+    private static int parseInt(String value, String message) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(message);
+        }
     }
 }
@@ -1,6 +1,5 @@
 package cli.parse;
 
-import java.io.File;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
@@ -8,6 +7,8 @@ import java.util.HashSet;
 import java.util.Locale;
 import java.util.Set;
 
+import core.image.PngEncoder;
+
 /**
  * Gestion des arguments de la commande "noise" qui permet d'ajouter du bruit à une image.
  * 
@@ -16,6 +17,8 @@ import java.util.Set;
  *   <li>sigma : l'intensité du bruit à appliquer (valeur entière positive)</li>
  *   <li>input : le chemin vers l'image d'entrée</li>
  *   <li>output : le chemin où l'image bruitée sera sauvegardée</li>
+ *   <li>seed : la graine du générateur de bruit (null pour un bruit différent à chaque exécution)</li>
+ *   <li>compression : niveau de compression PNG des images bruitées, de 0 à 9 (null pour l'écriture par défaut d'ImageIO)</li>
  * </ul>
  * 
  * Les arguments reconnus en ligne de commande sont :
@@ -23,6 +26,8 @@ import java.util.Set;
  *   <li>--sigma, -s : intensité du bruit (obligatoire)</li>
  *   <li>--input, -i : chemin de l'image source (obligatoire)</li>
  *   <li>--output, -o : chemin de destination (facultatif)</li>
+ *   <li>--seed, -sd : graine du bruit, pour un résultat reproductible (facultatif)</li>
+ *   <li>--compression, -cl : niveau de compression PNG de 0 (stockage) à 9 (facultatif)</li>
  *   <li>--help, -h : affiche l'aide et quitte le programme</li>
  * </ul>
  * 
@@ -34,20 +39,24 @@ public final class NoiseArgs {
     private final int sigma;
     private final Path input;
     private final Path output;
+    private final Long seed;
+    private final PngEncoder encoder;
     
     // Set des extensions d'images supportées
     private static final Set<String> SUPPORTED_EXTENSIONS = new HashSet<>(
             Arrays.asList(".png", ".jpg", ".jpeg", ".bmp", ".gif", ".tiff", ".tif"));
 
     /**
-     * Crée une nouvelle instance NoiseArgs avec les paramètres spécifiés.
+     * Crée une nouvelle instance NoiseArgs ; les arguments y sont vérifiés, sauf le niveau de compression qui l'est par {@link PngEncoder}.
      * 
      * @param input chemin vers l'image d'entrée
      * @param sigma intensité du bruit (valeur entière positive)
      * @param output chemin où l'image bruitée sera sauvegardée
+     * @param seed graine du générateur de bruit (null pour une graine aléatoire)
+     * @param compression niveau de compression PNG, de 0 (stockage) à 9 (null pour l'écriture par défaut d'ImageIO)
      * @throws IllegalArgumentException si les paramètres sont invalides
      */
-    public NoiseArgs(Path input, int sigma, Path output) {
+    public NoiseArgs(Path input, int sigma, Path output, Long seed, Integer compression) {
         // Vérifier que sigma est positif
         if (sigma <= 0) {
             throw new IllegalArgumentException("L'intensité du bruit (sigma) doit être un entier strictement positif");
@@ -71,6 +80,8 @@ public final class NoiseArgs {
         this.sigma = sigma;
         this.input = input;
         this.output = output;
+        this.seed = seed;
+        this.encoder = compression != null ? new PngEncoder(compression) : null;   // niveau vérifié par l'encodeur
     }
 
     /**
@@ -88,6 +99,27 @@ public final class NoiseArgs {
      */
     public Path getOutput() { return output; }
 
+    /**
+     * @return true si une graine a été donnée (bruit reproductible)
+     */
+    public boolean hasSeed() { return seed != null; }
+
+    /**
+     * @return la graine du générateur de bruit (voir {@link #hasSeed()})
+     * @throws IllegalStateException si aucune graine n'a été donnée
+     */
+    public long getSeed() {
+        if (seed == null) {
+            throw new IllegalStateException("Aucune graine de bruit n'a été spécifiée");
+        }
+        return seed;
+    }
+
+    /**
+     * @return l'encodeur PNG au niveau de compression choisi, ou null pour l'écriture par défaut d'ImageIO
+     */
+    public PngEncoder getEncoder() { return encoder; }
+
     /**
      * Vérifie si un fichier est une image supportée en se basant sur son extension.
      * 
@@ -119,39 +151,35 @@ public final class NoiseArgs {
      * @throws IllegalArgumentException si un argument est manquant ou invalide
      */
     public static NoiseArgs parse(String[] args) {
-        int sigma = -1;
+        Integer sigma = null;
         Path input = null, output = null;
+        Long seed = null;
+        Integer compression = null;
 
         for (int i = 0; i < args.length; i++) {
             switch (args[i]) {
                 case "--sigma", "-s" -> {
                     try {
                         sigma = Integer.parseInt(CliUtil.next(args, ++i, "--sigma"));
-                        if (sigma <= 0) {
-                            throw new IllegalArgumentException("Sigma doit être un entier strictement positif");
-                        }
                     } catch (NumberFormatException e) {
                         throw new IllegalArgumentException("Sigma doit être un nombre entier valide");
                     }
                 }
-                case "--input", "-i" -> {
-                    input = Paths.get(CliUtil.next(args, ++i, "--input"));
-                    // Vérifier l'existence du chemin d'entrée
-                    if (!input.toFile().exists()) {
-                        throw new IllegalArgumentException("Le chemin d'entrée spécifié n'existe pas: " + input);
-                    }
-                    // Vérifier si c'est un fichier image valide (si c'est un fichier)
-                    File inputFile = input.toFile();
-                    if (inputFile.isFile() && !isImageFile(input)) {
-                        throw new IllegalArgumentException("Format d'image non supporté pour le fichier d'entrée: " + input);
+                case "--input", "-i" -> input = Paths.get(CliUtil.next(args, ++i, "--input"));
+                case "--output", "-o" -> output = Paths.get(CliUtil.next(args, ++i, "--output"));
+                case "--seed", "-sd" -> {
+                    try {
+                        seed = Long.parseLong(CliUtil.next(args, ++i, "--seed"));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("La graine doit être un nombre entier valide");
                     }
                 }
-                case "--output", "-o" -> output = Paths.get(CliUtil.next(args, ++i, "--output"));
+                case "--compression", "-cl" -> compression = CliUtil.parseCompression(CliUtil.next(args, ++i, "--compression"));
                 case "-h", "--help" -> { CliUtil.printNoiseHelp(); System.exit(0); }
                 default -> throw new IllegalArgumentException("Option inconnue : " + args[i]);
             }
         }
-        if (sigma < 0) throw new IllegalArgumentException("--sigma est obligatoire");
+        if (sigma == null) throw new IllegalArgumentException("--sigma est obligatoire");
         if (input == null) throw new IllegalArgumentException("--input est obligatoire");
         
         // Générer le chemin de sortie par défaut si non spécifié
@@ -170,6 +198,6 @@ public final class NoiseArgs {
             }
         }
         
-        return new NoiseArgs(input, sigma, output);
+        return new NoiseArgs(input, sigma, output, seed, compression);
     }
 }
\ No newline at end of file
@@ -1,9 +1,13 @@
 package core.acp;
 
+import java.util.stream.IntStream;
+
 import org.apache.commons.math3.linear.Array2DRowRealMatrix;
 import org.apache.commons.math3.linear.EigenDecomposition;
 import org.apache.commons.math3.linear.RealMatrix;
 
+import core.patch.PatchMatrix;
+
 public class ACP {
     // ==========================
     // 1. MoyCov : Moyenne, Cov
@@ -38,9 +42,127 @@ public class ACP {
             for (int j = 0; j < nb; j++)
                 Vc[i][j] = V[i][j] - mV[i];
         // Calcul de la matrice de covariance (Γ = (1/M) * Vc * Vc^T)
-        RealMatrix VcMat = new Array2DRowRealMatrix(Vc);
-        RealMatrix cov = VcMat.multiply(VcMat.transpose()).scalarMultiply(1.0 / nb);
-        return new Triple<>(mV, cov.getData(), Vc);
+        return new Triple<>(mV, covariance(Vc), Vc);
+    }
+
+    /**
+     * Calcule le vecteur moyen, la matrice de covariance et les données centrées à partir
+     * d'une matrice de patchs extraite du raster (pixels 8 ou 16 bits, un patch après l'autre)
+     * @param patches matrice des patchs (s² x M)
+     * @return Triple : [vecteur moyen, matrice covariance, données centrées (s² x M)]
+     * @throws IllegalArgumentException si la matrice est vide ou contient trop peu de patchs
+     */
+    public static Triple<double[], double[][], double[][]> MoyCov(PatchMatrix patches) {
+        int dim = patches.getDimension();
+        int nb = patches.getCount();
+        if (dim <= 0 || nb <= 0)
+            throw new IllegalArgumentException("La matrice d'entrée est vide ou ses dimensions sont incohérentes.");
+        if (nb < dim)
+            throw new IllegalArgumentException("Impossible de calculer la covariance : il faut au moins autant de patchs ("+nb+") que la dimension d'un patch ("+dim+").");
+
+        // Calcul du vecteur moyen (mV), en parcourant les pixels dans l'ordre de stockage
+        double[] mV = new double[dim];
+        patches.accumulate(null, mV);
+        for (int i = 0; i < dim; i++) mV[i] /= nb;
+        // Centrage des données (Vc = V - mV)
+        double[][] Vc = patches.center(mV, new double[dim][nb]);
+        return new Triple<>(mV, covariance(Vc), Vc);
+    }
+
+    /**
+     * Calcule le vecteur moyen, la matrice de covariance et les données centrées de patchs pondérés :
+     * le patch j compte pour {@code weights[j]} patchs identiques. Le résultat est celui qu'on obtiendrait
+     * en répétant chaque patch, sans stocker ni centrer les répétitions
+     * @param patches matrice des patchs distincts (s² x nb)
+     * @param weights nombre de répétitions de chaque patch (strictement positif)
+     * @return Triple : [vecteur moyen, matrice covariance, données centrées des patchs distincts (s² x nb)]
+     * @throws IllegalArgumentException si les dimensions sont incohérentes
+     */
+    public static Triple<double[], double[][], double[][]> MoyCov(PatchMatrix patches, int[] weights) {
+        int dim = patches.getDimension();
+        int nb = patches.getCount();
+        if (dim <= 0 || nb <= 0 || weights == null || weights.length != nb)
+            throw new IllegalArgumentException("La matrice d'entrée est vide ou ses dimensions sont incohérentes.");
+        long total = 0;
+        for (int w : weights) {
+            if (w <= 0) throw new IllegalArgumentException("Les poids des patchs doivent être strictement positifs.");
+            total += w;
+        }
+        if (total < dim)
+            throw new IllegalArgumentException("Impossible de calculer la covariance : il faut au moins autant de patchs ("+total+") que la dimension d'un patch ("+dim+").");
+
+        double[] mV = new double[dim];
+        patches.accumulate(weights, mV);
+        for (int i = 0; i < dim; i++) mV[i] /= total;
+        double[][] Vc = patches.center(mV, new double[dim][nb]);
+        // Γ = (1/M) * somme des w_j * vc_j * vc_j^T
+        double scale = 1.0 / total;
+        double[][] cov = new double[dim][dim];
+        double[] weighted = new double[nb];
+        for (int a = 0; a < dim; a++) {
+            double[] rowA = Vc[a];
+            for (int j = 0; j < nb; j++) weighted[j] = weights[j] * rowA[j];
+            for (int b = a; b < dim; b++) {
+                double[] rowB = Vc[b];
+                double sum = 0;
+                for (int j = 0; j < nb; j++) sum += weighted[j] * rowB[j];
+                cov[a][b] = sum * scale;
+                cov[b][a] = cov[a][b];
+            }
+        }
+        return new Triple<>(mV, cov, Vc);
+    }
+
+    /**
+     * Ajoute un lot de patchs à des sommes cumulées : la somme des patchs et la somme des produits x * x^T
+     * (moitié supérieure). Appelée lot après lot, elle permet de calculer la moyenne et la covariance
+     * d'un très grand nombre de patchs sans les garder en mémoire : Γ = somme(x * x^T) / M - mV * mV^T
+     * @param band patchs du lot
+     * @param rows tampon de transposition (s² lignes d'au moins autant de cases que de patchs dans le lot),
+     *             réutilisable d'un lot à l'autre
+     * @param sum somme des patchs (taille s²), mise à jour
+     * @param scatter somme des produits x * x^T (s² x s², seule la moitié supérieure est mise à jour)
+     */
+    public static void accumulateScatter(PatchMatrix band, double[][] rows, double[] sum, double[][] scatter) {
+        int dim = band.getDimension();
+        int nb = band.getCount();
+        // Transposition du lot : une ligne contiguë par pixel pour les produits scalaires
+        band.center(null, rows);
+        band.accumulate(null, sum);
+        for (int a = 0; a < dim; a++) {
+            double[] rowA = rows[a];
+            for (int b = a; b < dim; b++) {
+                double[] rowB = rows[b];
+                double s = 0;
+                for (int j = 0; j < nb; j++) s += rowA[j] * rowB[j];
+                scatter[a][b] += s;
+            }
+        }
+    }
+
+    /**
+     * Calcule la matrice de covariance Γ = (1/M) * Vc * Vc^T des données centrées.
+     * Chaque coefficient est le produit scalaire de deux lignes de Vc (contiguës en mémoire),
+     * et seule la moitié supérieure est calculée puisque Γ est symétrique
+     * @param Vc matrice (s² x M) des patchs centrés
+     * @return matrice de covariance (s² x s²)
+     */
+    static double[][] covariance(double[][] Vc) {
+        int dim = Vc.length;
+        int nb = Vc[0].length;
+        double scale = 1.0 / nb;
+        double[][] cov = new double[dim][dim];
+        for (int a = 0; a < dim; a++) {
+            double[] rowA = Vc[a];
+            for (int b = a; b < dim; b++) {
+                double[] rowB = Vc[b];
+                double sum = 0;
+                for (int j = 0; j < nb; j++) sum += rowA[j] * rowB[j];
+                cov[a][b] = sum * scale;
+                cov[b][a] = cov[a][b];
+            }
+        }
+        return cov;
     }
 
     // ==========================
@@ -54,10 +176,32 @@ public class ACP {
      */
     public static Triple<double[][], double[], double[][]> acp(double[][] V) {
         // On commence par centrer et calculer la covariance
-        Triple<double[], double[][], double[][]> res = MoyCov(V);
-        double[][] cov = res.second;
+        return acp(MoyCov(V));
+    }
+
+    /**
+     * Effectue l'ACP à partir du résultat de {@link #MoyCov(double[][])} déjà calculé,
+     * ce qui évite de recentrer les données quand l'appelant a aussi besoin du vecteur moyen
+     * @param res Triple : [vecteur moyen, matrice covariance, données centrées]
+     * @return Triple : [vecteurs propres (U), valeurs propres, projections alpha]
+     */
+    public static Triple<double[][], double[], double[][]> acp(Triple<double[], double[][], double[][]> res) {
         double[][] Vc = res.third;
         // Diagonalisation de la matrice de covariance
+        Pair<double[][], double[]> eig = diagonalise(res.second);
+        double[][] vecteursPropres = eig.first;
+        double[] valeursPropres = eig.second;
+        // Projeter les données centrées dans la base des vecteurs propres
+        double[][] alpha = Proj(vecteursPropres, Vc);
+        return new Triple<>(vecteursPropres, valeursPropres, alpha);
+    }
+
+    /**
+     * Diagonalise la matrice de covariance, sans projeter les données
+     * @param cov matrice de covariance (s² x s²)
+     * @return Pair : [vecteurs propres (U, en colonnes), valeurs propres]
+     */
+    public static Pair<double[][], double[]> diagonalise(double[][] cov) {
         RealMatrix covMat = new Array2DRowRealMatrix(cov);
         EigenDecomposition eig = new EigenDecomposition(covMat);
         double[] valeursPropres = eig.getRealEigenvalues();
@@ -66,9 +210,7 @@ public class ACP {
             double[] v = eig.getEigenvector(i).toArray();
             for (int j = 0; j < cov.length; j++) vecteursPropres[j][i] = v[j];
         }
-        // Projeter les données centrées dans la base des vecteurs propres
-        double[][] alpha = Proj(vecteursPropres, Vc);
-        return new Triple<>(vecteursPropres, valeursPropres, alpha);
+        return new Pair<>(vecteursPropres, valeursPropres);
     }
 
     // ==========================
@@ -90,6 +232,45 @@ public class ACP {
         return alphaMat.getData();
     }
 
+    /**
+     * Coordonnées de chaque patch sur les {@code q} premières composantes principales de l'ensemble des patchs :
+     * une clé de faible dimension qui résume le contenu du patch (pour regrouper ou comparer des patchs
+     * sans calculer de distances en dimension s²)
+     * @param patches matrice des patchs (s² x M)
+     * @param q nombre de composantes conservées (au plus s²)
+     * @return clés des patchs, {@code q} valeurs par patch à la suite
+     */
+    public static double[] leadingProjections(PatchMatrix patches, int q) {
+        int dim = patches.getDimension();
+        int nb = patches.getCount();
+        if (q <= 0 || q > dim)
+            throw new IllegalArgumentException("Le nombre de composantes doit être compris entre 1 et " + dim);
+        Triple<double[], double[][], double[][]> moyCov = MoyCov(patches);
+        double[][] U = diagonalise(moyCov.second).first;
+        double[][] Vc = moyCov.third;
+        double[] keys = new double[nb * q];
+        IntStream.range(0, nb).parallel().forEach(j -> {
+            for (int c = 0; c < q; c++) {
+                double s = 0;
+                for (int i = 0; i < dim; i++) s += U[i][c] * Vc[i][j];
+                keys[j * q + c] = s;
+            }
+        });
+        return keys;
+    }
+
+    // ==========================
+    // Classe utilitaire Pair
+    // ==========================
+    /**
+     * Petite classe utilitaire pour retourner 2 objets de types différents
+     */
+    public static class Pair<A, B> {
+        public final A first;
+        public final B second;
+        public Pair(A a, B b) { this.first = a; this.second = b; }
+    }
+
     // ==========================
     // Classe utilitaire Triple
     // ==========================
@@ -0,0 +1,379 @@
+package core.acp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import core.eval.ImageQualityMetrics;
+import core.image.Image;
+import core.image.ImageStatistics;
+import core.patch.AggregationWindow;
+import core.patch.PatchGrid;
+
+/**
+ * Recherche automatique des paramètres de débruitage (méthode globale/locale, pourcentage de taille
+ * de patch, type de seuillage et méthode de calcul du seuil).
+ *
+ * La recherche se fait sur une copie sous-échantillonnée de l'image, avec un indicateur de qualité
+ * sans référence ({@link ImageQualityMetrics#calculateResidualScore}). Les configurations de seuillage
+ * (méthode, seuillage, seuil) sont éliminées par moitiés successives : après chaque étape, seule la
+ * meilleure moitié de celles encore en lice, classées par leur meilleur score, passe à l'étape suivante.
+ * <ol>
+ *   <li>toutes les configurations sont évaluées, pour la méthode locale et pour la taille de patch
+ *       globale du milieu de la grille grossière ;</li>
+ *   <li>les autres tailles de la grille grossière ne sont évaluées que pour les configurations globales restantes ;</li>
+ *   <li>la taille de patch est affinée autour de la meilleure, par pas pairs divisés par deux à chaque étape
+ *       (les tailles restent impaires), jusqu'au pas de 2 pixels.</li>
+ * </ol>
+ * Les résultats sont rangés par taille de patch réellement utilisée sur l'aperçu : deux pourcentages qui
+ * donnent la même taille ne sont décomposés qu'une fois, et le pourcentage renvoyé est celui qui redonne
+ * exactement cette taille. La méthode locale n'est évaluée qu'une fois : chaque imagette calcule sa taille
+ * de patch à partir de ses propres dimensions, indépendamment du pourcentage demandé, si bien qu'il n'y a
+ * rien à affiner.
+ *
+ * Chaque couple (méthode, taille de patch) n'est décomposé qu'une fois grâce à {@link DenoiseSweep},
+ * et les couples d'une même étape sont évalués en parallèle. Seule la configuration retenue est
+ * ensuite appliquée à pleine résolution par l'appelant.
+ *
+ * @version 1.2
+ * @see DenoiseSweep
+ */
+public class AutoTuner {
+    public static final int DEFAULT_MAX_DIMENSION = 256;                        // plus grande dimension de l'aperçu
+    private static final double[] COARSE_PATCH_PERCENTS = {0.03, 0.06, 0.12};   // grille grossière
+    private static final int MIN_REFINE_STEP = 2;                               // plus petit écart entre deux tailles impaires
+    private static final String[] THRESHOLDS = {"hard", "soft"};
+    private static final String[] SHRINKS = {"v", "b"};
+
+    private final Image preview;            // copie sous-échantillonnée de l'image bruitée
+    private final double sigma;             // écart type du bruit
+    private final AggregationWindow window; // pondération des patchs, la même que pour l'image finale
+    private final ImageStatistics statistics;   // images intégrales de l'aperçu, partagées par tous les candidats
+    private final Map<String, List<Result>> evaluated = new ConcurrentHashMap<>();   // résultats par (méthode, taille de patch)
+
+    /**
+     * @param image image bruitée
+     * @param sigma écart type du bruit (strictement positif)
+     */
+    public AutoTuner(Image image, double sigma) {
+        this(image, sigma, DEFAULT_MAX_DIMENSION);
+    }
+
+    /**
+     * @param image image bruitée
+     * @param sigma écart type du bruit (strictement positif)
+     * @param maxDimension plus grande dimension de la copie sur laquelle se fait la recherche
+     */
+    public AutoTuner(Image image, double sigma, int maxDimension) {
+        this(image, sigma, maxDimension, AggregationWindow.DEFAULT);
+    }
+
+    /**
+     * @param image image bruitée
+     * @param sigma écart type du bruit (strictement positif)
+     * @param maxDimension plus grande dimension de la copie sur laquelle se fait la recherche
+     * @param window fenêtre de pondération des patchs avec laquelle la configuration retenue sera appliquée
+     */
+    public AutoTuner(Image image, double sigma, int maxDimension, AggregationWindow window) {
+        if (sigma <= 0) {
+            throw new IllegalArgumentException("Sigma doit être strictement positif");
+        }
+        if (maxDimension <= 0) {
+            throw new IllegalArgumentException("La dimension maximale de l'aperçu doit être strictement positive");
+        }
+        this.preview = image.subsample(previewFactor(image.getWidth(), image.getHeight(), maxDimension));
+        this.sigma = sigma;
+        this.window = Objects.requireNonNull(window, "La fenêtre de reconstruction ne peut pas être nulle");
+        this.statistics = new ImageStatistics(preview);
+    }
+
+    /**
+     * Pas de sous-échantillonnage de l'aperçu. Une image déjà lue avec ce pas (voir
+     * {@link core.image.ImageFile#ImageFile(String, java.awt.Rectangle, int)}) n'est plus réduite par le constructeur.
+     * @param width largeur de l'image
+     * @param height hauteur de l'image
+     * @param maxDimension plus grande dimension de l'aperçu
+     * @return un pixel conservé sur ce pas dans chaque direction
+     */
+    public static int previewFactor(int width, int height, int maxDimension) {
+        return (int) Math.ceil((double) Math.max(width, height) / maxDimension);
+    }
+
+    /**
+     * Lance la recherche grossière puis l'affinage, en éliminant la moitié des configurations après chaque étape.
+     * @return meilleure configuration trouvée
+     * @throws IllegalStateException si aucune configuration n'a pu être évaluée
+     */
+    public Result tune() {
+        List<Arm> arms = allArms();
+        int[] coarseSizes = coarseSizes();
+        int middle = coarseSizes[coarseSizes.length / 2];
+
+        // 1. Toutes les configurations : méthode locale et taille globale du milieu de la grille
+        evaluate(List.of(new Candidate(true, middle, variants(arms, true)),
+                         new Candidate(false, localPatchSize(), variants(arms, false))));
+        if (best() == null) {
+            throw new IllegalStateException("Aucune configuration n'a pu être évaluée sur cette image");
+        }
+        arms = halve(arms);
+
+        // 2. Autres tailles de la grille grossière, pour les configurations globales restantes
+        List<Candidate> coarse = new ArrayList<>();
+        for (int size : coarseSizes) {
+            coarse.add(new Candidate(true, size, variants(arms, true)));
+        }
+        evaluate(coarse);
+        arms = halve(arms);
+
+        // 3. Affinage de la taille autour de la meilleure taille globale
+        Result bestGlobal = bestGlobal();
+        int step = bestGlobal == null ? 0 : evenStep(bestGlobal.getPatchSize() / 2);
+        while (bestGlobal != null && !variants(arms, true).isEmpty() && step >= MIN_REFINE_STEP) {
+            List<Candidate> refine = new ArrayList<>();
+            for (int size : new int[] {bestGlobal.getPatchSize() - step, bestGlobal.getPatchSize() + step}) {
+                if (size >= ImageDenoiser.MIN_PATCH_SIZE && size <= ImageDenoiser.MAX_PATCH_SIZE) {
+                    refine.add(new Candidate(true, size, variants(arms, true)));
+                }
+            }
+            evaluate(refine);
+            arms = halve(arms);
+            bestGlobal = bestGlobal();
+            step = step == MIN_REFINE_STEP ? 0 : evenStep(step / 2);
+        }
+        return best();
+    }
+
+    /**
+     * @return nombre de décompositions ACP calculées pendant la recherche
+     */
+    public int getDecompositionCount() {
+        return evaluated.size();
+    }
+
+    /**
+     * @return la copie sous-échantillonnée sur laquelle la recherche est faite
+     */
+    public Image getPreview() {
+        return preview;
+    }
+
+    /**
+     * Évalue en parallèle les candidats dont la taille de patch n'a pas encore été décomposée.
+     * Les configurations encore en lice ne font que diminuer : une taille déjà décomposée a déjà été
+     * évaluée pour toutes celles qui restent.
+     */
+    private void evaluate(List<Candidate> candidates) {
+        candidates.stream()
+            .filter(c -> !c.variants.isEmpty() && !evaluated.containsKey(c.key()))
+            .collect(Collectors.toMap(Candidate::key, c -> c, (a, b) -> a))     // même méthode et même taille : mêmes variantes
+            .values()
+            .parallelStream()
+            .forEach(c -> evaluated.put(c.key(), evaluate(c)));
+    }
+
+    /**
+     * Décompose une fois l'aperçu pour la méthode et la taille de patch du candidat,
+     * puis évalue toutes ses variantes de seuillage.
+     */
+    private List<Result> evaluate(Candidate candidate) {
+        try {
+            DenoiseSweep sweep = DenoiseSweep.builder(preview, PatchGrid.of(candidate.patchSize))
+                .global(candidate.isGlobal)
+                .flatSigma(sigma)
+                .statistics(statistics)
+                .build();
+            List<Result> results = new ArrayList<>();
+            for (Map.Entry<DenoiseSweep.Variant, Image> e : sweep.applyAll(candidate.variants).entrySet()) {
+                double score = ImageQualityMetrics.calculateResidualScore(
+                    preview.getImage(), e.getValue().getImage(), sigma);
+                results.add(new Result(candidate.isGlobal, candidate.isGlobal ? candidate.patchSize : 0,
+                                       candidate.patchPercent(), e.getKey().getThreshold(), e.getKey().getShrink(), score));
+            }
+            return results;
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            // Taille de patch impossible sur l'aperçu (pas assez de patchs pour la covariance par exemple)
+            return Collections.emptyList();
+        }
+    }
+
+    private List<Result> results() {
+        return evaluated.values().stream().flatMap(List::stream).collect(Collectors.toList());
+    }
+
+    private Result best() {
+        return results().stream().min((a, b) -> Double.compare(a.getScore(), b.getScore())).orElse(null);
+    }
+
+    private Result bestGlobal() {
+        return results().stream().filter(Result::isGlobal)
+            .min((a, b) -> Double.compare(a.getScore(), b.getScore())).orElse(null);
+    }
+
+    private List<Arm> allArms() {
+        List<Arm> arms = new ArrayList<>();
+        for (boolean isGlobal : new boolean[] {true, false}) {
+            for (String threshold : THRESHOLDS) {
+                for (String shrink : SHRINKS) {
+                    arms.add(new Arm(isGlobal, new DenoiseSweep.Variant(threshold, shrink, sigma, window)));
+                }
+            }
+        }
+        return arms;
+    }
+
+    /**
+     * Garde la meilleure moitié (arrondie au-dessus) des configurations évaluées, classées par leur meilleur score.
+     * Une configuration qu'aucune taille de patch n'a pu évaluer est éliminée.
+     */
+    private List<Arm> halve(List<Arm> arms) {
+        Map<Arm, Double> scores = new HashMap<>();
+        for (Result r : results()) {
+            scores.merge(new Arm(r.isGlobal(), new DenoiseSweep.Variant(r.getThreshold(), r.getShrink(), sigma, window)),
+                         r.getScore(), Math::min);
+        }
+        List<Arm> scored = arms.stream().filter(scores::containsKey)
+            .sorted(Comparator.comparingDouble(scores::get))
+            .collect(Collectors.toList());
+        return scored.subList(0, (scored.size() + 1) / 2);
+    }
+
+    private static List<DenoiseSweep.Variant> variants(List<Arm> arms, boolean isGlobal) {
+        return arms.stream().filter(a -> a.isGlobal == isGlobal).map(a -> a.variant).collect(Collectors.toList());
+    }
+
+    /**
+     * Tailles de patch distinctes de la grille grossière sur l'aperçu, croissantes.
+     */
+    private int[] coarseSizes() {
+        return Arrays.stream(COARSE_PATCH_PERCENTS)
+            .mapToInt(p -> ImageDenoiser.calculateAdaptivePatchSize(preview.getWidth(), preview.getHeight(), p))
+            .distinct().sorted().toArray();
+    }
+
+    /**
+     * Taille de la grille passée à la méthode locale, la même que pour le débruitage final (seules
+     * sa densité et ses bords comptent, chaque imagette calculant sa propre taille de patch).
+     */
+    private int localPatchSize() {
+        return ImageDenoiser.calculateAdaptivePatchSize(preview.getWidth(), preview.getHeight(), ImageDenoiser.DEFAULT_PATCH_PERCENT);
+    }
+
+    /**
+     * @return le plus grand pas pair inférieur ou égal à la valeur, au moins {@link #MIN_REFINE_STEP}
+     */
+    private static int evenStep(int value) {
+        return Math.max(MIN_REFINE_STEP, value & ~1);
+    }
+
+    /**
+     * Configuration de seuillage pour une méthode : l'unité éliminée d'une étape à l'autre.
+     */
+    private static final class Arm {
+        private final boolean isGlobal;
+        private final DenoiseSweep.Variant variant;
+
+        private Arm(boolean isGlobal, DenoiseSweep.Variant variant) {
+            this.isGlobal = isGlobal;
+            this.variant = variant;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Arm)) return false;
+            Arm other = (Arm) o;
+            return isGlobal == other.isGlobal && variant.equals(other.variant);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(isGlobal, variant);
+        }
+    }
+
+    /**
+     * Couple (méthode, taille de patch sur l'aperçu) à décomposer, avec les variantes de seuillage à évaluer.
+     */
+    private final class Candidate {
+        private final boolean isGlobal;
+        private final int patchSize;
+        private final List<DenoiseSweep.Variant> variants;
+
+        private Candidate(boolean isGlobal, int patchSize, List<DenoiseSweep.Variant> variants) {
+            this.isGlobal = isGlobal;
+            this.patchSize = patchSize;
+            this.variants = variants;
+        }
+
+        /**
+         * Pourcentage qui redonne exactement cette taille de patch sur l'aperçu (milieu de l'intervalle des
+         * pourcentages qui y mènent). La méthode locale n'en dépend pas : le pourcentage par défaut est rendu.
+         */
+        private double patchPercent() {
+            if (!isGlobal) {
+                return ImageDenoiser.DEFAULT_PATCH_PERCENT;
+            }
+            return Math.min(1.0, (patchSize + 0.5) / Math.min(preview.getWidth(), preview.getHeight()));
+        }
+
+        private String key() {
+            // la méthode locale calcule la taille des patchs pour chaque imagette : une seule clé
+            return isGlobal ? "global_" + patchSize : "local";
+        }
+    }
+
+    /**
+     * Configuration évaluée et son score (plus il est bas, meilleur est le débruitage).
+     */
+    public static final class Result {
+        private final boolean isGlobal;
+        private final int patchSize;
+        private final double patchPercent;
+        private final String threshold;
+        private final String shrink;
+        private final double score;
+
+        private Result(boolean isGlobal, int patchSize, double patchPercent, String threshold, String shrink, double score) {
+            this.isGlobal = isGlobal;
+            this.patchSize = patchSize;
+            this.patchPercent = patchPercent;
+            this.threshold = threshold;
+            this.shrink = shrink;
+            this.score = score;
+        }
+
+        public boolean isGlobal() { return isGlobal; }
+
+        /**
+         * @return taille du côté des patchs sur l'aperçu, ou 0 pour la méthode locale (une taille par imagette)
+         */
+        public int getPatchSize() { return patchSize; }
+
+        /**
+         * @return pourcentage de taille de patch qui redonne {@link #getPatchSize()} sur l'aperçu
+         *         (le pourcentage par défaut pour la méthode locale, qui ne l'utilise pas)
+         */
+        public double getPatchPercent() { return patchPercent; }
+
+        public String getThreshold() { return threshold; }
+
+        public String getShrink() { return shrink; }
+
+        public double getScore() { return score; }
+
+        @Override
+        public String toString() {
+            String patch = isGlobal ? String.format("patchs %dx%d sur l'aperçu (pourcentage: %.3f)", patchSize, patchSize, patchPercent)
+                                    : "patchs dimensionnés par imagette";
+            return String.format("méthode: %s, %s, seuillage: %s, seuillage adaptatif: %s (score: %.4f)",
+                                 isGlobal ? "global" : "local", patch, threshold, shrink, score);
+        }
+    }
+}
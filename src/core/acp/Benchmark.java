@@ -5,9 +5,14 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 import core.eval.ImageQualityMetrics;
+import core.image.Image;
 import core.image.ImageFile;
+import core.patch.PatchGrid;
 
 /**
  * Classe pour effectuer des benchmarks de débruitage sur une image.
@@ -59,12 +64,12 @@ public class Benchmark {
 
             // Générer l'image bruitée
             String noisedPath = imageOutputDir.resolve(baseName + "_noised_" + (int)sigma + ".png").toString();
-            ImageFile noisedImage = new ImageFile(originalImage);
+            ImageFile noisedImage = new ImageFile(originalImage.copy());      // copie : l'originale reste intacte pour l'évaluation
             noisedImage.noisify((int)sigma);
             noisedImage.saveImage(noisedPath);
 
-            // Tester toutes les configurations
-            testAllConfigurations(originalPath.toString(), noisedPath, imageOutputDir.toString(), logWriter);
+            // Tester toutes les configurations (les images restent en mémoire)
+            testAllConfigurations(originalImage, noisedImage, baseName, imageOutputDir.toString(), logWriter);
             logWriter.println();
         }
     }
@@ -72,20 +77,19 @@ public class Benchmark {
     /**
      * Teste toutes les configurations de débruitage pour une image.
      * 
-     * @param originalPath chemin de l'image originale
-     * @param noisedPath chemin de l'image bruitée
+     * L'extraction des patchs et l'ACP ne sont calculées qu'une fois par méthode (globale / locale) ;
+     * seuls le seuillage et la reconstruction sont refaits, en parallèle, pour chaque combinaison
+     * de seuillage (dur / doux) et de seuil (VisuShrink / BayesShrink). Les métriques sont calculées
+     * sur les images en mémoire, les images débruitées sont ensuite sauvegardées pour consultation.
+     * 
+     * @param originalImage image originale
+     * @param noisedImage image bruitée
+     * @param baseName nom de base de l'image
      * @param outputDir répertoire de sortie
      * @param logWriter writer pour le fichier de log
-     * @throws IOException si une erreur survient lors de la lecture/écriture des fichiers
      */
-    private void testAllConfigurations(String originalPath, String noisedPath, String outputDir, PrintWriter logWriter) 
-            throws IOException {
-        // Extraire le nom de base de l'image
-        String baseName = Path.of(originalPath).getFileName().toString().replaceFirst("[.][^.]+$", "");
-
-        // Charger les images originale et bruitée pour comparaison
-        ImageFile originalImage = new ImageFile(originalPath);
-        ImageFile noisedImage = new ImageFile(noisedPath);
+    private void testAllConfigurations(ImageFile originalImage, ImageFile noisedImage, String baseName,
+                                       String outputDir, PrintWriter logWriter) {
         BufferedImage originalBuffered = originalImage.getImage();
         BufferedImage noisedBuffered = noisedImage.getImage();
 
@@ -103,41 +107,61 @@ public class Benchmark {
         String[] thresholdOptions = {"hard", "soft"};
         String[] shrinkOptions = {"v", "b"};
 
+        List<DenoiseSweep.Variant> variants = new ArrayList<>();
+        for (String threshold : thresholdOptions) {
+            for (String shrink : shrinkOptions) {
+                variants.add(new DenoiseSweep.Variant(threshold, shrink, sigma));
+            }
+        }
+
+        int patchSize = ImageDenoiser.calculateAdaptivePatchSize(noisedImage.getWidth(), 
+                                                                 noisedImage.getHeight(), 
+                                                                 patchPercent);
+
         for (boolean isGlobal : globalOptions) {
-            for (String threshold : thresholdOptions) {
-                for (String shrink : shrinkOptions) {
-                    // Construire le nom du fichier de sortie
-                    String method = isGlobal ? "global" : "local";
-                    String outputName = String.format("%s/%s_denoised_%s_%s_%s.png", 
-                                                    outputDir, baseName, method, threshold, shrink);
-
-                    // Débruiter l'image
-                    logWriter.println("Débruitage avec méthode: " + method + 
-                                    ", seuillage: " + threshold + 
-                                    ", seuillage adaptatif: " + shrink);
-
-                    ImageDenoiser.ImageDen(noisedPath, outputName, isGlobal, threshold, shrink, sigma, patchPercent);
-                    logWriter.println("Image débruitée sauvegardée dans: " + outputName);
-                    System.out.println("Traitement de : " + outputName);
-
-                    // Évaluer le résultat
-                    ImageFile denoisedImage = new ImageFile(outputName);
-                    BufferedImage denoisedBuffered = denoisedImage.getImage();
-
-                    double denoisedMSE = ImageQualityMetrics.calculateMSE(originalBuffered, denoisedBuffered);
-                    double denoisedPSNR = ImageQualityMetrics.calculatePSNR(denoisedMSE, 255);
-
-                    // Calculer les pourcentages d'amélioration
-                    double mseImprovement = 100 * (noisedMSE - denoisedMSE) / noisedMSE;
-                    double psnrImprovement = denoisedPSNR - noisedPSNR;
-
-                    logWriter.printf("MSE: %.2f (Amélioration: %.2f%%)\n", 
-                                   denoisedMSE, mseImprovement);
-                    logWriter.printf("PSNR: %.2f dB (Amélioration: %.2f dB)\n", 
-                                   denoisedPSNR, psnrImprovement);
-                    logWriter.println();
-                }
+            String method = isGlobal ? "global" : "local";
+
+            // Une seule extraction et une seule ACP pour toutes les variantes de cette méthode
+            DenoiseSweep sweep = DenoiseSweep.builder(noisedImage, PatchGrid.of(patchSize))
+                .global(isGlobal)
+                .flatSigma(sigma)
+                .build();
+            Map<DenoiseSweep.Variant, Image> results = sweep.applyAll(variants);
+            logWriter.println("Méthode " + method + " : " + sweep.getFlatPatchCount() + " patchs uniformes sur "
+                              + sweep.getPatchCount() + " remplacés par leur moyenne");
+
+            for (Map.Entry<DenoiseSweep.Variant, Image> result : results.entrySet()) {
+                String threshold = result.getKey().getThreshold();
+                String shrink = result.getKey().getShrink();
+                // Construire le nom du fichier de sortie
+                String outputName = String.format("%s/%s_denoised_%s_%s_%s.png", 
+                                                outputDir, baseName, method, threshold, shrink);
+
+                logWriter.println("Débruitage avec méthode: " + method + 
+                                ", seuillage: " + threshold + 
+                                ", seuillage adaptatif: " + shrink);
+
+                ImageFile denoisedImage = new ImageFile(result.getValue(), "denoised");
+                denoisedImage.saveImage(outputName);
+                logWriter.println("Image débruitée sauvegardée dans: " + outputName);
+                System.out.println("Traitement de : " + outputName);
+
+                // Évaluer le résultat
+                BufferedImage denoisedBuffered = denoisedImage.getImage();
+
+                double denoisedMSE = ImageQualityMetrics.calculateMSE(originalBuffered, denoisedBuffered);
+                double denoisedPSNR = ImageQualityMetrics.calculatePSNR(denoisedMSE, 255);
+
+                // Calculer les pourcentages d'amélioration
+                double mseImprovement = 100 * (noisedMSE - denoisedMSE) / noisedMSE;
+                double psnrImprovement = denoisedPSNR - noisedPSNR;
+
+                logWriter.printf("MSE: %.2f (Amélioration: %.2f%%)\n", 
+                               denoisedMSE, mseImprovement);
+                logWriter.printf("PSNR: %.2f dB (Amélioration: %.2f dB)\n", 
+                               denoisedPSNR, psnrImprovement);
+                logWriter.println();
             }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,284 @@
+package core.acp;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import core.image.Image;
+import core.patch.PatchAggregator;
+import core.patch.PatchExtractor;
+import core.patch.PatchGrid;
+import core.patch.PatchIndex;
+import core.patch.PatchMatrix;
+
+/**
+ * Débruitage ACP par mise en correspondance de blocs : pour chaque patch de référence, les patchs
+ * qui lui ressemblent le plus (dans une fenêtre de recherche autour de lui, ou dans toute l'image) forment un groupe,
+ * et l'ACP est calculée sur ce groupe seulement.
+ *
+ * La recherche des voisins ne compare pas les patchs pixel à pixel (distances en dimension s²) :
+ * chaque patch est résumé par ses coordonnées sur les premières composantes principales de tous les patchs,
+ * et ces clés sont rangées dans un {@link PatchIndex} (arbre k-d). Chaque recherche coûte alors de l'ordre
+ * de log M, ce qui garde le regroupement sous-quadratique même sur une image de plusieurs mégapixels.
+ * Avec une fenêtre de recherche, les patchs sont rangés par cases de la taille de la fenêtre et chaque case
+ * a son propre index, limité aux patchs des cases voisines : une recherche ne parcourt plus que les patchs
+ * proches de la référence, et non l'index de toute l'image filtré après coup.
+ *
+ * Chaque groupe doit contenir au moins s² patchs pour que sa covariance soit calculable : il faut donc
+ * des patchs petits (5x5 à 9x9). Tous les patchs d'un groupe débruité sont accumulés dans l'image finale,
+ * si bien qu'un patch appartenant à plusieurs groupes est moyenné entre ses différentes estimations.
+ *
+ * @version 1.1
+ * @see PatchIndex
+ * @see ClusteredDenoiser
+ */
+public class BlockMatchingDenoiser {
+    public static final int DEFAULT_SEARCH_RADIUS = 0;     // 0 : recherche dans toute l'image (meilleur PSNR mesuré que 24 pixels)
+    private static final int KEY_COMPONENTS = 8;            // dimension des clés de recherche
+    private static final int REFERENCE_STEP = 4;           // un patch de référence sur REFERENCE_STEP
+    private static final int CHUNK = 256;                   // groupes débruités en parallèle avant accumulation
+
+    private final Image image;              // image bruitée
+    private final PatchMatrix patches;      // tous les patchs de la grille
+    private final int[][] groups;           // patchs semblables à chaque patch de référence (la référence en tête)
+    private PatchIndex globalIndex;         // index de toute l'image, null tant qu'il n'a pas servi
+
+    /**
+     * Forme les groupes de patchs semblables sur la grille par défaut.
+     *
+     * @param image image à débruiter
+     * @param patchSize taille du côté des patchs
+     * @param groupSize nombre de patchs par groupe (porté à s² s'il est plus petit)
+     */
+    public BlockMatchingDenoiser(Image image, int patchSize, int groupSize) {
+        this(image, PatchGrid.of(patchSize), groupSize, DEFAULT_SEARCH_RADIUS);
+    }
+
+    /**
+     * Forme les groupes de patchs semblables. Un patch sur {@code REFERENCE_STEP} sert de référence ;
+     * les patchs qu'aucun de ces groupes ne contient deviennent à leur tour des références,
+     * pour que chaque patch soit débruité au moins une fois.
+     *
+     * @param image image à débruiter
+     * @param grid grille d'extraction des patchs
+     * @param groupSize nombre de patchs par groupe (porté à s² s'il est plus petit)
+     * @param searchRadius demi-côté de la fenêtre de recherche en pixels (0 pour chercher dans toute l'image)
+     * @throws IllegalArgumentException si les paramètres sont invalides ou s'il y a trop peu de patchs
+     */
+    public BlockMatchingDenoiser(Image image, PatchGrid grid, int groupSize, int searchRadius) {
+        if (groupSize <= 0) {
+            throw new IllegalArgumentException("Le nombre de patchs par groupe doit être strictement positif");
+        }
+        if (searchRadius < 0) {
+            throw new IllegalArgumentException("La fenêtre de recherche doit être positive");
+        }
+        this.image = image;
+        this.patches = PatchExtractor.extractPatchMatrix(image, grid);
+        if (patches == null) {
+            throw new IllegalArgumentException("Impossible d'extraire les patchs de l'image");
+        }
+        int dim = patches.getDimension();
+        int count = patches.getCount();
+        if (count < dim) {
+            throw new IllegalArgumentException("Impossible de calculer la covariance : il faut au moins autant de patchs ("
+                                               + count + ") que la dimension d'un patch (" + dim + ").");
+        }
+        int k = Math.min(count, Math.max(groupSize, dim));
+
+        int keyDim = Math.min(KEY_COMPONENTS, dim);
+        double[] keys = ACP.leadingProjections(patches, keyDim);
+        SearchTiles tiles = searchRadius > 0 ? new SearchTiles(patches, searchRadius) : null;
+
+        // Patchs de référence : un sur REFERENCE_STEP, puis chaque patch qu'aucun groupe ne contient encore
+        int[][] found = new int[count][];
+        formGroups(r -> r % REFERENCE_STEP == 0, found, keys, keyDim, k, dim, tiles, searchRadius);
+        boolean[] covered = new boolean[count];
+        for (int[] group : found) {
+            if (group != null) {
+                for (int j : group) {
+                    covered[j] = true;
+                }
+            }
+        }
+        formGroups(r -> !covered[r], found, keys, keyDim, k, dim, tiles, searchRadius);
+        this.groups = Arrays.stream(found).filter(Objects::nonNull).toArray(int[][]::new);
+    }
+
+    /**
+     * Forme le groupe de chaque patch de référence retenu par le filtre. Sans fenêtre de recherche,
+     * un seul index couvre toute l'image. Avec une fenêtre, les références sont traitées case par case :
+     * l'index de chaque case ne contient que les patchs des cases voisines, seuls candidats possibles,
+     * et les patchs hors de la fenêtre de la référence en sont écartés. Si la fenêtre contient moins
+     * de s² patchs, le groupe est cherché dans toute l'image.
+     */
+    private void formGroups(IntPredicate isReference, int[][] found, double[] keys, int keyDim,
+                            int k, int dim, SearchTiles tiles, int searchRadius) {
+        if (tiles == null) {
+            PatchIndex index = globalIndex(keys, keyDim);
+            IntStream.range(0, found.length).filter(isReference).parallel()
+                .forEach(r -> found[r] = index.nearest(r, k, null));
+            return;
+        }
+        IntStream.range(0, tiles.count()).parallel().forEach(t -> {
+            int[] references = Arrays.stream(tiles.members(t)).filter(isReference).toArray();
+            if (references.length == 0) {
+                return;
+            }
+            PatchIndex local = new PatchIndex(keys, keyDim, tiles.neighbourhood(t));
+            for (int r : references) {
+                int x = patches.getXOrigin(r);
+                int y = patches.getYOrigin(r);
+                int[] group = local.nearest(r, k, j -> Math.abs(patches.getXOrigin(j) - x) <= searchRadius
+                                                    && Math.abs(patches.getYOrigin(j) - y) <= searchRadius);
+                found[r] = group.length >= dim ? group : globalIndex(keys, keyDim).nearest(r, k, null);
+            }
+        });
+    }
+
+    /**
+     * Index de tous les patchs, construit au premier besoin.
+     */
+    private synchronized PatchIndex globalIndex(double[] keys, int keyDim) {
+        if (globalIndex == null) {
+            globalIndex = new PatchIndex(keys, keyDim);
+        }
+        return globalIndex;
+    }
+
+    /**
+     * @return nombre de groupes (un par patch de référence)
+     */
+    public int getGroupCount() { return groups.length; }
+
+    /**
+     * @return nombre total de patchs
+     */
+    public int getPatchCount() { return patches.getCount(); }
+
+    /**
+     * Débruite l'image avec une configuration de seuillage : ACP et seuillage de chaque groupe
+     * (seuil fixe calculé dans le groupe), puis accumulation de tous les patchs débruités.
+     * Les groupes sont traités en parallèle, par lots, pour limiter la mémoire utilisée.
+     *
+     * @param variant configuration de seuillage
+     * @return image débruitée
+     */
+    public Image apply(DenoiseSweep.Variant variant) {
+        int side = patches.getSide();
+        PatchAggregator aggregator = new PatchAggregator(image.getWidth(), image.getHeight(), variant.getWindow());
+        for (int first = 0; first < groups.length; first += CHUNK) {
+            List<double[][]> denoised = IntStream.range(first, Math.min(first + CHUNK, groups.length)).parallel()
+                .mapToObj(r -> Denoiser.denoiseDecomposition(new PatchDecomposition(patches.select(groups[r])),
+                    variant.getThreshold(), variant.getShrink(), variant.getSigma(), true))
+                .collect(Collectors.toList());
+            for (int c = 0; c < denoised.size(); c++) {
+                int[] group = groups[first + c];
+                double[][] V_denoised = denoised.get(c);
+                for (int k = 0; k < group.length; k++) {
+                    aggregator.add(V_denoised, k, side, patches.getXOrigin(group[k]), patches.getYOrigin(group[k]));
+                }
+            }
+        }
+        return aggregator.toImage();
+    }
+
+    /**
+     * Débruite l'image pour chacune des configurations, en réutilisant les groupes.
+     *
+     * @param variants configurations de seuillage
+     * @return images débruitées, dans l'ordre des configurations fournies
+     */
+    public Map<DenoiseSweep.Variant, Image> applyAll(List<DenoiseSweep.Variant> variants) {
+        Map<DenoiseSweep.Variant, Image> results = new LinkedHashMap<>();
+        for (DenoiseSweep.Variant variant : variants) {
+            results.put(variant, apply(variant));
+        }
+        return results;
+    }
+
+    /**
+     * Patchs rangés par cases carrées dont le côté est le demi-côté de la fenêtre de recherche :
+     * la fenêtre d'un patch ne déborde jamais des huit cases qui entourent la sienne.
+     */
+    private static final class SearchTiles {
+        private final int side;         // côté des cases en pixels
+        private final int minX, minY;   // origine de la première case
+        private final int columns;      // nombre de cases par ligne
+        private final int rows;         // nombre de lignes de cases
+        private final int[] start;      // début des patchs de chaque case dans members
+        private final int[] members;    // indices des patchs, case par case
+
+        SearchTiles(PatchMatrix patches, int side) {
+            int count = patches.getCount();
+            int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+            for (int j = 0; j < count; j++) {
+                minX = Math.min(minX, patches.getXOrigin(j));
+                maxX = Math.max(maxX, patches.getXOrigin(j));
+                minY = Math.min(minY, patches.getYOrigin(j));
+                maxY = Math.max(maxY, patches.getYOrigin(j));
+            }
+            this.side = side;
+            this.minX = minX;
+            this.minY = minY;
+            this.columns = (maxX - minX) / side + 1;
+            this.rows = (maxY - minY) / side + 1;
+
+            // Tri par dénombrement des patchs selon leur case
+            int[] tile = new int[count];
+            this.start = new int[columns * rows + 1];
+            for (int j = 0; j < count; j++) {
+                tile[j] = tileOf(patches.getXOrigin(j), patches.getYOrigin(j));
+                start[tile[j] + 1]++;
+            }
+            for (int t = 0; t < columns * rows; t++) {
+                start[t + 1] += start[t];
+            }
+            this.members = new int[count];
+            int[] next = Arrays.copyOf(start, columns * rows);
+            for (int j = 0; j < count; j++) {
+                members[next[tile[j]]++] = j;
+            }
+        }
+
+        private int tileOf(int x, int y) {
+            return (y - minY) / side * columns + (x - minX) / side;
+        }
+
+        int count() { return columns * rows; }
+
+        /**
+         * @return indices des patchs de la case
+         */
+        int[] members(int t) {
+            return Arrays.copyOfRange(members, start[t], start[t + 1]);
+        }
+
+        /**
+         * @return indices des patchs de la case et des cases qui l'entourent
+         */
+        int[] neighbourhood(int t) {
+            int cx = t % columns;
+            int cy = t / columns;
+            int x0 = Math.max(cx - 1, 0), x1 = Math.min(cx + 1, columns - 1);
+            int y0 = Math.max(cy - 1, 0), y1 = Math.min(cy + 1, rows - 1);
+            int size = 0;
+            for (int ty = y0; ty <= y1; ty++) {
+                size += start[ty * columns + x1 + 1] - start[ty * columns + x0];
+            }
+            int[] result = new int[size];
+            int n = 0;
+            for (int ty = y0; ty <= y1; ty++) {
+                int from = start[ty * columns + x0];
+                int to = start[ty * columns + x1 + 1];
+                System.arraycopy(members, from, result, n, to - from);
+                n += to - from;
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package core.acp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import core.image.Image;
+import core.patch.PatchAggregator;
+import core.patch.PatchExtractor;
+import core.patch.PatchGrid;
+import core.patch.PatchMatrix;
+
+/**
+ * Débruitage ACP par groupes de patchs semblables.
+ *
+ * Une seule base pour toute l'image (méthode globale) ou une base par imagette (méthode locale)
+ * conviennent mal aux images qui mélangent plusieurs textures. Ici, les patchs sont regroupés par
+ * leur contenu plutôt que par leur position :
+ * <ol>
+ *   <li>chaque patch est résumé par ses coordonnées sur les premières composantes de l'ACP de tous les patchs ;</li>
+ *   <li>ces coordonnées sont regroupées par k-moyennes (initialisation k-means++ de graine fixe,
+ *       le résultat est reproductible) ;</li>
+ *   <li>une ACP distincte est calculée pour chaque groupe, les groupes étant traités en parallèle ;</li>
+ *   <li>chaque patch est débruité dans la base de son groupe, puis l'image est reconstruite
+ *       par un {@link PatchAggregator}.</li>
+ * </ol>
+ * Un groupe doit contenir au moins autant de patchs que la dimension d'un patch (s²) pour que sa
+ * covariance soit calculable : les patchs des groupes trop petits rejoignent le groupe valide le plus proche.
+ *
+ * @version 1.0
+ * @see DenoiseSweep
+ * @see PatchDecomposition
+ */
+public class ClusteredDenoiser {
+    public static final int DEFAULT_CLUSTERS = 32;
+    private static final int KEY_COMPONENTS = 4;    // nombre de composantes principales utilisées pour regrouper
+    private static final int MAX_ITERATIONS = 30;   // nombre maximal d'itérations des k-moyennes
+    private static final long SEED = 42L;           // graine de l'initialisation des k-moyennes
+
+    private final Image image;                      // image bruitée
+    private final PatchMatrix patches;              // tous les patchs de la grille
+    private final List<int[]> members;              // indices des patchs de chaque groupe
+    private final List<PatchDecomposition> decompositions;  // ACP de chaque groupe
+
+    /**
+     * Regroupe les patchs de la grille par défaut et calcule l'ACP de chaque groupe.
+     *
+     * @param image image à débruiter
+     * @param patchSize taille du côté des patchs
+     * @param clusterCount nombre de groupes demandé
+     */
+    public ClusteredDenoiser(Image image, int patchSize, int clusterCount) {
+        this(image, PatchGrid.of(patchSize), clusterCount);
+    }
+
+    /**
+     * Regroupe les patchs d'une grille et calcule l'ACP de chaque groupe.
+     *
+     * @param image image à débruiter
+     * @param grid grille d'extraction des patchs
+     * @param clusterCount nombre de groupes demandé (le nombre final peut être plus petit)
+     * @throws IllegalArgumentException si le nombre de groupes est invalide ou s'il y a trop peu de patchs
+     */
+    public ClusteredDenoiser(Image image, PatchGrid grid, int clusterCount) {
+        if (clusterCount <= 0) {
+            throw new IllegalArgumentException("Le nombre de groupes doit être strictement positif");
+        }
+        this.image = image;
+        this.patches = PatchExtractor.extractPatchMatrix(image, grid);
+        if (patches == null) {
+            throw new IllegalArgumentException("Impossible d'extraire les patchs de l'image");
+        }
+        int dim = patches.getDimension();
+        if (patches.getCount() < dim) {
+            throw new IllegalArgumentException("Impossible de calculer la covariance : il faut au moins autant de patchs ("
+                                               + patches.getCount() + ") que la dimension d'un patch (" + dim + ").");
+        }
+
+        int maxClusters = Math.max(1, Math.min(clusterCount, patches.getCount() / dim));
+        int[] labels;
+        double[] centroids;
+        int q = Math.min(KEY_COMPONENTS, dim);
+        if (maxClusters == 1) {
+            labels = new int[patches.getCount()];
+            centroids = new double[q];
+        } else {
+            double[] keys = ACP.leadingProjections(patches, q);
+            centroids = initCentroids(keys, q, maxClusters);
+            labels = kMeans(keys, q, centroids);
+            mergeSmallClusters(keys, q, centroids, labels, maxClusters, dim);
+        }
+        this.members = groupMembers(labels, maxClusters);
+
+        // Les ACP des groupes sont indépendantes : elles sont calculées en parallèle
+        this.decompositions = members.parallelStream()
+            .map(group -> new PatchDecomposition(patches.select(group)))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * @return nombre de groupes effectivement utilisés
+     */
+    public int getClusterCount() { return members.size(); }
+
+    /**
+     * @return nombre de patchs de chaque groupe
+     */
+    public int[] getClusterSizes() {
+        return members.stream().mapToInt(group -> group.length).toArray();
+    }
+
+    /**
+     * @return nombre total de patchs
+     */
+    public int getPatchCount() { return patches.getCount(); }
+
+    /**
+     * Débruite l'image avec une configuration de seuillage (seuil fixe calculé dans chaque groupe).
+     * Les groupes sont seuillés en parallèle puis accumulés dans l'image finale.
+     *
+     * @param variant configuration de seuillage
+     * @return image débruitée
+     */
+    public Image apply(DenoiseSweep.Variant variant) {
+        List<double[][]> denoised = decompositions.parallelStream()
+            .map(decomposition -> Denoiser.denoiseDecomposition(decomposition, variant.getThreshold(),
+                                                                variant.getShrink(), variant.getSigma(), true))
+            .collect(Collectors.toList());
+
+        int side = patches.getSide();
+        PatchAggregator aggregator = new PatchAggregator(image.getWidth(), image.getHeight(), variant.getWindow());
+        for (int c = 0; c < members.size(); c++) {
+            int[] group = members.get(c);
+            double[][] V_denoised = denoised.get(c);
+            for (int k = 0; k < group.length; k++) {
+                aggregator.add(V_denoised, k, side, patches.getXOrigin(group[k]), patches.getYOrigin(group[k]));
+            }
+        }
+        return aggregator.toImage();
+    }
+
+    /**
+     * Débruite l'image pour chacune des configurations, en réutilisant les groupes et leurs ACP.
+     *
+     * @param variants configurations de seuillage
+     * @return images débruitées, dans l'ordre des configurations fournies
+     */
+    public Map<DenoiseSweep.Variant, Image> applyAll(List<DenoiseSweep.Variant> variants) {
+        Map<DenoiseSweep.Variant, Image> results = new LinkedHashMap<>();
+        for (DenoiseSweep.Variant variant : variants) {
+            results.put(variant, apply(variant));
+        }
+        return results;
+    }
+
+    /**
+     * Initialisation k-means++ : chaque nouveau centre est tiré avec une probabilité
+     * proportionnelle au carré de la distance au centre le plus proche.
+     * @return centres initiaux, {@code q} valeurs par centre
+     */
+    private static double[] initCentroids(double[] keys, int q, int k) {
+        int nb = keys.length / q;
+        Random random = new Random(SEED);
+        double[] centroids = new double[k * q];
+        double[] distances = new double[nb];
+        Arrays.fill(distances, Double.MAX_VALUE);
+        int chosen = random.nextInt(nb);
+        for (int c = 0; c < k; c++) {
+            System.arraycopy(keys, chosen * q, centroids, c * q, q);
+            double total = 0;
+            for (int j = 0; j < nb; j++) {
+                distances[j] = Math.min(distances[j], distance(keys, j, centroids, c, q));
+                total += distances[j];
+            }
+            if (c == k - 1) {
+                break;
+            }
+            double target = random.nextDouble() * total;
+            chosen = nb - 1;
+            for (int j = 0; j < nb; j++) {
+                target -= distances[j];
+                if (target <= 0) {
+                    chosen = j;
+                    break;
+                }
+            }
+        }
+        return centroids;
+    }
+
+    /**
+     * Algorithme de Lloyd : affectation de chaque patch au centre le plus proche (en parallèle),
+     * puis recalcul des centres, jusqu'à stabilité des affectations.
+     * @param centroids centres initiaux, mis à jour
+     * @return groupe de chaque patch
+     */
+    private static int[] kMeans(double[] keys, int q, double[] centroids) {
+        int nb = keys.length / q;
+        int k = centroids.length / q;
+        int[] labels = new int[nb];
+        Arrays.fill(labels, -1);
+        for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+            int changed = IntStream.range(0, nb).parallel().map(j -> {
+                int best = nearest(keys, j, centroids, q, k, null);
+                if (best != labels[j]) {
+                    labels[j] = best;
+                    return 1;
+                }
+                return 0;
+            }).sum();
+            if (changed == 0) {
+                break;
+            }
+            updateCentroids(keys, q, labels, centroids);
+        }
+        return labels;
+    }
+
+    /**
+     * Recalcule chaque centre comme la moyenne des clés de son groupe (un groupe vide garde son centre).
+     */
+    private static void updateCentroids(double[] keys, int q, int[] labels, double[] centroids) {
+        int k = centroids.length / q;
+        double[] sums = new double[k * q];
+        int[] counts = new int[k];
+        for (int j = 0; j < labels.length; j++) {
+            counts[labels[j]]++;
+            for (int c = 0; c < q; c++) {
+                sums[labels[j] * q + c] += keys[j * q + c];
+            }
+        }
+        for (int g = 0; g < k; g++) {
+            if (counts[g] > 0) {
+                for (int c = 0; c < q; c++) {
+                    centroids[g * q + c] = sums[g * q + c] / counts[g];
+                }
+            }
+        }
+    }
+
+    /**
+     * Réaffecte les patchs des groupes de moins de {@code minSize} patchs au groupe valide le plus proche,
+     * en commençant par le plus petit groupe, jusqu'à ce que tous les groupes restants soient valides.
+     */
+    private static void mergeSmallClusters(double[] keys, int q, double[] centroids, int[] labels,
+                                           int k, int minSize) {
+        boolean[] valid = new boolean[k];
+        Arrays.fill(valid, true);
+        while (true) {
+            int[] counts = new int[k];
+            for (int label : labels) {
+                counts[label]++;
+            }
+            int smallest = -1;
+            for (int g = 0; g < k; g++) {
+                if (counts[g] == 0) {
+                    valid[g] = false;
+                } else if (valid[g] && counts[g] < minSize && (smallest < 0 || counts[g] < counts[smallest])) {
+                    smallest = g;
+                }
+            }
+            if (smallest < 0) {
+                return;
+            }
+            valid[smallest] = false;
+            for (int j = 0; j < labels.length; j++) {
+                if (labels[j] == smallest) {
+                    labels[j] = nearest(keys, j, centroids, q, k, valid);
+                }
+            }
+        }
+    }
+
+    /**
+     * Liste les patchs de chaque groupe non vide.
+     */
+    private static List<int[]> groupMembers(int[] labels, int k) {
+        int[] counts = new int[k];
+        for (int label : labels) {
+            counts[label]++;
+        }
+        int[][] groups = new int[k][];
+        for (int g = 0; g < k; g++) {
+            groups[g] = new int[counts[g]];
+        }
+        int[] filled = new int[k];
+        for (int j = 0; j < labels.length; j++) {
+            groups[labels[j]][filled[labels[j]]++] = j;
+        }
+        List<int[]> result = new ArrayList<>();
+        for (int[] group : groups) {
+            if (group.length > 0) {
+                result.add(group);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Centre le plus proche d'une clé, parmi les centres autorisés (tous si {@code allowed} est null).
+     */
+    private static int nearest(double[] keys, int j, double[] centroids, int q, int k, boolean[] allowed) {
+        int best = -1;
+        double bestDistance = Double.MAX_VALUE;
+        for (int g = 0; g < k; g++) {
+            if (allowed != null && !allowed[g]) {
+                continue;
+            }
+            double d = distance(keys, j, centroids, g, q);
+            if (d < bestDistance) {
+                bestDistance = d;
+                best = g;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Carré de la distance euclidienne entre la clé {@code j} et le centre {@code g}.
+     */
+    private static double distance(double[] keys, int j, double[] centroids, int g, int q) {
+        double d = 0;
+        for (int c = 0; c < q; c++) {
+            double diff = keys[j * q + c] - centroids[g * q + c];
+            d += diff * diff;
+        }
+        return d;
+    }
+}
@@ -0,0 +1,254 @@
+package core.acp;
+
+import java.util.Objects;
+
+import core.image.PngEncoder;
+import core.patch.AggregationWindow;
+import core.patch.OffHeapPatchMatrix;
+import core.patch.PatchGrid;
+
+/**
+ * Paramètres immuables d'un débruitage de fichier par {@link ImageDenoiser#ImageDen(String, java.util.List, DenoiseOptions)}.
+ *
+ * Les paramètres se donnent par un {@link Builder} ; seuls les écarts types du bruit sont obligatoires.
+ * Le mode de débruitage découle des paramètres, dans cet ordre :
+ * <ul>
+ *   <li>{@code groupSize > 0} : mise en correspondance de blocs ({@link BlockMatchingDenoiser}),
+ *       dans une fenêtre de {@code searchRadius} pixels autour de chaque référence ou dans toute l'image ;</li>
+ *   <li>{@code clusters > 0} : une ACP par groupe de patchs semblables ({@link ClusteredDenoiser}) ;</li>
+ *   <li>{@code stripHeight > 0} : image lue par bandes et écrite au fil de l'eau ;</li>
+ *   <li>{@code offHeap != null} : patchs stockés hors du tas Java ({@link OffHeapPatchMatrix}) ;</li>
+ *   <li>{@code stride > 0} : grille dense de pas fixe ({@link StreamingDenoiser}) ;</li>
+ *   <li>sinon : grille par défaut, méthode globale ou locale ({@link DenoiseSweep}).</li>
+ * </ul>
+ * Ces modes s'excluent : {@link Builder#build()} refuse un paramètre que le mode choisi ignorerait
+ * (regroupement des patchs identiques, bord rembourré ou méthode locale hors de la grille par défaut, par exemple).
+ *
+ * @version 1.0
+ * @see ImageDenoiser
+ */
+public final class DenoiseOptions {
+    private final boolean isGlobal;                         // méthode globale ou locale
+    private final String threshold;                         // seuillage "hard" ou "soft"
+    private final String shrink;                            // seuillage adaptatif "v", "b" ou "w"
+    private final double[] sigmas;                          // une image débruitée par valeur
+    private final double patchPercent;                      // taille des patchs relative au petit côté
+    private final int stride;                               // pas de la grille dense, 0 pour la grille par défaut
+    private final AggregationWindow window;                 // pondération des patchs à la reconstruction
+    private final boolean deduplicate;                      // patchs identiques décomposés une seule fois
+    private final PatchGrid.BorderPolicy border;            // traitement des bords
+    private final int clusters;                             // nombre de groupes de patchs, 0 sans regroupement
+    private final int groupSize;                            // patchs par groupe de blocs, 0 sans mise en correspondance
+    private final int searchRadius;                         // demi-côté de la fenêtre de recherche des blocs, 0 pour toute l'image
+    private final OffHeapPatchMatrix.Storage offHeap;       // stockage hors tas, null pour le tas
+    private final int stripHeight;                          // lignes lues à la fois, 0 pour charger l'image
+    private final PngEncoder encoder;                       // encodeur PNG, null pour ImageIO
+
+    private DenoiseOptions(Builder b) {
+        this.isGlobal = b.isGlobal;
+        this.threshold = b.threshold;
+        this.shrink = b.shrink;
+        this.sigmas = b.sigmas.clone();
+        this.patchPercent = b.patchPercent;
+        this.stride = b.stride;
+        this.window = b.window;
+        this.deduplicate = b.deduplicate;
+        this.border = b.border;
+        this.clusters = b.clusters;
+        this.groupSize = b.groupSize;
+        this.searchRadius = b.searchRadius;
+        this.offHeap = b.offHeap;
+        this.stripHeight = b.stripHeight;
+        this.encoder = b.encoder;
+    }
+
+    /**
+     * @return un constructeur de paramètres, initialisé aux valeurs par défaut
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public boolean isGlobal() { return isGlobal; }
+
+    public String getThreshold() { return threshold; }
+
+    public String getShrink() { return shrink; }
+
+    /**
+     * @return les écarts types du bruit, dans l'ordre des chemins de sortie
+     */
+    public double[] getSigmas() { return sigmas.clone(); }
+
+    public double getPatchPercent() { return patchPercent; }
+
+    public int getStride() { return stride; }
+
+    public AggregationWindow getWindow() { return window; }
+
+    public boolean isDeduplicated() { return deduplicate; }
+
+    public PatchGrid.BorderPolicy getBorder() { return border; }
+
+    public int getClusters() { return clusters; }
+
+    public int getGroupSize() { return groupSize; }
+
+    public int getSearchRadius() { return searchRadius; }
+
+    /**
+     * @return le stockage hors tas des patchs, ou null s'ils restent sur le tas
+     */
+    public OffHeapPatchMatrix.Storage getOffHeap() { return offHeap; }
+
+    public int getStripHeight() { return stripHeight; }
+
+    /**
+     * @return l'encodeur PNG des images débruitées, ou null pour l'écriture par défaut d'ImageIO
+     */
+    public PngEncoder getEncoder() { return encoder; }
+
+    /**
+     * Grille d'extraction décrite par ces paramètres pour une taille de patch donnée.
+     * @param patchSize taille du côté des patchs
+     * @return grille de pas fixe si un pas est donné, grille par défaut sinon, avec la politique de bord choisie
+     */
+    PatchGrid grid(int patchSize) {
+        PatchGrid grid = stride > 0 ? PatchGrid.withStride(patchSize, stride) : PatchGrid.of(patchSize);
+        return grid.withBorder(border);
+    }
+
+    /**
+     * Constructeur des paramètres d'un débruitage. Valeurs par défaut : méthode locale, seuillage dur,
+     * VisuShrink, patchs de 5 % du petit côté, grille par défaut, fenêtre plate, patchs dans l'image,
+     * blocs semblables cherchés dans toute l'image, patchs sur le tas et écriture par ImageIO.
+     */
+    public static final class Builder {
+        private boolean isGlobal = false;
+        private String threshold = "hard";
+        private String shrink = "v";
+        private double[] sigmas;
+        private double patchPercent = ImageDenoiser.DEFAULT_PATCH_PERCENT;
+        private int stride = 0;
+        private AggregationWindow window = AggregationWindow.DEFAULT;
+        private boolean deduplicate = false;
+        private PatchGrid.BorderPolicy border = PatchGrid.BorderPolicy.INSIDE;
+        private int clusters = 0;
+        private int groupSize = 0;
+        private int searchRadius = BlockMatchingDenoiser.DEFAULT_SEARCH_RADIUS;
+        private OffHeapPatchMatrix.Storage offHeap = null;
+        private int stripHeight = 0;
+        private PngEncoder encoder = null;
+
+        private Builder() {
+        }
+
+        public Builder global(boolean isGlobal) { this.isGlobal = isGlobal; return this; }
+
+        public Builder threshold(String threshold) { this.threshold = threshold; return this; }
+
+        public Builder shrink(String shrink) { this.shrink = shrink; return this; }
+
+        /**
+         * @param sigmas écarts types du bruit, une image débruitée par valeur (si &lt;= 0, estimé)
+         * @return ce constructeur
+         */
+        public Builder sigmas(double... sigmas) { this.sigmas = sigmas.clone(); return this; }
+
+        public Builder patchPercent(double patchPercent) { this.patchPercent = patchPercent; return this; }
+
+        /**
+         * @param stride pas de la grille dense de patchs (0 pour la grille par défaut)
+         * @return ce constructeur
+         */
+        public Builder stride(int stride) { this.stride = stride; return this; }
+
+        public Builder window(AggregationWindow window) { this.window = window; return this; }
+
+        public Builder deduplicate(boolean deduplicate) { this.deduplicate = deduplicate; return this; }
+
+        public Builder border(PatchGrid.BorderPolicy border) { this.border = border; return this; }
+
+        /**
+         * @param clusters nombre de groupes de patchs semblables (0 pour ne pas regrouper)
+         * @return ce constructeur
+         */
+        public Builder clusters(int clusters) { this.clusters = clusters; return this; }
+
+        /**
+         * @param groupSize nombre de patchs par groupe de blocs semblables (0 pour ne pas l'utiliser)
+         * @return ce constructeur
+         */
+        public Builder groupSize(int groupSize) { this.groupSize = groupSize; return this; }
+
+        /**
+         * @param searchRadius demi-côté en pixels de la fenêtre de recherche des blocs semblables (0 pour toute l'image)
+         * @return ce constructeur
+         */
+        public Builder searchRadius(int searchRadius) { this.searchRadius = searchRadius; return this; }
+
+        /**
+         * @param offHeap stockage des patchs hors tas, ou null pour le tas
+         * @return ce constructeur
+         */
+        public Builder offHeap(OffHeapPatchMatrix.Storage offHeap) { this.offHeap = offHeap; return this; }
+
+        /**
+         * @param stripHeight nombre de lignes lues à la fois (0 pour charger l'image entière)
+         * @return ce constructeur
+         */
+        public Builder stripHeight(int stripHeight) { this.stripHeight = stripHeight; return this; }
+
+        /**
+         * @param encoder encodeur PNG des images débruitées, ou null pour l'écriture par défaut d'ImageIO
+         * @return ce constructeur
+         */
+        public Builder encoder(PngEncoder encoder) { this.encoder = encoder; return this; }
+
+        /**
+         * Vérifie les paramètres et les fige.
+         * @return paramètres du débruitage
+         * @throws IllegalArgumentException si un paramètre est invalide ou ignoré par le mode choisi
+         */
+        public DenoiseOptions build() {
+            Objects.requireNonNull(threshold, "Le type de seuillage ne peut pas être nul");
+            Objects.requireNonNull(shrink, "Le type de seuillage adaptatif ne peut pas être nul");
+            Objects.requireNonNull(window, "La fenêtre de reconstruction ne peut pas être nulle");
+            Objects.requireNonNull(border, "La politique de bord ne peut pas être nulle");
+            if (!threshold.equalsIgnoreCase("hard") && !threshold.equalsIgnoreCase("soft")) {
+                throw new IllegalArgumentException("Type de seuillage non supporté: " + threshold + ". Utilisez 'hard'/'h' ou 'soft'/'s'");
+            }
+            if (!shrink.equalsIgnoreCase("v") && !shrink.equalsIgnoreCase("b") && !shrink.equalsIgnoreCase("w")) {
+                throw new IllegalArgumentException("Type de seuillage adaptatif non supporté: " + shrink
+                                                   + ". Utilisez 'v' (VisuShrink), 'b' (BayesShrink) ou 'w' (Wiener)");
+            }
+            if (sigmas == null || sigmas.length == 0) {
+                throw new IllegalArgumentException("Au moins une valeur de sigma est nécessaire");
+            }
+            if (!(patchPercent > 0 && patchPercent <= 1)) {
+                throw new IllegalArgumentException("Le pourcentage de taille de patch doit être entre 0 et 1");
+            }
+            if (stride < 0 || clusters < 0 || groupSize < 0 || searchRadius < 0 || stripHeight < 0) {
+                throw new IllegalArgumentException("Le pas, le nombre de groupes, la taille des groupes, le rayon de recherche et la hauteur des bandes doivent être positifs");
+            }
+            if (searchRadius > 0 && groupSize == 0) {
+                throw new IllegalArgumentException("Le rayon de recherche n'est utilisé que par la mise en correspondance de blocs");
+            }
+            int modes = (groupSize > 0 ? 1 : 0) + (clusters > 0 ? 1 : 0) + (stripHeight > 0 ? 1 : 0) + (offHeap != null ? 1 : 0);
+            if (modes > 1) {
+                throw new IllegalArgumentException("Mise en correspondance de blocs, regroupement, lecture par bandes et stockage hors tas s'excluent");
+            }
+            boolean defaultGrid = modes == 0 && stride == 0;
+            if (!isGlobal && !defaultGrid) {
+                throw new IllegalArgumentException("La méthode locale n'est disponible qu'avec la grille par défaut");
+            }
+            if (deduplicate && !defaultGrid) {
+                throw new IllegalArgumentException("Le regroupement des patchs identiques n'est disponible qu'avec la grille par défaut");
+            }
+            if (border != PatchGrid.BorderPolicy.INSIDE && (modes > 0 || deduplicate)) {
+                throw new IllegalArgumentException("Un bord rembourré n'est disponible qu'avec la grille par défaut ou la grille dense, sans regroupement des patchs identiques");
+            }
+            return new DenoiseOptions(this);
+        }
+    }
+}
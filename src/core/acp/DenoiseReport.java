@@ -0,0 +1,189 @@
+package core.acp;
+
+import core.image.StripReader;
+import core.patch.OffHeapPatchMatrix;
+
+/**
+ * Compte rendu d'un débruitage de fichier par {@link ImageDenoiser#ImageDen(String, java.util.List, DenoiseOptions)} :
+ * combien de patchs ont été traités et comment. Le cœur du débruitage n'écrit rien sur la sortie standard ;
+ * c'est à l'appelant (la ligne de commande, par exemple) d'afficher ce qui l'intéresse.
+ *
+ * Seules les valeurs du mode utilisé sont renseignées ; les autres restent à 0.
+ *
+ * @version 1.0
+ * @see DenoiseOptions
+ */
+public final class DenoiseReport {
+    private int patchCount;             // patchs de la grille
+    private int flatPatchCount;         // patchs uniformes remplacés par leur moyenne
+    private boolean deduplicated;       // patchs identiques regroupés avant l'ACP
+    private int duplicatePatchCount;    // patchs identiques à un patch déjà décomposé
+    private int clusterCount;           // groupes de patchs formés, 0 sans regroupement
+    private int requestedClusterCount;  // groupes de patchs demandés
+    private int groupCount;             // groupes de blocs semblables, 0 sans mise en correspondance
+    private OffHeapPatchMatrix.Storage offHeap;  // stockage hors tas, null si les patchs sont sur le tas
+    private long offHeapByteSize;       // octets stockés hors tas
+    private int width;                  // largeur de l'image lue par bandes
+    private int height;                 // hauteur de l'image lue par bandes
+    private int stripHeight;            // lignes lues à la fois, 0 si l'image a été chargée entièrement
+    private int decodedStripCount;      // bandes décodées, relectures comprises
+
+    private DenoiseReport() {
+    }
+
+    /**
+     * @return compte rendu sans statistique (grille dense)
+     */
+    static DenoiseReport empty() {
+        return new DenoiseReport();
+    }
+
+    /**
+     * @param sweep balayage préparé sur la grille par défaut
+     * @param deduplicated true si le balayage regroupe les patchs identiques
+     * @return compte rendu des patchs uniformes et des patchs identiques du balayage
+     */
+    static DenoiseReport of(DenoiseSweep sweep, boolean deduplicated) {
+        DenoiseReport report = new DenoiseReport();
+        report.patchCount = sweep.getPatchCount();
+        report.flatPatchCount = sweep.getFlatPatchCount();
+        report.deduplicated = deduplicated;
+        report.duplicatePatchCount = deduplicated ? sweep.getDuplicatePatchCount() : 0;
+        return report;
+    }
+
+    /**
+     * @param denoiser débruiteur par groupes de patchs semblables
+     * @param requested nombre de groupes demandé
+     * @return compte rendu des groupes formés
+     */
+    static DenoiseReport of(ClusteredDenoiser denoiser, int requested) {
+        DenoiseReport report = new DenoiseReport();
+        report.patchCount = denoiser.getPatchCount();
+        report.clusterCount = denoiser.getClusterCount();
+        report.requestedClusterCount = requested;
+        return report;
+    }
+
+    /**
+     * @param denoiser débruiteur par mise en correspondance de blocs
+     * @return compte rendu des groupes de blocs semblables
+     */
+    static DenoiseReport of(BlockMatchingDenoiser denoiser) {
+        DenoiseReport report = new DenoiseReport();
+        report.patchCount = denoiser.getPatchCount();
+        report.groupCount = denoiser.getGroupCount();
+        return report;
+    }
+
+    /**
+     * @param patches patchs extraits hors du tas
+     * @param storage support du stockage hors tas
+     * @return compte rendu du stockage hors tas
+     */
+    static DenoiseReport of(OffHeapPatchMatrix patches, OffHeapPatchMatrix.Storage storage) {
+        DenoiseReport report = new DenoiseReport();
+        report.patchCount = patches.getCount();
+        report.offHeap = storage;
+        report.offHeapByteSize = patches.getByteSize();
+        return report;
+    }
+
+    /**
+     * @param strips lecteur de l'image par bandes, une fois toutes les sorties écrites
+     * @return compte rendu de la lecture par bandes
+     */
+    static DenoiseReport of(StripReader strips) {
+        DenoiseReport report = new DenoiseReport();
+        report.width = strips.getWidth();
+        report.height = strips.getHeight();
+        report.stripHeight = strips.getStripHeight();
+        report.decodedStripCount = strips.getDecodedStrips();
+        return report;
+    }
+
+    /**
+     * @return nombre de patchs de la grille, ou 0 si le mode ne le renseigne pas
+     */
+    public int getPatchCount() { return patchCount; }
+
+    /**
+     * @return nombre de patchs uniformes exclus de l'ACP et remplacés par leur moyenne
+     */
+    public int getFlatPatchCount() { return flatPatchCount; }
+
+    /**
+     * @return true si les patchs identiques ont été regroupés avant l'ACP
+     */
+    public boolean isDeduplicated() { return deduplicated; }
+
+    /**
+     * @return nombre de patchs identiques à un patch déjà décomposé, débruités une seule fois
+     */
+    public int getDuplicatePatchCount() { return duplicatePatchCount; }
+
+    /**
+     * @return true si les patchs ont été regroupés, une ACP par groupe
+     */
+    public boolean isClustered() { return clusterCount > 0; }
+
+    /**
+     * @return nombre de groupes de patchs effectivement formés (au plus le nombre demandé)
+     */
+    public int getClusterCount() { return clusterCount; }
+
+    /**
+     * @return nombre de groupes de patchs demandé
+     */
+    public int getRequestedClusterCount() { return requestedClusterCount; }
+
+    /**
+     * @return true si le débruitage s'est fait par mise en correspondance de blocs
+     */
+    public boolean isBlockMatching() { return groupCount > 0; }
+
+    /**
+     * @return nombre de groupes de blocs semblables (un par patch de référence)
+     */
+    public int getGroupCount() { return groupCount; }
+
+    /**
+     * @return true si les patchs ont été stockés hors du tas Java
+     */
+    public boolean isOffHeap() { return offHeap != null; }
+
+    /**
+     * @return support du stockage hors tas, ou null si les patchs sont restés sur le tas
+     */
+    public OffHeapPatchMatrix.Storage getOffHeapStorage() { return offHeap; }
+
+    /**
+     * @return nombre d'octets stockés hors du tas
+     */
+    public long getOffHeapByteSize() { return offHeapByteSize; }
+
+    /**
+     * @return true si l'image a été lue par bandes sans être chargée entièrement
+     */
+    public boolean isStriped() { return stripHeight > 0; }
+
+    /**
+     * @return largeur de l'image lue par bandes
+     */
+    public int getWidth() { return width; }
+
+    /**
+     * @return hauteur de l'image lue par bandes
+     */
+    public int getHeight() { return height; }
+
+    /**
+     * @return nombre de lignes lues à la fois
+     */
+    public int getStripHeight() { return stripHeight; }
+
+    /**
+     * @return nombre de bandes décodées, relectures pour chaque passe et chaque sortie comprises
+     */
+    public int getDecodedStripCount() { return decodedStripCount; }
+}
@@ -0,0 +1,437 @@
+package core.acp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import core.image.Image;
+import core.image.ImageStatistics;
+import core.image.ImageTile;
+import core.patch.AggregationWindow;
+import core.patch.DuplicatePatches;
+import core.patch.FlatPatchDetector;
+import core.patch.PatchAggregator;
+import core.patch.PatchExtractor;
+import core.patch.PatchGrid;
+import core.patch.PatchMatrix;
+import core.patch.PatchView;
+import core.patch.ReadablePatch;
+
+/**
+ * Balayage de paramètres de débruitage partageant une seule décomposition ACP.
+ *
+ * L'extraction des patchs et l'ACP ne dépendent que de l'image, de la méthode (globale ou locale)
+ * et de la taille des patchs. Cette classe les calcule une seule fois à la construction,
+ * puis applique uniquement le seuillage et la reconstruction pour chaque {@link Variant} demandée.
+ * Les variantes sont indépendantes et peuvent être évaluées en parallèle ; les images résultantes
+ * restent en mémoire (aucune écriture sur disque).
+ *
+ * Si l'écart type du bruit est connu, les patchs uniformes (variance nettement inférieure à σ², détectée en O(1)
+ * par {@link FlatPatchDetector}) sont exclus de l'ACP et remplacés directement par leur moyenne.
+ * Les images intégrales ({@link ImageStatistics}) sont calculées une seule fois pour toute l'image
+ * et partagées entre les imagettes.
+ *
+ * Sur demande, les patchs identiques pixel à pixel ({@link DuplicatePatches}) ne sont décomposés
+ * et débruités qu'une fois, le résultat étant réutilisé pour chacun d'eux à la reconstruction.
+ * L'ACP tenant compte du nombre de répétitions, l'image débruitée est la même que sans regroupement (aux arrondis près).
+ *
+ * @version 1.4
+ * @see PatchDecomposition
+ * @see PatchGrid
+ * @see ImageDenoiser
+ */
+public class DenoiseSweep {
+    public static final int DEFAULT_NUM_IMAGETTES = 16;
+    private static final double TILE_PATCH_PERCENT = 0.05;   // taille de patch des imagettes en mode local
+
+    private final Image image;              // image bruitée
+    private final boolean isGlobal;         // méthode globale ou locale
+    private final List<Region> regions;     // image entière (global) ou imagettes (local), déjà décomposées
+
+    /**
+     * Prépare un balayage : extraction des patchs et ACP (une fois par imagette en mode local).
+     * Les paramètres sont donnés par {@link #builder(Image, PatchGrid)}.
+     */
+    private DenoiseSweep(Builder b) {
+        this.image = b.image;
+        this.isGlobal = b.isGlobal;
+        ImageStatistics stats = b.flatSigma > 0 && b.statistics == null ? new ImageStatistics(b.image) : b.statistics;
+        if (b.isGlobal) {
+            Region region = prepare(b.image, b.grid, b.flatSigma, stats, b.deduplicate);
+            if (region.patches == null) {
+                throw new IllegalStateException("Impossible d'extraire les patchs de l'image");
+            }
+            this.regions = List.of(region);
+        } else {
+            List<ImageTile> tiles = PatchExtractor.decoupeImage(b.image, b.numImagettes);
+            if (tiles == null || tiles.isEmpty()) {
+                throw new IllegalStateException("Impossible de découper l'image en imagettes");
+            }
+            // Les imagettes sont indépendantes : leurs ACP sont calculées en parallèle
+            this.regions = tiles.parallelStream()
+                .map(tile -> prepare(tile, b.grid.withSide(ImageDenoiser.calculateAdaptivePatchSize(
+                    tile.getWidth(), tile.getHeight(), TILE_PATCH_PERCENT)), b.flatSigma, stats, b.deduplicate))
+                .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Paramètres d'un balayage sur une grille donnée. Par défaut : méthode globale, {@link #DEFAULT_NUM_IMAGETTES}
+     * imagettes en mode local, aucun patch uniforme exclu, statistiques calculées si nécessaire,
+     * patchs identiques décomposés séparément.
+     *
+     * @param image image à débruiter
+     * @param grid grille d'extraction (sa taille de patch est utilisée en mode global ; en mode local, chaque
+     *             imagette utilise la densité et les bords de la grille avec sa propre taille de patch)
+     * @return constructeur du balayage
+     */
+    public static Builder builder(Image image, PatchGrid grid) {
+        return new Builder(image, grid);
+    }
+
+    /**
+     * Constructeur d'un {@link DenoiseSweep}.
+     */
+    public static final class Builder {
+        private final Image image;
+        private final PatchGrid grid;
+        private boolean isGlobal = true;
+        private int numImagettes = DEFAULT_NUM_IMAGETTES;
+        private double flatSigma = 0;
+        private ImageStatistics statistics = null;
+        private boolean deduplicate = false;
+
+        private Builder(Image image, PatchGrid grid) {
+            this.image = Objects.requireNonNull(image, "L'image ne peut pas être nulle");
+            this.grid = Objects.requireNonNull(grid, "La grille ne peut pas être nulle");
+        }
+
+        /**
+         * @param isGlobal true pour la méthode globale, false pour la méthode locale
+         * @return ce constructeur
+         */
+        public Builder global(boolean isGlobal) { this.isGlobal = isGlobal; return this; }
+
+        /**
+         * @param numImagettes nombre approximatif d'imagettes en mode local
+         * @return ce constructeur
+         */
+        public Builder numImagettes(int numImagettes) { this.numImagettes = numImagettes; return this; }
+
+        /**
+         * @param flatSigma écart type du bruit sous lequel un patch est considéré uniforme et exclu de l'ACP
+         *                  (le plus petit sigma des variantes ; si &lt;= 0, aucun patch n'est exclu)
+         * @return ce constructeur
+         */
+        public Builder flatSigma(double flatSigma) { this.flatSigma = flatSigma; return this; }
+
+        /**
+         * @param statistics statistiques déjà calculées de l'image, ou null pour les calculer si nécessaire
+         * @return ce constructeur
+         */
+        public Builder statistics(ImageStatistics statistics) { this.statistics = statistics; return this; }
+
+        /**
+         * @param deduplicate true pour ne décomposer qu'une fois les patchs identiques
+         * @return ce constructeur
+         */
+        public Builder deduplicate(boolean deduplicate) { this.deduplicate = deduplicate; return this; }
+
+        /**
+         * Extrait les patchs et calcule l'ACP.
+         * @return balayage prêt à être appliqué
+         * @throws IllegalStateException si aucun patch ne peut être extrait
+         */
+        public DenoiseSweep build() {
+            return new DenoiseSweep(this);
+        }
+    }
+
+    /**
+     * Extrait les patchs d'une région, écarte les patchs uniformes et calcule l'ACP des autres.
+     * @param region image entière ou imagette
+     * @param grid grille d'extraction
+     * @param flatSigma écart type du bruit pour la détection des patchs uniformes (si &lt;= 0, désactivée)
+     * @param statistics statistiques de l'image entière (utilisées si flatSigma &gt; 0)
+     * @param deduplicate true pour ne décomposer qu'une fois les patchs identiques (sans effet sur une grille rembourrée)
+     * @return région préparée (sans patchs si aucun ne peut être extrait,
+     *         sans décomposition si tous les patchs sont uniformes)
+     */
+    private static Region prepare(Image region, PatchGrid grid, double flatSigma, ImageStatistics statistics,
+                                  boolean deduplicate) {
+        int patchSize = grid.getSide();
+        // Extraction directe dans la matrice attendue par l'ACP, sans objet Patch intermédiaire
+        PatchMatrix patches = PatchExtractor.extractPatchMatrix(region, grid);
+        if (patches == null || patches.getCount() == 0) {
+            return new Region(region, patchSize, null, null, null, null);
+        }
+
+        // Moyenne des patchs uniformes (null pour les patchs qui passent par l'ACP)
+        int[] flatMeans = null;
+        int flatCount = 0;
+        if (flatSigma > 0) {
+            FlatPatchDetector detector = new FlatPatchDetector(statistics, region);
+            flatMeans = new int[patches.getCount()];
+            for (int i = 0; i < patches.getCount(); i++) {
+                int x = patches.getXOrigin(i);
+                int y = patches.getYOrigin(i);
+                // Un patch qui déborde de la région (grille rembourrée) passe toujours par l'ACP
+                boolean inside = x >= 0 && y >= 0 && x + patchSize <= region.getWidth() && y + patchSize <= region.getHeight();
+                if (inside && detector.isFlat(x, y, patchSize, flatSigma)) {
+                    flatMeans[i] = (int) Math.round(detector.mean(x, y, patchSize));
+                    flatCount++;
+                } else {
+                    flatMeans[i] = -1;
+                }
+            }
+            // La covariance exige au moins autant de patchs que la dimension d'un patch :
+            // si trop peu de patchs restent, ils passent tous par l'ACP
+            int remaining = patches.getCount() - flatCount;
+            if (remaining > 0 && remaining < patchSize * patchSize) {
+                flatMeans = null;
+                flatCount = 0;
+            }
+        }
+        if (flatCount == patches.getCount()) {
+            return new Region(region, patchSize, patches, flatMeans, null, null);
+        }
+
+        // Colonne de la décomposition utilisée par chaque patch (-1 pour les patchs uniformes) :
+        // les patchs identiques partagent la colonne du premier d'entre eux
+        DuplicatePatches duplicates = deduplicate && !grid.isPadded() ? DuplicatePatches.find(region, patches) : null;
+        int[] groupColumn = duplicates != null ? new int[duplicates.getUniqueCount()] : null;
+        if (groupColumn != null) {
+            Arrays.fill(groupColumn, -1);
+        }
+        int[] columns = new int[patches.getCount()];
+        int[] kept = new int[patches.getCount()];
+        int[] multiplicities = new int[patches.getCount()];
+        int columnCount = 0;
+        for (int i = 0; i < patches.getCount(); i++) {
+            if (flatCount > 0 && flatMeans[i] >= 0) {
+                columns[i] = -1;
+                continue;
+            }
+            int group = duplicates != null ? duplicates.groupOf(i) : -1;
+            if (group >= 0 && groupColumn[group] >= 0) {
+                columns[i] = groupColumn[group];
+                multiplicities[columns[i]]++;
+            } else {
+                columns[i] = columnCount;
+                kept[columnCount] = i;
+                multiplicities[columnCount] = 1;
+                if (group >= 0) {
+                    groupColumn[group] = columnCount;
+                }
+                columnCount++;
+            }
+        }
+        int pcaCount = patches.getCount() - flatCount;
+        PatchMatrix pcaPatches = columnCount == patches.getCount() ? patches
+                               : patches.select(Arrays.copyOf(kept, columnCount));
+        PatchDecomposition decomposition = columnCount == pcaCount ? new PatchDecomposition(pcaPatches)
+            : new PatchDecomposition(pcaPatches, Arrays.copyOf(multiplicities, columnCount));
+        return new Region(region, patchSize, patches, flatCount == 0 ? null : flatMeans, decomposition, columns);
+    }
+
+    /**
+     * Débruite l'image avec une configuration de seuillage, en réutilisant la décomposition.
+     * Les patchs débruités de toutes les régions sont accumulés directement dans l'image finale
+     * (moyenne des contributions de chaque pixel, pondérée par la fenêtre de la variante),
+     * sans reconstruire d'imagette intermédiaire.
+     *
+     * @param variant configuration de seuillage
+     * @return image débruitée
+     */
+    public Image apply(Variant variant) {
+        PatchAggregator aggregator = new PatchAggregator(image.getWidth(), image.getHeight(), variant.getWindow());
+        for (Region region : regions) {
+            int offsetX = region.image instanceof ImageTile tile ? tile.getPosX() : 0;
+            int offsetY = region.image instanceof ImageTile tile ? tile.getPosY() : 0;
+            if (region.patches == null) {
+                // Si l'imagette est trop petite pour extraire des patchs, la conserver telle quelle
+                aggregator.add(region.image, offsetX, offsetY);
+                continue;
+            }
+            for (ReadablePatch patch : denoiseRegion(region, variant)) {
+                aggregator.add(patch, offsetX, offsetY, region.image.getWidth(), region.image.getHeight());
+            }
+        }
+        return aggregator.toImage();
+    }
+
+    /**
+     * Débruite l'image pour chacune des configurations, en parallèle.
+     *
+     * @param variants configurations de seuillage à évaluer
+     * @return images débruitées, dans l'ordre des configurations fournies
+     */
+    public Map<Variant, Image> applyAll(List<Variant> variants) {
+        List<Image> denoised = variants.parallelStream()
+            .map(this::apply)
+            .collect(Collectors.toList());
+        Map<Variant, Image> results = new LinkedHashMap<>();
+        for (int i = 0; i < variants.size(); i++) {
+            results.put(variants.get(i), denoised.get(i));
+        }
+        return results;
+    }
+
+    /**
+     * @return true si la méthode globale est utilisée
+     */
+    public boolean isGlobal() { return isGlobal; }
+
+    /**
+     * @return nombre total de patchs extraits (toutes imagettes confondues)
+     */
+    public int getPatchCount() {
+        return regions.stream().filter(r -> r.patches != null).mapToInt(r -> r.patches.getCount()).sum();
+    }
+
+    /**
+     * @return nombre de patchs identiques à un patch déjà décomposé, débruités une seule fois
+     */
+    public int getDuplicatePatchCount() {
+        return regions.stream().filter(r -> r.decomposition != null)
+            .mapToInt(r -> r.decomposition.getPatchCount() - r.decomposition.getColumnCount()).sum();
+    }
+
+    /**
+     * @return nombre de patchs uniformes remplacés par leur moyenne sans passer par l'ACP
+     */
+    public int getFlatPatchCount() {
+        return regions.stream().mapToInt(r -> r.flatCount).sum();
+    }
+
+    /**
+     * Seuille les coefficients d'une région et reconvertit le résultat en patchs.
+     * Les patchs débruités sont des vues sur un seul tableau d'octets ; les patchs uniformes
+     * de même moyenne partagent un même tableau constant.
+     */
+    private List<ReadablePatch> denoiseRegion(Region region, Variant variant) {
+        int side = region.patchSize;
+        int dim = side * side;
+        byte[] denoisedBytes = new byte[0];
+        if (region.decomposition != null) {
+            double[][] V_denoised = Denoiser.denoiseDecomposition(region.decomposition,
+                variant.getThreshold(), variant.getShrink(), variant.getSigma(), isGlobal);
+            denoisedBytes = Denoiser.toPatchBytes(V_denoised);
+        }
+        byte[][] uniform = new byte[256][];     // patch constant pour chaque niveau de gris rencontré
+        List<ReadablePatch> denoisedPatches = new ArrayList<>(region.patches.getCount());
+        for (int i = 0; i < region.patches.getCount(); i++) {
+            int x = region.patches.getXOrigin(i);
+            int y = region.patches.getYOrigin(i);
+            if (region.flatMeans != null && region.flatMeans[i] >= 0) {
+                int mean = region.flatMeans[i];
+                if (uniform[mean] == null) {
+                    uniform[mean] = new byte[dim];
+                    Arrays.fill(uniform[mean], (byte) mean);
+                }
+                denoisedPatches.add(new PatchView(uniform[mean], 0, side, x, y, side));
+            } else {
+                denoisedPatches.add(new PatchView(denoisedBytes, region.columns[i] * dim, side, x, y, side));
+            }
+        }
+        return denoisedPatches;
+    }
+
+    /**
+     * Image entière ou imagette, avec ses patchs et l'ACP de ses patchs non uniformes.
+     */
+    private static final class Region {
+        private final Image image;
+        private final int patchSize;
+        private final PatchMatrix patches;              // null si aucun patch ne peut être extrait
+        private final int[] flatMeans;                  // moyenne de chaque patch uniforme, -1 sinon (null si aucun)
+        private final int flatCount;
+        private final PatchDecomposition decomposition; // null si tous les patchs sont uniformes
+        private final int[] columns;                    // colonne de la décomposition de chaque patch (-1 si uniforme)
+
+        private Region(Image image, int patchSize, PatchMatrix patches, int[] flatMeans,
+                       PatchDecomposition decomposition, int[] columns) {
+            this.image = image;
+            this.patchSize = patchSize;
+            this.patches = patches;
+            this.flatMeans = flatMeans;
+            this.decomposition = decomposition;
+            this.columns = columns;
+            int count = 0;
+            if (flatMeans != null) {
+                for (int mean : flatMeans) {
+                    if (mean >= 0) count++;
+                }
+            }
+            this.flatCount = count;
+        }
+    }
+
+    /**
+     * Configuration de seuillage appliquée à une décomposition : type de seuillage,
+     * méthode de calcul du seuil et écart type du bruit.
+     */
+    public static final class Variant {
+        private final String threshold;
+        private final String shrink;
+        private final double sigma;
+        private final AggregationWindow window;
+
+        /**
+         * Configuration reconstruite avec la fenêtre par défaut ({@link AggregationWindow#DEFAULT}).
+         * @param threshold type de seuillage ("hard" ou "soft")
+         * @param shrink type de seuillage adaptatif ("v" pour VisuShrink, "b" pour BayesShrink, "w" pour Wiener)
+         * @param sigma écart type du bruit (si &lt;= 0, il sera estimé)
+         */
+        public Variant(String threshold, String shrink, double sigma) {
+            this(threshold, shrink, sigma, AggregationWindow.DEFAULT);
+        }
+
+        /**
+         * @param threshold type de seuillage ("hard" ou "soft")
+         * @param shrink type de seuillage adaptatif ("v" pour VisuShrink, "b" pour BayesShrink, "w" pour Wiener)
+         * @param sigma écart type du bruit (si &lt;= 0, il sera estimé)
+         * @param window fenêtre de pondération des patchs à la reconstruction
+         */
+        public Variant(String threshold, String shrink, double sigma, AggregationWindow window) {
+            this.threshold = threshold;
+            this.shrink = shrink;
+            this.sigma = sigma;
+            this.window = Objects.requireNonNull(window, "La fenêtre de reconstruction ne peut pas être nulle");
+        }
+
+        public String getThreshold() { return threshold; }
+
+        public String getShrink() { return shrink; }
+
+        public double getSigma() { return sigma; }
+
+        public AggregationWindow getWindow() { return window; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Variant)) return false;
+            Variant v = (Variant) o;
+            return Double.compare(sigma, v.sigma) == 0
+                && threshold.equalsIgnoreCase(v.threshold)
+                && shrink.equalsIgnoreCase(v.shrink)
+                && window == v.window;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(threshold.toLowerCase(), shrink.toLowerCase(), sigma, window);
+        }
+
+        @Override
+        public String toString() {
+            String name = threshold + "_" + shrink + "_" + sigma;
+            return window == AggregationWindow.DEFAULT ? name : name + "_" + window.name().toLowerCase();
+        }
+    }
+}
@@ -96,41 +96,64 @@ public class Denoiser {
      * 
      * @param V matrice des patchs bruitée (s² x M)
      * @param threshold type de seuillage ("hard" ou "soft")
-     * @param shrinkType type de calcul du seuil ("v" pour VisuShrink, "b" pour BayesShrink)
+     * @param shrinkType type de calcul du seuil ("v" pour VisuShrink, "b" pour BayesShrink, "w" pour Wiener)
      * @param sigma écart type du bruit (si connu, sinon sera estimé)
      * @param isGlobal true pour ACP globale, false pour ACP locale
      * @return matrice des patchs débruités
      */
     public static double[][] denoisePatchesWithPCA(double[][] V, String threshold, 
                                                  String shrinkType, double sigma, boolean isGlobal) {
-        // 1. Effectuer l'ACP sur les patchs
-        ACP.Triple<double[][], double[], double[][]> acpResult = ACP.acp(V);
-        double[][] vecteursPropres = acpResult.first;    // Vecteurs propres (U)
-        double[] valeursPropres = acpResult.second;      // Valeurs propres
-        double[][] alpha = acpResult.third;              // Coefficients projetés
+        // 1. Effectuer l'ACP sur les patchs (vecteur moyen, vecteurs propres, valeurs propres, coefficients)
+        PatchDecomposition decomposition = new PatchDecomposition(V);
         
-        // 2. Obtenir le vecteur moyen
-        ACP.Triple<double[], double[][], double[][]> moyResult = ACP.MoyCov(V);
-        double[] mV = moyResult.first;                   // Vecteur moyen
+        // 2. Seuiller les coefficients et reconstruire les patchs
+        return denoiseDecomposition(decomposition, threshold, shrinkType, sigma, isGlobal);
+    }
+    
+    /**
+     * Débruite des patchs dont l'ACP a déjà été calculée.
+     * Seuls le calcul du seuil, le seuillage et la reconstruction sont effectués : la même décomposition
+     * peut ainsi servir à plusieurs configurations, éventuellement en parallèle (elle n'est pas modifiée).
+     * 
+     * @param decomposition ACP des patchs bruités
+     * @param threshold type de seuillage ("hard" ou "soft")
+     * @param shrinkType type de calcul du seuil ("v" pour VisuShrink, "b" pour BayesShrink,
+     *                   "w" pour le filtrage linéaire de Wiener, qui ignore {@code threshold})
+     * @param sigma écart type du bruit (si connu, sinon sera estimé)
+     * @param isGlobal true pour ACP globale, false pour ACP locale
+     * @return matrice des patchs débruités (s² x M)
+     */
+    public static double[][] denoiseDecomposition(PatchDecomposition decomposition, String threshold,
+                                                  String shrinkType, double sigma, boolean isGlobal) {
+        // Filtrage linéaire de Wiener : pas de seuillage des coefficients, voie rapide
+        if (shrinkType.equalsIgnoreCase("w")) {
+            return denoiseWiener(decomposition, sigma);
+        }
+        
+        double[][] vecteursPropres = decomposition.getEigenVectors();   // Vecteurs propres (U)
+        double[] valeursPropres = decomposition.getEigenValues();       // Valeurs propres
+        double[][] alpha = decomposition.getAlpha();                    // Coefficients projetés
+        double[] mV = decomposition.getMean();                          // Vecteur moyen
+        int dim = decomposition.getDimension();
+        int nb = decomposition.getPatchCount();
         
         // 3. Estimer sigma si non fourni
         double sigmaNoise = sigma;
         if (sigmaNoise <= 0) {
             // Utiliser un pourcentage des dernières composantes pour estimer le bruit
-            int startIdx = (int) (0.75 * alpha.length);
-            sigmaNoise = Tresholding.estimateNoiseFromPCACoefficients(alpha, startIdx);
+            sigmaNoise = decomposition.getEstimatedSigma();
         }
         
         // 4. Calculer le seuil selon la méthode choisie
         double lambda;
-        int totalPixels = V.length * V[0].length;  // Nombre total de pixels
+        int totalPixels = dim * nb;  // Nombre total de pixels
         
         if (shrinkType.equalsIgnoreCase("v")) {
             // VisuShrink
             lambda = Tresholding.calculateVisuShrinkThreshold(sigmaNoise, totalPixels);
         } else if (shrinkType.equalsIgnoreCase("b")) {
             // BayesShrink - calculer la variance des coefficients
-            double coeffVariance = calculateVariance(alpha);
+            double coeffVariance = decomposition.getCoefficientVariance();
             lambda = Tresholding.calculateBayesShrinkThreshold(sigmaNoise, coeffVariance);
         } else {
             throw new IllegalArgumentException("Type de seuillage adaptatif non reconnu: " + shrinkType);
@@ -147,18 +170,31 @@ public class Denoiser {
         }
         
         // 6. Reconstruire les patchs à partir des coefficients seuillés
-        // V_denoised = mV + U * alpha_denoised
+        return reconstruct(vecteursPropres, mV, alphaDenoised);
+    }
+    
+    /**
+     * Reconstruit les patchs à partir de coefficients (seuillés) : V_denoised = mV + U * alpha.
+     * 
+     * @param vecteursPropres matrice (s² x s²) des vecteurs propres (colonnes)
+     * @param mV vecteur moyen (taille s²)
+     * @param alpha coefficients (s² x M)
+     * @return matrice des patchs reconstruits (s² x M)
+     */
+    public static double[][] reconstruct(double[][] vecteursPropres, double[] mV, double[][] alpha) {
+        int dim = mV.length;
+        int nb = alpha[0].length;
         RealMatrix U = new Array2DRowRealMatrix(vecteursPropres);
-        RealMatrix alphaDenoisedMat = new Array2DRowRealMatrix(alphaDenoised);
+        RealMatrix alphaDenoisedMat = new Array2DRowRealMatrix(alpha);
         
         // Multiplication matricielle
         RealMatrix projectionMat = U.multiply(alphaDenoisedMat);
         double[][] projection = projectionMat.getData();
         
         // Ajouter le vecteur moyen à chaque patch
-        double[][] V_denoised = new double[V.length][V[0].length];
-        for (int i = 0; i < V.length; i++) {
-            for (int j = 0; j < V[0].length; j++) {
+        double[][] V_denoised = new double[dim][nb];
+        for (int i = 0; i < dim; i++) {
+            for (int j = 0; j < nb; j++) {
                 V_denoised[i][j] = mV[i] + projection[i][j];
             }
         }
@@ -166,6 +202,79 @@ public class Denoiser {
         return V_denoised;
     }
     
+    /**
+     * Débruite des patchs par rétrécissement linéaire (Wiener) de chaque composante principale.
+     * Chaque coefficient de la composante i est multiplié par w_i = max(0, (λ_i - σ²) / λ_i).
+     * Ce facteur ne dépend pas du patch : il est intégré à la matrice de reconstruction
+     * F = U · diag(w) · U^T (s² x s²), si bien que le débruitage se réduit à
+     * V_denoised = mV + F · Vc, sans projection ni seuillage coefficient par coefficient.
+     * 
+     * @param decomposition ACP des patchs bruités
+     * @param sigma écart type du bruit (si connu, sinon sera estimé)
+     * @return matrice des patchs débruités (s² x M)
+     */
+    public static double[][] denoiseWiener(PatchDecomposition decomposition, double sigma) {
+        double sigmaNoise = sigma > 0 ? sigma : decomposition.getEstimatedSigma();
+        double[] weights = Tresholding.wienerWeights(decomposition.getEigenValues(), sigmaNoise);
+        double[][] filter = filterMatrix(decomposition.getEigenVectors(), weights);
+        return applyFilter(filter, decomposition.getMean(), decomposition.getCentered());
+    }
+    
+    /**
+     * Calcule la matrice de filtrage F = U · diag(w) · U^T.
+     * 
+     * @param U matrice (s² x s²) des vecteurs propres (colonnes)
+     * @param weights facteur appliqué à chaque composante
+     * @return matrice de filtrage (s² x s², symétrique)
+     */
+    public static double[][] filterMatrix(double[][] U, double[] weights) {
+        int dim = U.length;
+        if (weights.length != U[0].length) {
+            throw new IllegalArgumentException("Il faut un facteur par vecteur propre");
+        }
+        double[][] filter = new double[dim][dim];
+        for (int i = 0; i < dim; i++) {
+            for (int j = i; j < dim; j++) {
+                double sum = 0;
+                for (int k = 0; k < weights.length; k++) {
+                    if (weights[k] != 0) sum += U[i][k] * weights[k] * U[j][k];
+                }
+                filter[i][j] = sum;
+                filter[j][i] = sum;     // F est symétrique
+            }
+        }
+        return filter;
+    }
+    
+    /**
+     * Applique une matrice de filtrage aux patchs centrés puis ajoute le vecteur moyen :
+     * V_denoised = mV + F · Vc.
+     * 
+     * @param filter matrice de filtrage (s² x s²)
+     * @param mean vecteur moyen (taille s²)
+     * @param centered patchs centrés (s² x M)
+     * @return matrice des patchs filtrés (s² x M)
+     */
+    public static double[][] applyFilter(double[][] filter, double[] mean, double[][] centered) {
+        int dim = centered.length;
+        int nb = centered[0].length;
+        double[][] V_denoised = new double[dim][nb];
+        for (int i = 0; i < dim; i++) {
+            double[] out = V_denoised[i];
+            Arrays.fill(out, mean[i]);
+            double[] filterRow = filter[i];
+            for (int k = 0; k < dim; k++) {
+                double f = filterRow[k];
+                if (f == 0) continue;
+                double[] in = centered[k];
+                for (int j = 0; j < nb; j++) {
+                    out[j] += f * in[j];
+                }
+            }
+        }
+        return V_denoised;
+    }
+    
     /**
      * Débruite directement une collection de patchs représentée comme un tableau d'entiers.
      * Cette méthode convertit les patches en doubles, applique le débruitage PCA, 
@@ -174,22 +283,38 @@ public class Denoiser {
      * @param patches tableau de patchs bruits (sous forme de tableaux d'entiers)
      * @param patchSize taille du côté d'un patch (ex: 8 pour un patch 8x8)
      * @param threshold type de seuillage ("hard" ou "soft")
-     * @param shrinkType type de calcul du seuil ("v" pour VisuShrink, "b" pour BayesShrink)
+     * @param shrinkType type de calcul du seuil ("v" pour VisuShrink, "b" pour BayesShrink, "w" pour Wiener)
      * @param sigma écart type du bruit (si connu, sinon sera estimé)
      * @param isGlobal true pour ACP globale, false pour ACP locale
      * @return tableau de patchs débruités (sous forme de tableaux d'entiers)
      */
     public static int[][] denoisePatches(int[][] patches, int patchSize, String threshold,
                                        String shrinkType, double sigma, boolean isGlobal) {
+        // Convertir les patchs en une matrice de doubles au format attendu par l'ACP
+        double[][] V = toPatchMatrix(patches, patchSize);
+        
+        // Appliquer le débruitage PCA
+        double[][] V_denoised = denoisePatchesWithPCA(V, threshold, shrinkType, sigma, isGlobal);
+        
+        // Convertir le résultat en tableau d'entiers
+        return toPatchArray(V_denoised);
+    }
+    
+    /**
+     * Convertit une collection de patchs (un tableau d'entiers par patch) en matrice
+     * au format attendu par l'ACP : (s² x M) où s² est la taille vectorisée du patch et M le nombre de patchs.
+     * 
+     * @param patches tableau de patchs (sous forme de tableaux d'entiers)
+     * @param patchSize taille du côté d'un patch
+     * @return matrice (s² x M) où chaque colonne est un patch
+     */
+    public static double[][] toPatchMatrix(int[][] patches, int patchSize) {
         if (patches == null || patches.length == 0) {
             throw new IllegalArgumentException("Le tableau de patchs ne peut pas être vide");
         }
         
         int numPatches = patches.length;
         int patchLength = patchSize * patchSize;
-        
-        // Convertir les patchs en une matrice de doubles au format attendu par l'ACP
-        // (s² x M) où s² est la taille vectorisée du patch et M le nombre de patchs
         double[][] V = new double[patchLength][numPatches];
         
         for (int i = 0; i < numPatches; i++) {
@@ -197,22 +322,53 @@ public class Denoiser {
                 V[j][i] = patches[i][j];
             }
         }
-        
-        // Appliquer le débruitage PCA
-        double[][] V_denoised = denoisePatchesWithPCA(V, threshold, shrinkType, sigma, isGlobal);
-        
-        // Convertir le résultat en tableau d'entiers
-        int[][] denoisedPatches = new int[numPatches][patchLength];
+        return V;
+    }
+    
+    /**
+     * Convertit une matrice de patchs (s² x M) en tableau de patchs d'entiers,
+     * en arrondissant et en limitant les valeurs entre 0 et 255.
+     * 
+     * @param V matrice (s² x M) où chaque colonne est un patch
+     * @return tableau de patchs (sous forme de tableaux d'entiers)
+     */
+    public static int[][] toPatchArray(double[][] V) {
+        int patchLength = V.length;
+        int numPatches = V[0].length;
+        int[][] patches = new int[numPatches][patchLength];
         
         for (int i = 0; i < numPatches; i++) {
             for (int j = 0; j < patchLength; j++) {
                 // Clamp les valeurs entre 0 et 255 et arrondir
-                int pixelValue = (int) Math.round(V_denoised[j][i]);
-                denoisedPatches[i][j] = Math.min(255, Math.max(0, pixelValue));
+                int pixelValue = (int) Math.round(V[j][i]);
+                patches[i][j] = Math.min(255, Math.max(0, pixelValue));
             }
         }
+        return patches;
+    }
+    
+    /**
+     * Convertit une matrice de patchs (s² x M) en un seul tableau d'octets, un patch après l'autre,
+     * en arrondissant et en limitant les valeurs entre 0 et 255 comme {@link #toPatchArray(double[][])}.
+     * Le patch j occupe les cases [j*s², (j+1)*s²) et peut être lu sans copie par une vue
+     * ({@link core.patch.PatchView}) ; l'octet stocke la valeur non signée (lecture avec {@code & 0xFF}).
+     * 
+     * @param V matrice (s² x M) où chaque colonne est un patch
+     * @return tableau des pixels des patchs (taille s² x M)
+     */
+    public static byte[] toPatchBytes(double[][] V) {
+        int patchLength = V.length;
+        int numPatches = V[0].length;
+        byte[] patches = new byte[patchLength * numPatches];
         
-        return denoisedPatches;
+        for (int j = 0; j < patchLength; j++) {
+            double[] row = V[j];
+            for (int i = 0; i < numPatches; i++) {
+                int pixelValue = (int) Math.round(row[i]);
+                patches[i * patchLength + j] = (byte) Math.min(255, Math.max(0, pixelValue));
+            }
+        }
+        return patches;
     }
     
     /**
@@ -221,7 +377,7 @@ public class Denoiser {
      * @param alpha matrice des coefficients
      * @return variance moyenne des coefficients
      */
-    private static double calculateVariance(double[][] alpha) {
+    static double calculateVariance(double[][] alpha) {
         int nComps = alpha.length;
         int nSamples = alpha[0].length;
         double sum = 0;
@@ -238,4 +394,33 @@ public class Denoiser {
         
         return sum / count;
     }
+    
+    /**
+     * Calcule la variance moyenne des coefficients de patchs pondérés : la colonne j de alpha
+     * compte pour {@code weights[j]} patchs identiques.
+     * 
+     * @param alpha matrice des coefficients des patchs distincts
+     * @param weights nombre de répétitions de chaque patch
+     * @return variance moyenne des coefficients, répétitions comprises
+     */
+    static double calculateVariance(double[][] alpha, int[] weights) {
+        int nSamples = alpha[0].length;
+        long total = 0;
+        for (int w : weights) total += w;
+        double sum = 0;
+        
+        for (double[] component : alpha) {
+            double compMean = 0;
+            for (int j = 0; j < nSamples; j++) {
+                compMean += weights[j] * component[j];
+            }
+            compMean /= total;
+            for (int j = 0; j < nSamples; j++) {
+                double diff = component[j] - compMean;
+                sum += weights[j] * diff * diff;
+            }
+        }
+        
+        return sum / ((double) total * alpha.length);
+    }
 }
\ No newline at end of file
@@ -1,14 +1,22 @@
 package core.acp;
 
-import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 import core.image.Image;
 import core.image.ImageFile;
-import core.patch.Patch;
-import core.patch.PatchExtractor;
+import core.image.ImageStatistics;
+import core.image.PngEncoder;
+import core.image.PngStreamWriter;
+import core.image.StripReader;
+import core.patch.OffHeapPatchMatrix;
+import core.patch.PatchGrid;
 
 /**
  * Classe utilitaire pour débruiter une image complète en utilisant
@@ -19,12 +27,17 @@ import core.patch.PatchExtractor;
  * 2. Application de l'ACP et du seuillage
  * 3. Reconstruction de l'image débruitée
  * 
- * @version 1.0
+ * La grille d'extraction est décrite par un {@link PatchGrid} immuable passé à chaque appel :
+ * plusieurs débruitages de densités différentes peuvent s'exécuter en même temps.
+ * 
+ * @version 1.1
  */
 public class ImageDenoiser {
     
     // private static final int DEFAULT_PATCH_SIZE = 15;
-    private static final double DEFAULT_PATCH_PERCENT = 0.05; // 5% par défaut
+    static final double DEFAULT_PATCH_PERCENT = 0.05; // 5% par défaut
+    static final int MIN_PATCH_SIZE = 5;               // bornes de la taille de patch adaptative
+    static final int MAX_PATCH_SIZE = 31;
     
     /**
      * Calcule la taille de patch adaptative en fonction de la taille de l'image.
@@ -44,7 +57,7 @@ public class ImageDenoiser {
         }
         
         // Limiter la taille minimale et maximale
-        patchSize = Math.max(5, Math.min(patchSize, 31));
+        patchSize = Math.max(MIN_PATCH_SIZE, Math.min(patchSize, MAX_PATCH_SIZE));
         
         return patchSize;
     }
@@ -56,49 +69,30 @@ public class ImageDenoiser {
      * @param image image à débruiter
      * @param patchSize taille du côté des patchs (généralement 8 ou 16)
      * @param threshold type de seuillage ("hard" ou "soft")
-     * @param shrinkType type de seuillage adaptatif ("v" pour VisuShrink, "b" pour BayesShrink)
+     * @param shrinkType type de seuillage adaptatif ("v" pour VisuShrink, "b" pour BayesShrink, "w" pour Wiener)
      * @param sigma écart type du bruit (si connu, sinon sera estimé)
      * @return image débruitée
      */
     public static Image denoiseGlobal(Image image, int patchSize, String threshold, 
                                     String shrinkType, double sigma) {
-        // Extraire les patchs de l'image
-        List<Patch> patches = PatchExtractor.extractPatchs(image, patchSize);
-        
-        if (patches == null || patches.isEmpty()) {
-            throw new IllegalStateException("Impossible d'extraire les patchs de l'image");
-        }
-        
-        // Préparer les données pour le débruitage
-        int numPatches = patches.size();
-        int patchLength = patchSize * patchSize;
-        int[][] patchArray = new int[numPatches][patchLength];
-        
-        // Convertir la liste de Patch en tableau d'entiers
-        for (int i = 0; i < numPatches; i++) {
-            Patch patch = patches.get(i);
-            patchArray[i] = patch.getPixels();
-        }
-        
-        // Appliquer le débruitage PCA global
-        int[][] denoisedPatchArray = Denoiser.denoisePatches(
-            patchArray, patchSize, threshold, shrinkType, sigma, true);
-        
-        // Reconvertir les patchs débruités en objets Patch
-        List<Patch> denoisedPatches = new ArrayList<>();
-        for (int i = 0; i < numPatches; i++) {
-            Patch originalPatch = patches.get(i);
-            Patch denoisedPatch = new Patch(
-                denoisedPatchArray[i],
-                originalPatch.getXOrigin(),
-                originalPatch.getYOrigin(),
-                patchSize
-            );
-            denoisedPatches.add(denoisedPatch);
-        }
-        
-        // Reconstruire l'image à partir des patchs débruités
-        return PatchExtractor.reconstructPatchs(denoisedPatches, image.getWidth(), image.getHeight());
+        return denoiseGlobal(image, PatchGrid.of(patchSize), threshold, shrinkType, sigma);
+    }
+    
+    /**
+     * Débruite une image en utilisant la méthode PCA globale, sur une grille de patchs donnée.
+     * 
+     * @param image image à débruiter
+     * @param grid grille d'extraction (taille des patchs, densité et bords)
+     * @param threshold type de seuillage ("hard" ou "soft")
+     * @param shrinkType type de seuillage adaptatif ("v" pour VisuShrink, "b" pour BayesShrink, "w" pour Wiener)
+     * @param sigma écart type du bruit (si connu, sinon sera estimé)
+     * @return image débruitée
+     */
+    public static Image denoiseGlobal(Image image, PatchGrid grid, String threshold,
+                                    String shrinkType, double sigma) {
+        // Extraction des patchs et ACP, puis seuillage et reconstruction
+        DenoiseSweep sweep = prepareSweep(image, grid, true, DenoiseSweep.DEFAULT_NUM_IMAGETTES, sigma);
+        return sweep.apply(new DenoiseSweep.Variant(threshold, shrinkType, sigma));
     }
     
     /**
@@ -109,71 +103,103 @@ public class ImageDenoiser {
      * @param patchSize taille du côté des patchs (généralement 8 ou 16)
      * @param numImagettes nombre approximatif d'imagettes à extraire
      * @param threshold type de seuillage ("hard" ou "soft")
-     * @param shrinkType type de seuillage adaptatif ("v" pour VisuShrink, "b" pour BayesShrink)
+     * @param shrinkType type de seuillage adaptatif ("v" pour VisuShrink, "b" pour BayesShrink, "w" pour Wiener)
      * @param sigma écart type du bruit (si connu, sinon sera estimé)
      * @return image débruitée
      */
     public static Image denoiseLocal(Image image, int patchSize, int numImagettes,
                                    String threshold, String shrinkType, double sigma) {
-        // 1. Découper l'image en imagettes
-        List<core.image.ImageTile> tiles = PatchExtractor.decoupeImage(image, numImagettes);
-        
-        if (tiles == null || tiles.isEmpty()) {
-            throw new IllegalStateException("Impossible de découper l'image en imagettes");
-        }
-        
-        // 2. Pour chaque imagette, calculer la taille de patch adaptative
-        List<core.image.ImageTile> denoisedTiles = new ArrayList<>();
-        
-        for (core.image.ImageTile tile : tiles) {
-            // Calculer la taille de patch adaptative pour cette imagette
-            int tilePatchSize = calculateAdaptivePatchSize(tile.getWidth(), tile.getHeight(), 0.05);
-            
-            // Extraire les patchs de cette imagette
-            List<Patch> patches = PatchExtractor.extractPatchs(tile, tilePatchSize);
-            
-            if (patches == null || patches.isEmpty()) {
-                // Si l'imagette est trop petite pour extraire des patchs, la conserver telle quelle
-                denoisedTiles.add(tile);
-                continue;
-            }
-            
-            // Convertir la liste de Patch en tableau d'entiers
-            int numPatches = patches.size();
-            int patchLength = tilePatchSize * tilePatchSize;
-            int[][] patchArray = new int[numPatches][patchLength];
-            
-            for (int i = 0; i < numPatches; i++) {
-                Patch patch = patches.get(i);
-                patchArray[i] = patch.getPixels();
-            }
-            
-            // Appliquer le débruitage PCA local
-            int[][] denoisedPatchArray = Denoiser.denoisePatches(
-                patchArray, tilePatchSize, threshold, shrinkType, sigma, false);
-            
-            // Reconvertir les patchs débruités en objets Patch
-            List<Patch> denoisedPatches = new ArrayList<>();
-            for (int i = 0; i < numPatches; i++) {
-                Patch originalPatch = patches.get(i);
-                Patch denoisedPatch = new Patch(
-                    denoisedPatchArray[i],
-                    originalPatch.getXOrigin(),
-                    originalPatch.getYOrigin(),
-                    tilePatchSize
-                );
-                denoisedPatches.add(denoisedPatch);
-            }
-            
-            // Reconstruire l'imagette débruitée
-            core.image.ImageTile denoisedTile = PatchExtractor.reconstructPatchs(
-                denoisedPatches, tile.getWidth(), tile.getHeight(), tile.getPosX(), tile.getPosY());
-            
-            denoisedTiles.add(denoisedTile);
-        }
-        
-        // 3. Reconstruire l'image complète à partir des imagettes débruitées
-        return PatchExtractor.reconstructImageTiles(denoisedTiles, image.getWidth(), image.getHeight());
+        return denoiseLocal(image, PatchGrid.of(patchSize), numImagettes, threshold, shrinkType, sigma);
+    }
+    
+    /**
+     * Débruite une image en utilisant la méthode PCA locale, avec la densité et les bords d'une grille donnée.
+     * La taille des patchs de chaque imagette est adaptée à l'imagette.
+     * 
+     * @param image image à débruiter
+     * @param grid grille d'extraction (densité et bords)
+     * @param numImagettes nombre approximatif d'imagettes à extraire
+     * @param threshold type de seuillage ("hard" ou "soft")
+     * @param shrinkType type de seuillage adaptatif ("v" pour VisuShrink, "b" pour BayesShrink, "w" pour Wiener)
+     * @param sigma écart type du bruit (si connu, sinon sera estimé)
+     * @return image débruitée
+     */
+    public static Image denoiseLocal(Image image, PatchGrid grid, int numImagettes,
+                                   String threshold, String shrinkType, double sigma) {
+        // Découpage en imagettes et ACP de chaque imagette, puis seuillage et reconstruction
+        DenoiseSweep sweep = prepareSweep(image, grid, false, numImagettes, sigma);
+        return sweep.apply(new DenoiseSweep.Variant(threshold, shrinkType, sigma));
+    }
+    
+    /**
+     * Débruite une image avec la méthode PCA globale sur une grille dense de patchs de pas fixe.
+     * La grille est traitée par bandes : la mémoire utilisée ne dépend pas du nombre de patchs,
+     * ce qui permet un pas de 1 même sur une grande image.
+     * 
+     * @param image image à débruiter
+     * @param patchSize taille du côté des patchs
+     * @param stride pas entre deux patchs (1 pour tous les patchs de l'image)
+     * @param threshold type de seuillage ("hard" ou "soft")
+     * @param shrinkType type de seuillage adaptatif ("v" pour VisuShrink, "b" pour BayesShrink, "w" pour Wiener)
+     * @param sigma écart type du bruit (si connu, sinon sera estimé)
+     * @return image débruitée
+     */
+    public static Image denoiseDense(Image image, int patchSize, int stride, String threshold,
+                                   String shrinkType, double sigma) {
+        return denoiseDense(image, PatchGrid.withStride(patchSize, stride), threshold, shrinkType, sigma);
+    }
+    
+    /**
+     * Débruite une image avec la méthode PCA globale, la grille de patchs étant traitée par bandes.
+     * 
+     * @param image image à débruiter
+     * @param grid grille d'extraction (taille des patchs, densité et bords)
+     * @param threshold type de seuillage ("hard" ou "soft")
+     * @param shrinkType type de seuillage adaptatif ("v" pour VisuShrink, "b" pour BayesShrink, "w" pour Wiener)
+     * @param sigma écart type du bruit (si connu, sinon sera estimé)
+     * @return image débruitée
+     */
+    public static Image denoiseDense(Image image, PatchGrid grid, String threshold,
+                                   String shrinkType, double sigma) {
+        StreamingDenoiser denoiser = new StreamingDenoiser(image, grid);
+        return denoiser.apply(new DenoiseSweep.Variant(threshold, shrinkType, sigma));
+    }
+    
+    /**
+     * Débruite une image en regroupant les patchs semblables et en calculant une ACP par groupe
+     * (voir {@link ClusteredDenoiser}).
+     * 
+     * @param image image à débruiter
+     * @param grid grille d'extraction (taille des patchs, densité et bords)
+     * @param clusterCount nombre de groupes de patchs
+     * @param threshold type de seuillage ("hard" ou "soft")
+     * @param shrinkType type de seuillage adaptatif ("v" pour VisuShrink, "b" pour BayesShrink, "w" pour Wiener)
+     * @param sigma écart type du bruit (si connu, sinon sera estimé)
+     * @return image débruitée
+     */
+    public static Image denoiseClustered(Image image, PatchGrid grid, int clusterCount, String threshold,
+                                       String shrinkType, double sigma) {
+        ClusteredDenoiser denoiser = new ClusteredDenoiser(image, grid, clusterCount);
+        return denoiser.apply(new DenoiseSweep.Variant(threshold, shrinkType, sigma));
+    }
+    
+    /**
+     * Débruite une image par mise en correspondance de blocs : une ACP par groupe de patchs semblables
+     * à un patch de référence (voir {@link BlockMatchingDenoiser}).
+     * 
+     * @param image image à débruiter
+     * @param grid grille d'extraction (taille des patchs, densité et bords)
+     * @param groupSize nombre de patchs par groupe (au moins s²)
+     * @param searchRadius demi-côté de la fenêtre de recherche en pixels (0 pour toute l'image)
+     * @param threshold type de seuillage ("hard" ou "soft")
+     * @param shrinkType type de seuillage adaptatif ("v" pour VisuShrink, "b" pour BayesShrink, "w" pour Wiener)
+     * @param sigma écart type du bruit (si connu, sinon sera estimé)
+     * @return image débruitée
+     */
+    public static Image denoiseBlockMatching(Image image, PatchGrid grid, int groupSize, int searchRadius,
+                                           String threshold, String shrinkType, double sigma) {
+        BlockMatchingDenoiser denoiser = new BlockMatchingDenoiser(image, grid, groupSize, searchRadius);
+        return denoiser.apply(new DenoiseSweep.Variant(threshold, shrinkType, sigma));
     }
     
     /**
@@ -184,18 +210,37 @@ public class ImageDenoiser {
      * @param patchSize taille du côté des patchs (généralement 8 ou 16)
      * @param isGlobal true pour forcer la méthode globale, false pour forcer la méthode locale 
      * @param threshold type de seuillage ("hard" ou "soft")
-     * @param shrinkType type de seuillage adaptatif ("v" pour VisuShrink, "b" pour BayesShrink)
+     * @param shrinkType type de seuillage adaptatif ("v" pour VisuShrink, "b" pour BayesShrink, "w" pour Wiener)
      * @param sigma écart type du bruit (si connu, sinon sera estimé)
      * @return image débruitée
      */
     public static Image denoise(Image image, int patchSize, boolean isGlobal,
                               String threshold, String shrinkType, double sigma) {
+        if (patchSize <= 0) {
+            throw new IllegalArgumentException("Taille de patch invalide");
+        }
+        return denoise(image, PatchGrid.of(patchSize), isGlobal, threshold, shrinkType, sigma);
+    }
+    
+    /**
+     * Débruite une image sur une grille de patchs donnée, avec la méthode globale ou locale.
+     * 
+     * @param image image à débruiter
+     * @param grid grille d'extraction (taille des patchs, densité et bords)
+     * @param isGlobal true pour forcer la méthode globale, false pour forcer la méthode locale 
+     * @param threshold type de seuillage ("hard" ou "soft")
+     * @param shrinkType type de seuillage adaptatif ("v" pour VisuShrink, "b" pour BayesShrink, "w" pour Wiener)
+     * @param sigma écart type du bruit (si connu, sinon sera estimé)
+     * @return image débruitée
+     */
+    public static Image denoise(Image image, PatchGrid grid, boolean isGlobal,
+                              String threshold, String shrinkType, double sigma) {
         // Vérification des paramètres
         if (image == null) {
             throw new IllegalArgumentException("L'image ne peut pas être nulle");
         }
         
-        if (patchSize <= 0 || patchSize > Math.min(image.getWidth(), image.getHeight())) {
+        if (grid.getSide() > Math.min(image.getWidth(), image.getHeight())) {
             throw new IllegalArgumentException("Taille de patch invalide");
         }
         
@@ -203,22 +248,22 @@ public class ImageDenoiser {
             throw new IllegalArgumentException("Type de seuillage invalide: " + threshold);
         }
         
-        if (!shrinkType.equalsIgnoreCase("v") && !shrinkType.equalsIgnoreCase("b")) {
+        if (!shrinkType.equalsIgnoreCase("v") && !shrinkType.equalsIgnoreCase("b") && !shrinkType.equalsIgnoreCase("w")) {
             throw new IllegalArgumentException("Type de seuillage adaptatif invalide: " + shrinkType);
         }
         
         // Choix de la méthode
         if (isGlobal) {
-            return denoiseGlobal(image, patchSize, threshold, shrinkType, sigma);
+            return denoiseGlobal(image, grid, threshold, shrinkType, sigma);
         } else {
             // Pour la méthode locale, on vise environ 8-16 imagettes pour une image standard
             int numImagettes = 16;
-            return denoiseLocal(image, patchSize, numImagettes, threshold, shrinkType, sigma);
+            return denoiseLocal(image, grid, numImagettes, threshold, shrinkType, sigma);
         }
     }
     
     /**
-     * Débruite une image en utilisant la méthode ACP.
+     * Débruite une image en utilisant la méthode ACP, avec la taille de patch par défaut.
      * 
      * @param inputPath Chemin de l'image à débruiter
      * @param outputPath Chemin de l'image débruitée
@@ -230,31 +275,12 @@ public class ImageDenoiser {
      */
     public static void ImageDen(String inputPath, String outputPath, boolean isGlobal, 
                               String threshold, String shrink, double sigma) throws IOException {
-        // Charger l'image
-        ImageFile image = new ImageFile(inputPath);
-        BufferedImage bufferedImage = image.getImage();
-        
-        // Calculer la taille de patch adaptative
-        int patchSize = calculateAdaptivePatchSize(bufferedImage.getWidth(), 
-                                                 bufferedImage.getHeight(), 
-                                                 DEFAULT_PATCH_PERCENT);
-        
-        // Débruiter l'image
-        Image denoised;
-        if (isGlobal) {
-            denoised = denoiseGlobal(image, patchSize, threshold, shrink, sigma);
-        } else {
-            int numImagettes = 16;
-            denoised = denoiseLocal(image, patchSize, numImagettes, threshold, shrink, sigma);
-        }
-        
-        // Sauvegarder l'image débruitée
-        ImageFile denoisedFile = new ImageFile(denoised, "denoised");
-        denoisedFile.saveImage(outputPath);
+        ImageDen(inputPath, outputPath, isGlobal, threshold, shrink, sigma, DEFAULT_PATCH_PERCENT);
     }
 
     /**
-     * Débruite une image en utilisant la méthode ACP avec une taille de patch spécifiée.
+     * Débruite une image en utilisant la méthode ACP avec une taille de patch spécifiée
+     * (raccourci de {@link #ImageDen(String, List, DenoiseOptions)} pour une seule sortie).
      * 
      * @param inputPath Chemin de l'image à débruiter
      * @param outputPath Chemin de l'image débruitée
@@ -268,26 +294,179 @@ public class ImageDenoiser {
     public static void ImageDen(String inputPath, String outputPath, boolean isGlobal, 
                               String threshold, String shrink, double sigma, 
                               double patchPercent) throws IOException {
-        // Charger l'image
-        ImageFile image = new ImageFile(inputPath);
-        BufferedImage bufferedImage = image.getImage();
+        ImageDen(inputPath, List.of(outputPath), DenoiseOptions.builder().global(isGlobal).threshold(threshold)
+                 .shrink(shrink).sigmas(sigma).patchPercent(patchPercent).build());
+    }
+
+    /**
+     * Débruite une image pour une ou plusieurs valeurs de sigma avec les paramètres donnés
+     * (voir {@link DenoiseOptions} pour le choix du mode de débruitage).
+     * L'extraction des patchs et l'ACP ne sont calculées qu'une seule fois : seul le seuil
+     * (qui dépend de sigma) change d'une sortie à l'autre, les coefficients projetés sont réutilisés.
+     * En lecture par bandes, l'image n'est jamais chargée entièrement et les sorties sont toujours des PNG.
+     * 
+     * @param inputPath Chemin de l'image à débruiter
+     * @param outputPaths Chemins des images débruitées (un par valeur de sigma, dans le même ordre)
+     * @param options Paramètres du débruitage
+     * @return compte rendu du débruitage (nombre de patchs traités selon le mode)
+     * @throws IOException si une erreur survient lors de la lecture/écriture des fichiers
+     */
+    public static DenoiseReport ImageDen(String inputPath, List<String> outputPaths, DenoiseOptions options) throws IOException {
+        double[] sigmas = options.getSigmas();
+        if (outputPaths.size() != sigmas.length) {
+            throw new IllegalArgumentException("Il faut exactement un chemin de sortie par valeur de sigma");
+        }
+        List<DenoiseSweep.Variant> variants = new ArrayList<>();
+        for (double sigma : sigmas) {
+            variants.add(new DenoiseSweep.Variant(options.getThreshold(), options.getShrink(), sigma, options.getWindow()));
+        }
+        if (options.getStripHeight() > 0) {
+            return denoiseStrips(inputPath, outputPaths, variants, options);
+        }
         
-        // Calculer la taille de patch adaptative
-        int patchSize = calculateAdaptivePatchSize(bufferedImage.getWidth(), 
-                                                 bufferedImage.getHeight(), 
-                                                 patchPercent);
+        // Charger l'image et calculer la taille de patch adaptative
+        ImageFile image = new ImageFile(inputPath);
+        int patchSize = calculateAdaptivePatchSize(image.getWidth(), image.getHeight(), options.getPatchPercent());
+        PatchGrid grid = options.grid(patchSize);
         
-        // Débruiter l'image
-        Image denoised;
-        if (isGlobal) {
-            denoised = denoiseGlobal(image, patchSize, threshold, shrink, sigma);
+        Map<DenoiseSweep.Variant, Image> results;
+        DenoiseReport report = DenoiseReport.empty();
+        if (options.getGroupSize() > 0) {
+            // Une ACP par groupe de blocs semblables à chaque patch de référence
+            BlockMatchingDenoiser denoiser = new BlockMatchingDenoiser(image, grid, options.getGroupSize(),
+                                                                       options.getSearchRadius());
+            report = DenoiseReport.of(denoiser);
+            results = denoiser.applyAll(variants);
+        } else if (options.getClusters() > 0) {
+            // Une ACP par groupe de patchs semblables
+            ClusteredDenoiser denoiser = new ClusteredDenoiser(image, grid, options.getClusters());
+            report = DenoiseReport.of(denoiser, options.getClusters());
+            results = denoiser.applyAll(variants);
+        } else if (options.getOffHeap() != null) {
+            // Patchs extraits une seule fois hors du tas, ACP globale par bandes
+            try (OffHeapPatchMatrix patches = OffHeapPatchMatrix.extract(image, grid, options.getOffHeap())) {
+                report = DenoiseReport.of(patches, options.getOffHeap());
+                results = new StreamingDenoiser(image, patches).applyAll(variants);
+            }
+        } else if (options.getStride() > 0) {
+            // Grille dense de pas fixe, traitée par bandes
+            results = new StreamingDenoiser(image, grid).applyAll(variants);
         } else {
-            int numImagettes = 16;
-            denoised = denoiseLocal(image, patchSize, numImagettes, threshold, shrink, sigma);
+            // Une seule extraction et une seule ACP pour toutes les valeurs de sigma
+            // Les patchs uniformes sont détectés avec le plus petit sigma, valable pour toutes les sorties
+            double flatSigma = Arrays.stream(sigmas).min().getAsDouble();
+            DenoiseSweep sweep = prepareSweep(image, grid, options.isGlobal(), DenoiseSweep.DEFAULT_NUM_IMAGETTES,
+                                              flatSigma, options.isDeduplicated());
+            report = DenoiseReport.of(sweep, options.isDeduplicated());
+            results = sweep.applyAll(variants);
         }
-        
-        // Sauvegarder l'image débruitée
-        ImageFile denoisedFile = new ImageFile(denoised, "denoised");
-        denoisedFile.saveImage(outputPath);
+        saveResults(results, variants, outputPaths, options.getEncoder());
+        return report;
+    }
+
+    /**
+     * Enregistre les images débruitées, une par variante, dans l'ordre des chemins de sortie.
+     */
+    private static void saveResults(Map<DenoiseSweep.Variant, Image> results, List<DenoiseSweep.Variant> variants,
+                                    List<String> outputPaths, PngEncoder encoder) throws IOException {
+        for (int i = 0; i < variants.size(); i++) {
+            ImageFile denoisedFile = new ImageFile(results.get(variants.get(i)), "denoised");
+            denoisedFile.saveImage(outputPaths.get(i), encoder);
+        }
+    }
+
+    /**
+     * Débruite une image avec la méthode globale sans jamais la charger entièrement : l'image est lue
+     * par bandes horizontales de {@code stripHeight} lignes (plus la hauteur d'un patch de recouvrement),
+     * la base ACP est calculée sur tous les patchs de la grille par une première lecture, puis chaque bande
+     * est débruitée et ses lignes terminées sont écrites aussitôt dans le fichier PNG de sortie.
+     * La mémoire utilisée dépend de la hauteur des bandes et de la largeur de l'image, pas de sa hauteur.
+     * Le résultat est identique à celui de la grille dense en mémoire pour le même pas.
+     * Avec plusieurs valeurs de sigma, la base n'est calculée qu'une fois et l'image est relue pour chaque sortie ;
+     * les lignes arrivant une à une, leur compression n'est pas parallèle.
+     */
+    private static DenoiseReport denoiseStrips(String inputPath, List<String> outputPaths, List<DenoiseSweep.Variant> variants,
+                                      DenoiseOptions options) throws IOException {
+        PngEncoder encoder = options.getEncoder();
+        try (StripReader strips = new StripReader(inputPath, options.getStripHeight())) {
+            int patchSize = calculateAdaptivePatchSize(strips.getWidth(), strips.getHeight(), options.getPatchPercent());
+            StreamingDenoiser denoiser;
+            try {
+                denoiser = new StreamingDenoiser(strips, options.grid(patchSize));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            for (int i = 0; i < variants.size(); i++) {
+                Path path = Paths.get(outputPaths.get(i));
+                try (PngStreamWriter out = encoder != null
+                        ? new PngStreamWriter(path, strips.getWidth(), strips.getHeight(), encoder.getLevel())
+                        : new PngStreamWriter(path, strips.getWidth(), strips.getHeight())) {
+                    denoiser.applyTo(variants.get(i), out);
+                }
+            }
+            return DenoiseReport.of(strips);
+        }
+    }
+
+    /**
+     * Débruite une image avec la méthode globale, les patchs étant extraits une seule fois
+     * dans un stockage hors du tas Java puis lus par bandes (voir {@link OffHeapPatchMatrix}).
+     * 
+     * @param image image à débruiter
+     * @param grid grille d'extraction (taille des patchs, densité et bords)
+     * @param storage support du stockage hors tas (mémoire directe ou fichier projeté)
+     * @param threshold type de seuillage ("hard" ou "soft")
+     * @param shrinkType type de seuillage adaptatif ("v" pour VisuShrink, "b" pour BayesShrink, "w" pour Wiener)
+     * @param sigma écart type du bruit (si connu, sinon sera estimé)
+     * @return image débruitée
+     * @throws IOException si le fichier temporaire ne peut pas être créé
+     */
+    public static Image denoiseOffHeap(Image image, PatchGrid grid, OffHeapPatchMatrix.Storage storage,
+                                       String threshold, String shrinkType, double sigma) throws IOException {
+        try (OffHeapPatchMatrix patches = OffHeapPatchMatrix.extract(image, grid, storage)) {
+            StreamingDenoiser denoiser = new StreamingDenoiser(image, patches);
+            return denoiser.apply(new DenoiseSweep.Variant(threshold, shrinkType, sigma));
+        }
+    }
+
+    /**
+     * Prépare l'ACP d'une image en excluant les patchs uniformes.
+     * 
+     * @param image image à débruiter
+     * @param grid grille d'extraction des patchs
+     * @param isGlobal true pour la méthode globale, false pour la méthode locale
+     * @param numImagettes nombre approximatif d'imagettes en mode local
+     * @param sigma écart type du bruit (si &lt;= 0, aucun patch n'est écarté)
+     * @return balayage prêt à être appliqué
+     */
+    private static DenoiseSweep prepareSweep(Image image, PatchGrid grid, boolean isGlobal,
+                                             int numImagettes, double sigma) {
+        return prepareSweep(image, grid, isGlobal, numImagettes, sigma, false);
+    }
+
+    /**
+     * Prépare l'ACP d'une image en excluant les patchs uniformes et, sur demande, en ne décomposant
+     * qu'une fois les patchs identiques.
+     * 
+     * @param image image à débruiter
+     * @param grid grille d'extraction des patchs
+     * @param isGlobal true pour la méthode globale, false pour la méthode locale
+     * @param numImagettes nombre approximatif d'imagettes en mode local
+     * @param sigma écart type du bruit (si &lt;= 0, aucun patch n'est écarté)
+     * @param deduplicate true pour regrouper les patchs identiques
+     * @return balayage prêt à être appliqué
+     */
+    private static DenoiseSweep prepareSweep(Image image, PatchGrid grid, boolean isGlobal,
+                                             int numImagettes, double sigma, boolean deduplicate) {
+        // Images intégrales calculées une seule fois pour l'image et toutes ses imagettes
+        ImageStatistics statistics = sigma > 0 ? new ImageStatistics(image) : null;
+        DenoiseSweep sweep = DenoiseSweep.builder(image, grid)
+            .global(isGlobal)
+            .numImagettes(numImagettes)
+            .flatSigma(sigma)
+            .statistics(statistics)
+            .deduplicate(deduplicate)
+            .build();
+        return sweep;
     }
 }
@@ -0,0 +1,168 @@
+package core.acp;
+
+import java.util.Arrays;
+
+import core.patch.PatchMatrix;
+
+/**
+ * Résultat de l'ACP d'un ensemble de patchs vectorisés : vecteur moyen, patchs centrés,
+ * base des vecteurs propres, valeurs propres et coefficients projetés.
+ *
+ * Cette décomposition ne dépend ni du type de seuillage, ni de la méthode de calcul du seuil, ni de sigma :
+ * elle peut donc être calculée une seule fois puis réutilisée pour débruiter les mêmes patchs
+ * avec plusieurs configurations (voir {@link Denoiser#denoiseDecomposition}).
+ * Les coefficients projetés ne sont calculés qu'à la première demande : le filtrage linéaire
+ * (Wiener) n'en a pas besoin. Les tableaux partagés ne sont jamais modifiés après leur calcul.
+ *
+ * Les patchs identiques peuvent n'être décomposés qu'une fois : chaque colonne porte alors le nombre
+ * de patchs qu'elle représente, et la moyenne, la covariance, les statistiques des coefficients et
+ * l'estimation du bruit tiennent compte de ces répétitions comme si tous les patchs étaient présents.
+ *
+ * @version 1.2
+ * @see ACP
+ */
+public class PatchDecomposition {
+    private final double[] mean;            // vecteur moyen mV (taille s²)
+    private final double[][] centered;      // patchs centrés Vc (s² x M)
+    private final double[][] eigenVectors;  // vecteurs propres U en colonnes (s² x s²)
+    private final double[] eigenValues;     // valeurs propres associées
+    private double[][] alpha;               // coefficients projetés (s² x M), calculés à la demande
+    private Double coefficientVariance;     // variance moyenne des coefficients (calculée à la demande)
+    private Double estimatedSigma;          // écart type du bruit estimé (calculé à la demande)
+    private final int[] multiplicities;     // nombre de patchs représentés par chaque colonne (null : un seul)
+    private final int patchCount;           // nombre total de patchs représentés
+
+    /**
+     * Calcule la décomposition ACP de la matrice des patchs
+     * @param V matrice (s² x M) où chaque colonne est un patch vectorisé
+     * @throws IllegalArgumentException si V est null, vide, ou incohérent
+     */
+    public PatchDecomposition(double[][] V) {
+        this(ACP.MoyCov(V), null);
+    }
+
+    /**
+     * Calcule la décomposition ACP de patchs extraits directement du raster
+     * @param patches matrice des patchs, stockée colonne par colonne
+     * @throws IllegalArgumentException s'il y a moins de patchs que de pixels par patch
+     */
+    public PatchDecomposition(PatchMatrix patches) {
+        this(ACP.MoyCov(patches), null);
+    }
+
+    /**
+     * Calcule la décomposition ACP de patchs distincts, chacun représentant plusieurs patchs identiques
+     * @param patches matrice des patchs distincts, stockée colonne par colonne
+     * @param multiplicities nombre de patchs identiques représentés par chaque colonne
+     * @throws IllegalArgumentException s'il y a moins de patchs (répétitions comprises) que de pixels par patch
+     */
+    public PatchDecomposition(PatchMatrix patches, int[] multiplicities) {
+        this(ACP.MoyCov(patches, multiplicities),
+             multiplicities.clone());
+    }
+
+    private PatchDecomposition(ACP.Triple<double[], double[][], double[][]> moyCov, int[] multiplicities) {
+        ACP.Pair<double[][], double[]> eig = ACP.diagonalise(moyCov.second);
+        this.mean = moyCov.first;
+        this.centered = moyCov.third;
+        this.eigenVectors = eig.first;
+        this.eigenValues = eig.second;
+        this.multiplicities = multiplicities;
+        this.patchCount = multiplicities == null ? centered[0].length : Arrays.stream(multiplicities).sum();
+    }
+
+    /**
+     * @return le vecteur moyen des patchs
+     */
+    public double[] getMean() { return mean; }
+
+    /**
+     * @return les patchs centrés (vecteur moyen retranché), un patch par colonne
+     */
+    public double[][] getCentered() { return centered; }
+
+    /**
+     * @return la matrice des vecteurs propres (un vecteur par colonne)
+     */
+    public double[][] getEigenVectors() { return eigenVectors; }
+
+    /**
+     * @return les valeurs propres de la matrice de covariance
+     */
+    public double[] getEigenValues() { return eigenValues; }
+
+    /**
+     * Coefficients des patchs centrés projetés dans la base des vecteurs propres.
+     * La projection est calculée une seule fois, à la première demande.
+     * @return matrice (s² x M) des coefficients projetés
+     */
+    public synchronized double[][] getAlpha() {
+        if (alpha == null) {
+            alpha = ACP.Proj(eigenVectors, centered);
+        }
+        return alpha;
+    }
+
+    /**
+     * Variance moyenne des coefficients projetés, utilisée par BayesShrink.
+     * Elle ne dépend pas de sigma : elle est calculée une seule fois puis réutilisée.
+     * @return variance moyenne des coefficients
+     */
+    public synchronized double getCoefficientVariance() {
+        if (coefficientVariance == null) {
+            coefficientVariance = multiplicities == null ? Denoiser.calculateVariance(getAlpha())
+                                                         : Denoiser.calculateVariance(getAlpha(), multiplicities);
+        }
+        return coefficientVariance;
+    }
+
+    /**
+     * Écart type du bruit estimé à partir des dernières composantes (25% de haute fréquence),
+     * utilisé quand sigma n'est pas connu. Il est calculé une seule fois puis réutilisé.
+     * @return estimation de l'écart type du bruit
+     */
+    public synchronized double getEstimatedSigma() {
+        if (estimatedSigma == null) {
+            double[][] coefficients = getAlpha();
+            int startIdx = Tresholding.highFrequencyStart(coefficients.length);
+            estimatedSigma = Tresholding.estimateNoiseFromPCACoefficients(repeated(coefficients, startIdx), 0);
+        }
+        return estimatedSigma;
+    }
+
+    /**
+     * @return la dimension d'un patch vectorisé (s²)
+     */
+    public int getDimension() { return mean.length; }
+
+    /**
+     * @return le nombre de patchs décomposés (M), répétitions comprises
+     */
+    public int getPatchCount() { return patchCount; }
+
+    /**
+     * @return le nombre de colonnes décomposées (patchs distincts), égal à M sans regroupement
+     */
+    public int getColumnCount() { return centered[0].length; }
+
+    /**
+     * Lignes de coefficients à partir de {@code startIdx}, chaque colonne étant répétée autant de fois
+     * que le nombre de patchs qu'elle représente (l'estimation du bruit prend une médiane).
+     */
+    private double[][] repeated(double[][] coefficients, int startIdx) {
+        double[][] rows = new double[coefficients.length - startIdx][];
+        for (int i = startIdx; i < coefficients.length; i++) {
+            if (multiplicities == null) {
+                rows[i - startIdx] = coefficients[i];
+                continue;
+            }
+            double[] row = new double[patchCount];
+            for (int j = 0, k = 0; j < multiplicities.length; j++) {
+                Arrays.fill(row, k, k + multiplicities[j], coefficients[i][j]);
+                k += multiplicities[j];
+            }
+            rows[i - startIdx] = row;
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,478 @@
+package core.acp;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongConsumer;
+
+import core.image.Image;
+import core.image.PngStreamWriter;
+import core.image.StripReader;
+import core.patch.OffHeapPatchMatrix;
+import core.patch.PatchAggregator;
+import core.patch.PatchExtractor;
+import core.patch.PatchGrid;
+import core.patch.PatchMatrix;
+import core.patch.StripAggregator;
+
+/**
+ * Débruitage ACP global sur une grille dense de patchs (pas d'extraction choisi, jusqu'à 1 pixel),
+ * sans garder tous les patchs en mémoire.
+ *
+ * La grille est parcourue par bandes de lignes de patchs, en deux passes :
+ * <ol>
+ *   <li>chaque bande est extraite puis ajoutée aux sommes cumulées (somme des patchs et des produits x * x^T),
+ *       d'où la moyenne et la covariance de tous les patchs, puis la base des vecteurs propres ;</li>
+ *   <li>chaque bande est extraite de nouveau, projetée, seuillée, reconstruite puis ajoutée
+ *       à un {@link PatchAggregator} (moyenne des contributions de chaque pixel).</li>
+ * </ol>
+ * La mémoire utilisée dépend de la taille d'une bande et de l'image, pas du nombre total de patchs.
+ * Les bandes sont soit extraites de l'image à chaque passe, soit lues dans une {@link OffHeapPatchMatrix}
+ * extraite une seule fois (hors du tas Java), soit extraites de bandes de lignes lues directement dans le fichier
+ * ({@link StripReader}) : l'image n'est alors jamais chargée entièrement.
+ * La seconde passe peut aussi écrire le résultat au fil de l'eau ({@link #applyTo}) : les lignes terminées
+ * sont écrites dès que la bande de patchs suivante ne peut plus les toucher, et seule une fenêtre glissante
+ * de lignes est gardée en mémoire ({@link StripAggregator}).
+ * Le seuil global est calculé à partir des valeurs propres : VisuShrink sur le nombre total de
+ * coefficients, BayesShrink sur leur variance moyenne (trace de la covariance / s²).
+ * Quand sigma n'est pas connu, il est estimé comme par {@link PatchDecomposition#getEstimatedSigma()}
+ * (médiane des coefficients de haute fréquence), au prix de quelques passes de plus sur les bandes.
+ *
+ * @version 1.5
+ * @see PatchExtractor#extractPatchBand
+ * @see PatchGrid
+ * @see DenoiseSweep
+ */
+public class StreamingDenoiser {
+    private static final int BAND_PATCHES = 2048;   // nombre approximatif de patchs par bande
+    private static final int DIGIT_BITS = 16;       // bits d'une valeur fixés par passe de sélection de la médiane
+    private static final int SORTED_CANDIDATES = 1 << 16;   // candidats à la médiane triés en mémoire
+
+    private final Image image;              // image bruitée (null si elle est lue par bandes)
+    private final int width;                // largeur de l'image
+    private final int height;               // hauteur de l'image
+    private final int patchSize;            // taille du côté des patchs
+    private final int[] xs;                 // abscisses des colonnes de la grille
+    private final int[] ys;                 // ordonnées des lignes de la grille
+    private final PatchGrid.BorderPolicy border;    // lecture des pixels hors de l'image
+    private final int bandRows;             // nombre de lignes de patchs par bande
+    private final double[] mean;            // vecteur moyen de tous les patchs
+    private final double[][] eigenVectors;  // vecteurs propres (colonnes)
+    private final double[] eigenValues;     // valeurs propres associées
+    private final long patchCount;          // nombre total de patchs de la grille
+    private final OffHeapPatchMatrix stored;    // patchs déjà extraits, ou null pour les extraire à chaque passe
+    private final StripReader strips;       // fichier lu par bandes, ou null si l'image est en mémoire
+    private Double estimatedSigma;          // écart type du bruit estimé, calculé à la première demande
+
+    /**
+     * Calcule la base ACP de tous les patchs de la grille (première passe).
+     *
+     * @param image image à débruiter
+     * @param patchSize taille du côté des patchs
+     * @param stride pas entre deux patchs, horizontalement et verticalement (1 pour une grille complète)
+     * @throws IllegalArgumentException si le patch est plus grand que l'image ou le pas invalide
+     */
+    public StreamingDenoiser(Image image, int patchSize, int stride) {
+        this(image, PatchGrid.withStride(patchSize, stride));
+    }
+
+    /**
+     * Calcule la base ACP de tous les patchs d'une grille donnée (première passe).
+     *
+     * @param image image à débruiter
+     * @param grid grille d'extraction (taille des patchs et densité)
+     * @throws IllegalArgumentException si le patch est plus grand que l'image
+     */
+    public StreamingDenoiser(Image image, PatchGrid grid) {
+        this(image, image.getWidth(), image.getHeight(), grid.getSide(), grid.positions(image.getWidth()),
+             grid.positions(image.getHeight()), grid.getBorder(), null, null);
+    }
+
+    /**
+     * Calcule la base ACP de patchs déjà extraits hors du tas (première passe).
+     * La matrice doit rester ouverte tant que le débruiteur est utilisé.
+     *
+     * @param image image à débruiter (pour les dimensions de l'image reconstruite)
+     * @param patches patchs de la grille, stockés hors du tas
+     */
+    public StreamingDenoiser(Image image, OffHeapPatchMatrix patches) {
+        this(image, image.getWidth(), image.getHeight(), patches.getSide(), patches.getXPositions(),
+             patches.getYPositions(), patches.getBorder(), patches, null);
+    }
+
+    /**
+     * Calcule la base ACP de tous les patchs d'une grille, l'image étant lue par bandes dans son fichier
+     * (première passe). Le lecteur doit rester ouvert tant que le débruiteur est utilisé.
+     *
+     * @param strips image lue par bandes de lignes
+     * @param grid grille d'extraction, patchs entièrement dans l'image
+     * @throws IllegalArgumentException si la grille déborde de l'image ou si le patch est plus grand que l'image
+     * @throws UncheckedIOException si une bande ne peut pas être lue
+     */
+    public StreamingDenoiser(StripReader strips, PatchGrid grid) {
+        this(null, strips.getWidth(), strips.getHeight(), grid.getSide(), grid.positions(strips.getWidth()),
+             grid.positions(strips.getHeight()), checkInside(grid), null, strips);
+    }
+
+    private StreamingDenoiser(Image image, int width, int height, int patchSize, int[] xs, int[] ys,
+                              PatchGrid.BorderPolicy border, OffHeapPatchMatrix stored, StripReader strips) {
+        this.image = image;
+        this.width = width;
+        this.height = height;
+        this.strips = strips;
+        this.patchSize = patchSize;
+        this.xs = xs;
+        this.ys = ys;
+        this.border = border;
+        this.stored = stored;
+        this.bandRows = strips != null ? stripBandRows(strips.getStripHeight(), patchSize, xs, ys)
+                                       : Math.max(1, BAND_PATCHES / xs.length);
+        this.patchCount = (long) xs.length * ys.length;
+
+        int dim = patchSize * patchSize;
+        if (patchCount < dim) {
+            throw new IllegalArgumentException("Impossible de calculer la covariance : il faut au moins autant de patchs ("
+                                               + patchCount + ") que la dimension d'un patch (" + dim + ").");
+        }
+        double[] sum = new double[dim];
+        double[][] scatter = new double[dim][dim];
+        double[][] rows = new double[dim][Math.min(bandRows, ys.length) * xs.length];   // tampon de transposition partagé par les bandes
+        for (int first = 0; first < ys.length; first += bandRows) {
+            ACP.accumulateScatter(band(first), rows, sum, scatter);
+        }
+
+        // Γ = somme(x * x^T) / M - mV * mV^T
+        this.mean = new double[dim];
+        for (int i = 0; i < dim; i++) {
+            mean[i] = sum[i] / patchCount;
+        }
+        double[][] cov = new double[dim][dim];
+        for (int a = 0; a < dim; a++) {
+            for (int b = a; b < dim; b++) {
+                cov[a][b] = scatter[a][b] / patchCount - mean[a] * mean[b];
+                cov[b][a] = cov[a][b];
+            }
+        }
+        ACP.Pair<double[][], double[]> eig = ACP.diagonalise(cov);
+        this.eigenVectors = eig.first;
+        this.eigenValues = eig.second;
+    }
+
+    /**
+     * Une grille lue par bandes doit rester dans l'image : les pixels hors de l'image ne sont pas dans la bande.
+     */
+    private static PatchGrid.BorderPolicy checkInside(PatchGrid grid) {
+        if (grid.isPadded()) {
+            throw new IllegalArgumentException("La lecture par bandes n'accepte que des patchs entièrement dans l'image");
+        }
+        return grid.getBorder();
+    }
+
+    /**
+     * Nombre de lignes de patchs par bande quand l'image est lue par bandes de lignes : toutes les lignes de pixels
+     * d'une bande de patchs doivent tenir dans une bande décodée, dont la hauteur borne la mémoire utilisée.
+     *
+     * @throws IllegalArgumentException si une bande décodée est moins haute qu'un patch
+     */
+    private static int stripBandRows(int stripHeight, int patchSize, int[] xs, int[] ys) {
+        if (stripHeight < patchSize) {
+            throw new IllegalArgumentException("Des bandes de " + stripHeight + " lignes ne peuvent pas contenir des patchs de "
+                                               + patchSize + " pixels de côté");
+        }
+        int gap = 1;    // plus grand écart entre deux lignes de la grille
+        for (int i = 1; i < ys.length; i++) {
+            gap = Math.max(gap, ys[i] - ys[i - 1]);
+        }
+        return Math.max(1, Math.min(BAND_PATCHES / xs.length, (stripHeight - patchSize) / gap + 1));
+    }
+
+    /**
+     * @return nombre total de patchs de la grille
+     */
+    public long getPatchCount() { return patchCount; }
+
+    /**
+     * Débruite l'image avec une configuration de seuillage (seconde passe).
+     *
+     * @param variant configuration de seuillage
+     * @return image débruitée
+     */
+    public Image apply(DenoiseSweep.Variant variant) {
+        return applyAll(List.of(variant)).get(variant);
+    }
+
+    /**
+     * Débruite l'image pour plusieurs configurations en une seule seconde passe : chaque bande
+     * n'est extraite, centrée et projetée qu'une fois pour toutes les configurations.
+     *
+     * @param variants configurations de seuillage
+     * @return images débruitées, dans l'ordre des configurations fournies
+     */
+    public Map<DenoiseSweep.Variant, Image> applyAll(List<DenoiseSweep.Variant> variants) {
+        List<PatchAggregator> aggregators = new ArrayList<>();
+        for (DenoiseSweep.Variant variant : variants) {
+            aggregators.add(new PatchAggregator(width, height, variant.getWindow()));
+        }
+        Filters filters = new Filters(variants);
+        double[][] buffer = new double[patchSize * patchSize][Math.min(bandRows, ys.length) * xs.length];
+        for (int first = 0; first < ys.length; first += bandRows) {
+            PatchMatrix band = band(first);
+            double[][][] denoised = filters.apply(band, buffer);
+            for (int v = 0; v < variants.size(); v++) {
+                PatchAggregator aggregator = aggregators.get(v);
+                for (int j = 0; j < band.getCount(); j++) {
+                    aggregator.add(denoised[v], j, patchSize, band.getXOrigin(j), band.getYOrigin(j));
+                }
+            }
+        }
+
+        Map<DenoiseSweep.Variant, Image> results = new LinkedHashMap<>();
+        for (int v = 0; v < variants.size(); v++) {
+            results.put(variants.get(v), aggregators.get(v).toImage());
+        }
+        return results;
+    }
+
+    /**
+     * Débruite l'image et écrit le résultat ligne par ligne (seconde passe), sans construire l'image débruitée :
+     * après chaque bande de patchs, les lignes qu'aucune bande suivante ne couvre sont écrites puis oubliées.
+     * Le résultat est identique, pixel pour pixel, à celui de {@link #apply}.
+     *
+     * @param variant configuration de seuillage
+     * @param out destination des lignes (toutes les lignes de l'image y sont écrites)
+     * @throws IOException si l'écriture (ou la lecture d'une bande du fichier) échoue
+     */
+    public void applyTo(DenoiseSweep.Variant variant, PngStreamWriter out) throws IOException {
+        StripAggregator aggregator = new StripAggregator(width, height, variant.getWindow());
+        double[][] buffer = new double[patchSize * patchSize][Math.min(bandRows, ys.length) * xs.length];
+        try {
+            Filters filters = new Filters(List.of(variant));    // peut relire les bandes pour estimer sigma
+            for (int first = 0; first < ys.length; first += bandRows) {
+                PatchMatrix band = band(first);
+                double[][] denoised = filters.apply(band, buffer)[0];
+                for (int j = 0; j < band.getCount(); j++) {
+                    aggregator.add(denoised, j, patchSize, band.getXOrigin(j), band.getYOrigin(j));
+                }
+                int next = first + bandRows;
+                aggregator.flush(next < ys.length ? ys[next] : height, out);    // lignes que les bandes suivantes ne touchent pas
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Filtres de la seconde passe, un par configuration : matrice de Wiener, ou seuil global appliqué
+     * aux coefficients de la projection (calculée une seule fois par bande pour toutes les configurations).
+     */
+    private final class Filters {
+        private final List<DenoiseSweep.Variant> variants;
+        private final List<double[][]> wiener = new ArrayList<>();    // matrice de Wiener, ou null
+        private final List<Double> lambdas = new ArrayList<>();       // seuil global, ou null pour Wiener
+        private boolean needsProjection;
+
+        Filters(List<DenoiseSweep.Variant> variants) {
+            this.variants = variants;
+            for (DenoiseSweep.Variant variant : variants) {
+                double sigma = variant.getSigma() > 0 ? variant.getSigma() : estimateSigma();
+                if (variant.getShrink().equalsIgnoreCase("w")) {
+                    double[] weights = Tresholding.wienerWeights(eigenValues, sigma);
+                    wiener.add(Denoiser.filterMatrix(eigenVectors, weights));
+                    lambdas.add(null);
+                } else {
+                    wiener.add(null);
+                    lambdas.add(threshold(variant.getShrink(), sigma));
+                    needsProjection = true;
+                }
+            }
+        }
+
+        /**
+         * Débruite les patchs d'une bande pour chaque configuration.
+         * @param band patchs de la bande
+         * @param buffer tampon de centrage d'une bande complète
+         * @return patchs débruités (s² x M), un tableau par configuration
+         */
+        double[][][] apply(PatchMatrix band, double[][] buffer) {
+            int dim = patchSize * patchSize;
+            // La dernière bande, plus courte, a son propre tampon : les calculs suivants utilisent sa largeur
+            double[][] centered = band.center(mean, band.getCount() == buffer[0].length ? buffer
+                                                                                          : new double[dim][band.getCount()]);
+            double[][] alpha = needsProjection ? ACP.Proj(eigenVectors, centered) : null;
+            double[][][] denoised = new double[variants.size()][][];
+            for (int v = 0; v < variants.size(); v++) {
+                if (wiener.get(v) != null) {
+                    denoised[v] = Denoiser.applyFilter(wiener.get(v), mean, centered);
+                } else {
+                    double[][] alphaDenoised = Denoiser.applyTresholding(alpha, variants.get(v).getThreshold(), lambdas.get(v));
+                    denoised[v] = Denoiser.reconstruct(eigenVectors, mean, alphaDenoised);
+                }
+            }
+            return denoised;
+        }
+    }
+
+    /**
+     * Bande de lignes de la grille commençant à la ligne {@code first}, lue dans la matrice hors tas,
+     * extraite de l'image ou extraite des lignes du fichier qui la contiennent.
+     */
+    private PatchMatrix band(int first) {
+        int rowCount = Math.min(bandRows, ys.length - first);
+        if (strips != null) {
+            int top = ys[first];
+            try {
+                Image rows = strips.rows(top, ys[first + rowCount - 1] + patchSize - top);
+                return PatchExtractor.extractPatchBand(rows, top, patchSize, xs, ys, first, rowCount);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return stored != null ? stored.rows(first, rowCount)
+                              : PatchExtractor.extractPatchBand(image, patchSize, xs, ys, first, rowCount, border);
+    }
+
+    /**
+     * Seuil global VisuShrink ou BayesShrink, calculé sans les coefficients.
+     */
+    private double threshold(String shrinkType, double sigma) {
+        if (shrinkType.equalsIgnoreCase("v")) {
+            return Tresholding.visuShrink(sigma, patchCount * patchSize * patchSize);
+        } else if (shrinkType.equalsIgnoreCase("b")) {
+            // La variance des coefficients de la composante i est sa valeur propre
+            double trace = 0;
+            for (double value : eigenValues) {
+                trace += value;
+            }
+            return Tresholding.calculateBayesShrinkThreshold(sigma, trace / eigenValues.length);
+        }
+        throw new IllegalArgumentException("Type de seuillage adaptatif non reconnu: " + shrinkType);
+    }
+
+    /**
+     * Estime l'écart type du bruit comme {@link PatchDecomposition#getEstimatedSigma()} : médiane des valeurs absolues
+     * des coefficients de tous les patchs sur les 25% dernières composantes (haute fréquence), convertie par
+     * {@link Tresholding#noiseStdDevFromMedian(double)}. Les coefficients ne sont pas gardés en mémoire : la médiane
+     * exacte est sélectionnée en quelques passes sur les bandes (voir {@link #selectAbsolute}).
+     */
+    private synchronized double estimateSigma() {
+        if (estimatedSigma == null) {
+            int dim = patchSize * patchSize;
+            int start = Tresholding.highFrequencyStart(dim);
+            double[][] highFrequency = new double[dim][dim - start];
+            for (int i = 0; i < dim; i++) {
+                System.arraycopy(eigenVectors[i], start, highFrequency[i], 0, dim - start);
+            }
+            long count = patchCount * (dim - start);
+            double[] middle = selectAbsolute(highFrequency, new long[] {(count - 1) / 2, count / 2});
+            estimatedSigma = Tresholding.noiseStdDevFromMedian((middle[0] + middle[1]) / 2);
+        }
+        return estimatedSigma;
+    }
+
+    /**
+     * Valeurs absolues de rangs donnés (ordre croissant) parmi les coefficients de tous les patchs sur une base,
+     * sans garder ces coefficients. Pour un double positif, la représentation binaire croît avec la valeur :
+     * chaque valeur cherchée est fixée {@link #DIGIT_BITS} bits à la fois, par un histogramme des coefficients
+     * qui partagent les bits déjà fixés (une passe sur les bandes par chiffre), jusqu'à ce qu'il reste au plus
+     * {@link #SORTED_CANDIDATES} candidats ; une dernière passe les recueille et ils sont triés.
+     *
+     * @param basis vecteurs de la base (colonnes)
+     * @param ranks rangs cherchés, à partir de 0
+     * @return valeurs absolues de ces rangs
+     */
+    private double[] selectAbsolute(double[][] basis, long[] ranks) {
+        int n = ranks.length;
+        long[] prefix = new long[n];        // bits de poids fort déjà fixés de chaque valeur cherchée
+        int[] known = new int[n];           // nombre de bits fixés
+        long[] rank = ranks.clone();        // rang de la valeur parmi les coefficients candidats
+        long[] candidates = new long[n];    // nombre de coefficients commençant par ces bits
+        Arrays.fill(candidates, patchCount * basis[0].length);
+        boolean[] refining = new boolean[n];
+        while (true) {
+            boolean any = false;
+            for (int t = 0; t < n; t++) {
+                refining[t] = candidates[t] > SORTED_CANDIDATES && known[t] < Long.SIZE;
+                any |= refining[t];
+            }
+            if (!any) {
+                break;
+            }
+            long[][] histograms = new long[n][1 << DIGIT_BITS];
+            forEachAbsolute(basis, bits -> {
+                for (int t = 0; t < n; t++) {
+                    if (refining[t] && hasPrefix(bits, prefix[t], known[t])) {
+                        histograms[t][(int) (bits >>> (Long.SIZE - DIGIT_BITS - known[t])) & ((1 << DIGIT_BITS) - 1)]++;
+                    }
+                }
+            });
+            for (int t = 0; t < n; t++) {
+                if (refining[t]) {
+                    int digit = 0;
+                    while (rank[t] >= histograms[t][digit]) {
+                        rank[t] -= histograms[t][digit++];
+                    }
+                    candidates[t] = histograms[t][digit];
+                    prefix[t] = (prefix[t] << DIGIT_BITS) | digit;
+                    known[t] += DIGIT_BITS;
+                }
+            }
+        }
+
+        double[] values = new double[n];
+        double[][] kept = new double[n][];
+        int[] filled = new int[n];
+        for (int t = 0; t < n; t++) {
+            if (known[t] == Long.SIZE) {
+                values[t] = Double.longBitsToDouble(prefix[t]);    // tous les candidats ont cette valeur
+            } else {
+                kept[t] = new double[(int) candidates[t]];
+            }
+        }
+        if (Arrays.stream(kept).anyMatch(k -> k != null)) {
+            forEachAbsolute(basis, bits -> {
+                for (int t = 0; t < n; t++) {
+                    if (kept[t] != null && hasPrefix(bits, prefix[t], known[t])) {
+                        kept[t][filled[t]++] = Double.longBitsToDouble(bits);
+                    }
+                }
+            });
+        }
+        for (int t = 0; t < n; t++) {
+            if (kept[t] != null) {
+                Arrays.sort(kept[t]);
+                values[t] = kept[t][(int) rank[t]];
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Indique si les {@code known} bits de poids fort d'une valeur sont {@code prefix}.
+     */
+    private static boolean hasPrefix(long bits, long prefix, int known) {
+        return known == 0 || bits >>> (Long.SIZE - known) == prefix;
+    }
+
+    /**
+     * Parcourt les bandes et transmet la représentation binaire de la valeur absolue de chaque coefficient
+     * des patchs sur une base.
+     */
+    private void forEachAbsolute(double[][] basis, LongConsumer action) {
+        int dim = patchSize * patchSize;
+        double[][] buffer = new double[dim][Math.min(bandRows, ys.length) * xs.length];
+        for (int first = 0; first < ys.length; first += bandRows) {
+            PatchMatrix band = band(first);
+            double[][] centered = band.center(mean, band.getCount() == buffer[0].length ? buffer
+                                                                                      : new double[dim][band.getCount()]);
+            for (double[] row : ACP.Proj(basis, centered)) {
+                for (double value : row) {
+                    action.accept(Double.doubleToRawLongBits(Math.abs(value)));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package core.acp;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import javax.imageio.ImageIO;
+
+import core.image.GrayImage;
+import core.image.ImageFile;
+
+/**
+ * Classe de test pour le débruitage par bandes ({@link StreamingDenoiser#applyTo}, {@link core.patch.StripAggregator}).
+ * L'image lue et écrite par bandes doit être exactement celle de la grille dense en mémoire
+ * pour le même pas et les mêmes paramètres. Les hauteurs de bande testées couvrent :
+ * - des bandes à peine plus hautes qu'un patch (7 pixels de côté ici)
+ * - une hauteur qui ne divise pas celle de l'image (dernière bande incomplète)
+ * - une bande exactement de la hauteur de l'image, et une plus haute que l'image
+ *
+ * @version 1.0
+ * @see StreamingDenoiser
+ * @see ImageDenoiser#ImageDen(String, List, DenoiseOptions)
+ */
+public class StreamingDenoiserTest {
+    private static final int WIDTH = 123;
+    private static final int HEIGHT = 157;          // premier : aucune hauteur de bande testée ne le divise
+    private static final int[] STRIDES = {1, 3};
+    private static final int[] STRIP_HEIGHTS = {10, 16, 50, HEIGHT, HEIGHT + 40};
+    private static final double[] SIGMAS = {15, 25};
+
+    /**
+     * Point d'entrée du programme de test ; se termine avec le code 1 si une image par bandes diffère.
+     *
+     * @param args Arguments de la ligne de commande (non utilisés)
+     */
+    public static void main(String[] args) throws IOException {
+        Path dir = Files.createTempDirectory("streaming-denoiser-test");
+        int failures = 0;
+        try {
+            String input = dir.resolve("noisy.png").toString();
+            noisyPattern().saveImage(input);
+            for (int stride : STRIDES) {
+                List<String> expected = outputs(dir, "dense_" + stride);
+                ImageDenoiser.ImageDen(input, expected, options(stride, 0));
+                for (int stripHeight : STRIP_HEIGHTS) {
+                    List<String> actual = outputs(dir, "strips_" + stride + "_" + stripHeight);
+                    ImageDenoiser.ImageDen(input, actual, options(stride, stripHeight));
+                    for (int i = 0; i < SIGMAS.length; i++) {
+                        String diff = compare(expected.get(i), actual.get(i));
+                        System.out.println("pas " + stride + ", bandes de " + stripHeight + " lignes, sigma " + SIGMAS[i]
+                                           + " : " + (diff == null ? "OK" : "ÉCHEC (" + diff + ")"));
+                        if (diff != null) {
+                            failures++;
+                        }
+                    }
+                }
+            }
+        } finally {
+            try (var files = Files.list(dir)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            Files.deleteIfExists(dir);
+        }
+        System.out.println(failures == 0 ? "Débruitage par bandes identique à la grille dense en mémoire" : failures + " échec(s)");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Paramètres communs aux deux modes : seule la hauteur des bandes change (0 pour l'image en mémoire).
+     */
+    private static DenoiseOptions options(int stride, int stripHeight) {
+        return DenoiseOptions.builder()
+                             .global(true)
+                             .sigmas(SIGMAS)
+                             .patchPercent(0.06)
+                             .stride(stride)
+                             .stripHeight(stripHeight)
+                             .build();
+    }
+
+    /**
+     * Un chemin de sortie par valeur de sigma.
+     */
+    private static List<String> outputs(Path dir, String prefix) {
+        List<String> paths = new ArrayList<>();
+        for (double sigma : SIGMAS) {
+            paths.add(dir.resolve(prefix + "_" + (int) sigma + ".png").toString());
+        }
+        return paths;
+    }
+
+    /**
+     * Image de test : dégradés et bords francs, bruités avec une graine fixe.
+     */
+    private static ImageFile noisyPattern() {
+        GrayImage gray = new GrayImage(WIDTH, HEIGHT);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                gray.set(x, y, ((x / 20 + y / 25) % 2 == 0 ? 60 : 180) + (x + y) % 40);
+            }
+        }
+        ImageFile image = new ImageFile(gray.toImage(), "noisy");
+        image.noisify(20, 42);
+        return image;
+    }
+
+    /**
+     * @return null si les deux fichiers ont les mêmes pixels, sinon la première différence
+     */
+    private static String compare(String expectedPath, String actualPath) throws IOException {
+        BufferedImage expected = ImageIO.read(new File(expectedPath));
+        BufferedImage actual = ImageIO.read(new File(actualPath));
+        if (actual.getWidth() != expected.getWidth() || actual.getHeight() != expected.getHeight()) {
+            return "dimensions " + actual.getWidth() + "x" + actual.getHeight();
+        }
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                int e = expected.getRaster().getSample(x, y, 0);
+                int a = actual.getRaster().getSample(x, y, 0);
+                if (a != e) {
+                    return "pixel (" + x + ", " + y + ") : " + a + " au lieu de " + e;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -38,6 +38,18 @@ public class Tresholding {
      * @return valeur du seuil calculé
      */
     public static double visuShrink(double sigma, int N) {
+        return visuShrink(sigma, (long) N);
+    }
+    
+    /**
+     * Calcule le seuil VisuShrink pour un nombre de coefficients qui peut dépasser la capacité d'un int
+     * (échantillonnage dense de grandes images).
+     * 
+     * @param sigma estimation de l'écart type du bruit
+     * @param N nombre de coefficients
+     * @return valeur du seuil calculé
+     */
+    public static double visuShrink(double sigma, long N) {
         if (sigma <= 0 || N <= 0) {
             throw new IllegalArgumentException("Sigma et N doivent être strictement positifs");
         }
@@ -100,8 +112,30 @@ public class Tresholding {
             median = absCoeffs[absCoeffs.length / 2];
         }
         
-        // Estimer l'écart type (pour un bruit gaussien)
-        return median / 0.6745;
+        return noiseStdDevFromMedian(median);
+    }
+    
+    /**
+     * Écart type d'un bruit gaussien centré déduit de la médiane des valeurs absolues de ses échantillons
+     * (estimateur MAD) : c'est la dernière étape de {@link #estimateNoiseStdDev(double[])}, partagée avec les
+     * débruitages qui calculent cette médiane sans garder tous les coefficients en mémoire.
+     * 
+     * @param medianAbs médiane des valeurs absolues des coefficients de haute fréquence
+     * @return estimation de l'écart type du bruit
+     */
+    public static double noiseStdDevFromMedian(double medianAbs) {
+        return medianAbs / 0.6745;
+    }
+    
+    /**
+     * Indice de la première composante de haute fréquence utilisée pour estimer le bruit :
+     * les 25% dernières composantes principales (valeurs propres décroissantes).
+     * 
+     * @param componentCount nombre de composantes principales
+     * @return indice de la première composante de haute fréquence
+     */
+    public static int highFrequencyStart(int componentCount) {
+        return (int) (0.75 * componentCount);
     }
     
     /**
@@ -182,4 +216,25 @@ public class Tresholding {
         
         return estimateNoiseStdDev(highFreqCoeffs);
     }
-}
\ No newline at end of file
+    
+    /**
+     * Calcule le facteur de rétrécissement linéaire (Wiener) de chaque composante principale.
+     * La valeur propre λ d'une composante est la variance de ses coefficients, bruit compris :
+     * la part de signal est estimée par λ - σ², d'où le facteur w = max(0, (λ - σ²) / λ).
+     * 
+     * @param eigenValues valeurs propres des composantes
+     * @param sigma écart type du bruit
+     * @return facteur à appliquer aux coefficients de chaque composante (entre 0 et 1)
+     */
+    public static double[] wienerWeights(double[] eigenValues, double sigma) {
+        if (sigma <= 0) {
+            throw new IllegalArgumentException("Sigma doit être strictement positif");
+        }
+        double noiseVariance = sigma * sigma;
+        double[] weights = new double[eigenValues.length];
+        for (int i = 0; i < eigenValues.length; i++) {
+            weights[i] = eigenValues[i] > 0 ? Math.max(0, (eigenValues[i] - noiseVariance) / eigenValues[i]) : 0;
+        }
+        return weights;
+    }
+}
@@ -89,6 +89,58 @@ public class ImageQualityMetrics {
         return 10 * Math.log10((maxPixelValue * maxPixelValue) / mse);
     }
 
+    /**
+     * Calcule un indicateur de qualité sans référence à partir du résidu (image bruitée - image débruitée).
+     * 
+     * Un bon débruitage retire un résidu qui ressemble au bruit : son écart type est proche de sigma
+     * et il n'est pas corrélé à l'image débruitée. Le score combine l'écart relatif entre l'écart type
+     * du résidu et sigma, et la valeur absolue de la corrélation entre le résidu et l'image débruitée
+     * (structures de l'image retirées avec le bruit).
+     * 
+     * Plus le score est bas, meilleur est le débruitage.
+     * 
+     * @param noisy image bruitée (niveaux de gris)
+     * @param denoised image débruitée (niveaux de gris)
+     * @param sigma écart type du bruit supposé (strictement positif)
+     * @return score du résidu (>= 0)
+     * @throws IllegalArgumentException si les dimensions des images sont différentes ou si sigma n'est pas positif
+     */
+    public static double calculateResidualScore(BufferedImage noisy, BufferedImage denoised, double sigma) {
+        int width = noisy.getWidth();
+        int height = noisy.getHeight();
+        if (width != denoised.getWidth() || height != denoised.getHeight()) {
+            throw new IllegalArgumentException("Les images doivent avoir les mêmes dimensions");
+        }
+        if (sigma <= 0) {
+            throw new IllegalArgumentException("Sigma doit être strictement positif");
+        }
+
+        int[] noisyRow = new int[width];
+        int[] denoisedRow = new int[width];
+        double sumR = 0, sumR2 = 0, sumD = 0, sumD2 = 0, sumRD = 0;
+        for (int y = 0; y < height; y++) {
+            noisy.getRaster().getPixels(0, y, width, 1, noisyRow);
+            denoised.getRaster().getPixels(0, y, width, 1, denoisedRow);
+            for (int x = 0; x < width; x++) {
+                double d = denoisedRow[x];
+                double r = noisyRow[x] - d;                    // résidu retiré par le débruitage
+                sumR += r;
+                sumR2 += r * r;
+                sumD += d;
+                sumD2 += d * d;
+                sumRD += r * d;
+            }
+        }
+        double n = (double) width * height;
+        double varR = Math.max(0, sumR2 / n - (sumR / n) * (sumR / n));
+        double varD = Math.max(0, sumD2 / n - (sumD / n) * (sumD / n));
+        double cov = sumRD / n - (sumR / n) * (sumD / n);
+
+        double noiseMismatch = Math.abs(Math.sqrt(varR) - sigma) / sigma;
+        double correlation = (varR > 0 && varD > 0) ? Math.abs(cov) / Math.sqrt(varR * varD) : 0;
+        return noiseMismatch + correlation;
+    }
+
     /**
      * Méthode principale pour démonstration et tests.
      * 
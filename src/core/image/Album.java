@@ -1,53 +1,130 @@
 package core.image;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
 /**
- * Représente un ensemble d'instances de {@link ImageFile} sous la forme d'une {@link List}
+ * Représente un ensemble d'images ({@link ImageFile}) trouvées dans un dossier ou un fichier.
+ * <p>
+ * L'album ne garde que les chemins des fichiers : chaque fichier est reconnu comme image par son en-tête
+ * (un lecteur {@link ImageIO} accepte le flux), sans être décodé. Les images ne sont décodées qu'au parcours
+ * de l'album ({@link #iterator()}, {@link #stream()}), une à la fois : seule l'image en cours de traitement
+ * est en mémoire, quel que soit le nombre de fichiers.
  * @author p-cousin
- * @version 1.0
+ * @version 1.1
  * @see ImageFile
  */
-public class Album {
-	private List<ImageFile> album;		// Album sous forme de List<ImageFile>
-	
+public class Album implements Iterable<ImageFile> {
+	private final List<File> files;		// fichiers d'images de l'album, dans l'ordre de parcours
+
 	/**
 	 * Construit une instance de {@code Album} a partir d'un chemin de dossier ou de fichier
 	 * <p>
 	 * Ce constructeur est récursif et explorera tous les sous dossier du chemin fourni, ajoutant toutes les fichiers  d'images trouvées a l'album.
 	 * Si le chemin est celui du fichier, seul ce fichier sera ajouté a l'album s'il est une image.
+	 * Seul l'en-tête des fichiers est lu : les images ne sont pas décodées.
 	 * @param path
 	 * @throws IOException
 	 */
 	public Album(String path) throws IOException {
-		this.setAlbum(new ArrayList<>());										// album vide
-		File file = new File(path);												// chemin donné
-		if (file.isFile() && ImageIO.read(file) != null) {						// si le chemin désigne une image 
-			this.getAlbum().add(new ImageFile(path));							// on ajoute a l'album
+		this.files = new ArrayList<>();											// album vide
+		collect(new File(path), this.files);
+	}
+
+	/**
+	 * Ajoute à la liste les fichiers d'images d'un chemin, en explorant récursivement les dossiers
+	 * @param file chemin de fichier ou de dossier
+	 * @param files liste des fichiers d'images trouvés
+	 * @throws IOException
+	 */
+	private static void collect(File file, List<File> files) throws IOException {
+		if (file.isFile() && isImage(file)) {									// si le chemin désigne une image
+			files.add(file);													// on ajoute a l'album
 		}
 		else if (file.isDirectory()) {											//sinon
-			for(File f : file.listFiles()) {									//on itère le constructeur sur les sous-chemins
-				this.getAlbum().addAll((new Album(f.getPath())).getAlbum());	// et on ajoute le résultat a l'album
+			for(File f : file.listFiles()) {									//on explore les sous-chemins
+				collect(f, files);
+			}
+		}
+	}
+
+	/**
+	 * Indique si un fichier est une image lisible, d'après son en-tête seulement
+	 * @param file fichier à tester
+	 * @return true si un lecteur {@link ImageIO} reconnaît le fichier
+	 * @throws IOException
+	 */
+	public static boolean isImage(File file) throws IOException {
+		try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+			return in != null && ImageIO.getImageReaders(in).hasNext();
+		}
+	}
+
+	/**
+	 * @return fichiers d'images de l'album, dans l'ordre de parcours (liste non modifiable)
+	 */
+	public List<File> getFiles() {
+		return Collections.unmodifiableList(this.files);
+	}
+
+	/**
+	 * @return nombre d'images de l'album
+	 */
+	public int size() {
+		return this.files.size();
+	}
+
+	/**
+	 * Parcourt les images de l'album en les décodant une à une, au moment où elles sont demandées.
+	 * Une erreur de lecture est signalée par une {@link UncheckedIOException}.
+	 * @return itérateur sur les images
+	 */
+	@Override
+	public Iterator<ImageFile> iterator() {
+		Iterator<File> it = this.files.iterator();
+		return new Iterator<>() {
+			@Override
+			public boolean hasNext() {
+				return it.hasNext();
+			}
+
+			@Override
+			public ImageFile next() {
+				File file = it.next();
+				try {
+					return new ImageFile(file.getPath());
+				} catch (IOException e) {
+					throw new UncheckedIOException("Lecture impossible : " + file, e);
+				}
 			}
 		};
 	}
 
 	/**
-	 * Getter pour l'album
-	 * @return Liste d'images
+	 * @return flux séquentiel des images, décodées à la demande
 	 */
-	public List<ImageFile> getAlbum() {
-		return this.album;
+	public Stream<ImageFile> stream() {
+		return StreamSupport.stream(this.spliterator(), false);
 	}
 
 	/**
-	 * Setter pour l'album
-	 * @param album Liste d'images
+	 * Décode toutes les images de l'album et les garde en mémoire.
+	 * Pour un dossier volumineux, préférer le parcours de l'album ({@link #iterator()}).
+	 * @return Liste d'images
 	 */
-	public void setAlbum(List<ImageFile> album) {
-		this.album = album;
+	public List<ImageFile> getAlbum() {
+		List<ImageFile> album = new ArrayList<>(this.files.size());
+		for (ImageFile img : this) {
+			album.add(img);
+		}
+		return album;
 	}
 
 	/**
@@ -56,10 +133,10 @@ public class Album {
 	 */
 	@Override
 	public String toString() {
-		String fileList = "";
-		for (ImageFile i : this.getAlbum()) {
-			fileList += i.getPath() + "\n";
+		StringBuilder fileList = new StringBuilder();
+		for (File f : this.files) {
+			fileList.append(f.getPath()).append("\n");
 		}
-		return fileList;
+		return fileList.toString();
 	}
 }
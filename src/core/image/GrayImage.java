@@ -0,0 +1,209 @@
+package core.image;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+
+/**
+ * Image en niveaux de gris 8 bits manipulée directement dans le tableau d'octets de son raster.
+ *
+ * Les accès pixel par pixel d'{@link Image} passent par {@code WritableRaster.getSample/setSample},
+ * avec vérification des bornes et gestion d'exception à chaque appel : trop coûteux dans les boucles
+ * qui parcourent toute l'image. Une {@code GrayImage} lit et écrit les octets du {@link DataBufferByte}
+ * par lignes ou par rectangles, sans objet intermédiaire ni appel au modèle d'échantillonnage.
+ *
+ * L'image reste une {@link BufferedImage} de type {@link BufferedImage#TYPE_BYTE_GRAY} (ou une vue sur une
+ * telle image, par exemple une imagette obtenue par {@code getSubimage}) : les écritures sont immédiatement
+ * visibles par {@link #toImage()} et par la lecture ou l'écriture des fichiers.
+ *
+ * @version 1.1
+ * @see Image
+ */
+public final class GrayImage {
+    private final BufferedImage image;  // image partageant le tableau d'octets
+    private final byte[] data;          // pixels, une ligne après l'autre
+    private final int offset;           // indice du pixel (0, 0) dans le tableau
+    private final int scanline;         // écart entre deux lignes dans le tableau
+    private final int width;            // largeur de l'image
+    private final int height;           // hauteur de l'image
+
+    /**
+     * Crée une image noire.
+     * @param width largeur de l'image
+     * @param height hauteur de l'image
+     */
+    public GrayImage(int width, int height) {
+        this(new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY));
+    }
+
+    private GrayImage(BufferedImage image) {
+        Raster raster = image.getRaster();
+        DataBufferByte buffer = (DataBufferByte) raster.getDataBuffer();
+        ComponentSampleModel model = (ComponentSampleModel) raster.getSampleModel();
+        this.image = image;
+        this.data = buffer.getData();
+        this.offset = buffer.getOffset() + model.getOffset(-raster.getSampleModelTranslateX(), -raster.getSampleModelTranslateY());
+        this.scanline = model.getScanlineStride();
+        this.width = image.getWidth();
+        this.height = image.getHeight();
+    }
+
+    /**
+     * Indique si une image peut être manipulée directement, sans copie : raster d'octets à un seul canal,
+     * pixels contigus dans chaque ligne.
+     * @param img image à tester
+     * @return true si {@link #wrap(Image)} accepte l'image
+     */
+    public static boolean isDirect(Image img) {
+        Raster raster = img.getRaster();
+        return raster.getDataBuffer() instanceof DataBufferByte buffer
+            && raster.getSampleModel() instanceof ComponentSampleModel model
+            && model.getNumBands() == 1 && buffer.getNumBanks() == 1 && model.getPixelStride() == 1;
+    }
+
+    /**
+     * Vue directe sur les pixels d'une image : les écritures modifient l'image.
+     * @param img image en niveaux de gris 8 bits (voir {@link #isDirect(Image)})
+     * @return vue sur le tableau d'octets de l'image
+     * @throws IllegalArgumentException si le raster de l'image n'est pas un tableau d'octets à un seul canal
+     */
+    public static GrayImage wrap(Image img) {
+        if (!isDirect(img)) {
+            throw new IllegalArgumentException("L'image n'est pas une image en niveaux de gris 8 bits");
+        }
+        return new GrayImage(img.getImage());
+    }
+
+    /**
+     * @return largeur de l'image
+     */
+    public int getWidth() { return width; }
+
+    /**
+     * @return hauteur de l'image
+     */
+    public int getHeight() { return height; }
+
+    /**
+     * @return tableau d'octets des pixels (partagé, pas de copie)
+     */
+    public byte[] getData() { return data; }
+
+    /**
+     * @param x abscisse du pixel
+     * @param y ordonnée du pixel
+     * @return indice du pixel dans {@link #getData()}
+     */
+    public int index(int x, int y) { return offset + y * scanline + x; }
+
+    /**
+     * @return image partageant les pixels, pour l'affichage et l'écriture des fichiers
+     */
+    public Image toImage() { return new Image(image); }
+
+    /**
+     * @param x abscisse du pixel
+     * @param y ordonnée du pixel
+     * @return intensité du pixel (0 à 255)
+     * @throws IllegalArgumentException si le pixel est hors de l'image
+     */
+    public int get(int x, int y) {
+        check(x, y);
+        return data[index(x, y)] & 0xFF;
+    }
+
+    /**
+     * @param x abscisse du pixel
+     * @param y ordonnée du pixel
+     * @param grey intensité, limitée entre 0 et 255
+     * @throws IllegalArgumentException si le pixel est hors de l'image
+     */
+    public void set(int x, int y, int grey) {
+        check(x, y);
+        data[index(x, y)] = clamp(grey);
+    }
+
+    /**
+     * Lit une ligne entière.
+     * @param y ordonnée de la ligne
+     * @param out tableau de destination (au moins {@code width} cases)
+     * @return {@code out}
+     */
+    public int[] getRow(int y, int[] out) {
+        return getRect(0, y, width, 1, out);
+    }
+
+    /**
+     * Écrit une ligne entière.
+     * @param y ordonnée de la ligne
+     * @param values intensités (limitées entre 0 et 255)
+     */
+    public void putRow(int y, int[] values) {
+        putRect(0, y, width, 1, values);
+    }
+
+    /**
+     * Lit les pixels d'un rectangle, ligne par ligne.
+     * @param x abscisse du coin supérieur gauche
+     * @param y ordonnée du coin supérieur gauche
+     * @param w largeur du rectangle
+     * @param h hauteur du rectangle
+     * @param out tableau de destination (au moins {@code w * h} cases)
+     * @return {@code out}
+     * @throws IllegalArgumentException si le rectangle sort de l'image
+     */
+    public int[] getRect(int x, int y, int w, int h, int[] out) {
+        check(x, y, w, h);
+        for (int r = 0, k = 0; r < h; r++) {
+            for (int in = index(x, y + r), end = in + w; in < end; in++, k++) {
+                out[k] = data[in] & 0xFF;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Écrit les pixels d'un rectangle, ligne par ligne.
+     * @param x abscisse du coin supérieur gauche
+     * @param y ordonnée du coin supérieur gauche
+     * @param w largeur du rectangle
+     * @param h hauteur du rectangle
+     * @param values intensités (au moins {@code w * h} valeurs, limitées entre 0 et 255)
+     * @throws IllegalArgumentException si le rectangle sort de l'image
+     */
+    public void putRect(int x, int y, int w, int h, int[] values) {
+        check(x, y, w, h);
+        for (int r = 0, k = 0; r < h; r++) {
+            for (int out = index(x, y + r), end = out + w; out < end; out++, k++) {
+                data[out] = clamp(values[k]);
+            }
+        }
+    }
+
+    /**
+     * Vérifie qu'un pixel est dans l'image : l'abscisse et l'ordonnée sont vérifiées séparément,
+     * une abscisse hors de la ligne désignant sinon un pixel d'une autre ligne.
+     */
+    private void check(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            throw new IllegalArgumentException("Pixel hors de l'image : (" + x + ", " + y + ")");
+        }
+    }
+
+    /**
+     * Vérifie qu'un rectangle est contenu dans l'image.
+     */
+    private void check(int x, int y, int w, int h) {
+        if (w < 0 || h < 0 || x < 0 || y < 0 || x + w > width || y + h > height) {
+            throw new IllegalArgumentException("Rectangle hors de l'image : (" + x + ", " + y + ", " + w + ", " + h + ")");
+        }
+    }
+
+    /**
+     * Limite une intensité entre 0 et 255 et la convertit en octet.
+     */
+    private static byte clamp(int grey) {
+        return (byte) (grey > 255 ? 255 : (grey < 0 ? 0 : grey));
+    }
+}
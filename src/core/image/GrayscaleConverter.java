@@ -0,0 +1,162 @@
+package core.image;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.util.stream.IntStream;
+
+/**
+ * Conversion en bloc d'une image couleur en niveaux de gris 8 bits.
+ *
+ * {@code BufferedImage.getRGB/setRGB} pixel par pixel passent à chaque appel par le modèle de couleur
+ * de l'image source et de l'image de destination. Ici, les composantes sont lues directement dans le
+ * tableau du raster source lorsque sa disposition est connue (entiers empaquetés type {@code INT_RGB},
+ * {@code INT_ARGB}, {@code INT_BGR}, ou octets entrelacés type {@code 3BYTE_BGR}, {@code 4BYTE_ABGR}) ;
+ * les autres images (palette, 16 bits...) sont lues par lignes entières avec {@code getRGB}.
+ * La luminance est calculée en virgule fixe (poids sur 16 bits, de somme 65536) et les bandes de lignes
+ * sont traitées en parallèle, chacune écrivant ses propres lignes de l'image de destination.
+ *
+ * Comme l'ancienne conversion par {@code setRGB}, la luminance sRGB passe par le modèle de couleur
+ * de {@link BufferedImage#TYPE_BYTE_GRAY} (espace de gris linéaire) : cette correspondance est calculée
+ * une fois pour les 256 niveaux et appliquée par table.
+ *
+ * @version 1.0
+ * @see Image#convertToGrayscale()
+ * @see GrayImage
+ */
+public final class GrayscaleConverter {
+    private static final int STRIPE_ROWS = 64;      // nombre de lignes par bande
+    private static final int WEIGHT_R = 13933;      // 0.2126 * 65536
+    private static final int WEIGHT_G = 46871;      // 0.7152 * 65536
+    private static final int WEIGHT_B = 4732;       // 0.0722 * 65536 (somme des poids : 65536)
+    private static final byte[] GRAY_LEVELS = grayLevels();    // niveau stocké pour chaque luminance sRGB
+
+    private GrayscaleConverter() {}
+
+    /**
+     * Convertit une image en niveaux de gris.
+     * @param src image source (quel que soit son type)
+     * @return nouvelle image de type {@link BufferedImage#TYPE_BYTE_GRAY}
+     */
+    public static BufferedImage convert(BufferedImage src) {
+        int width = src.getWidth();
+        int height = src.getHeight();
+        GrayImage gray = new GrayImage(width, height);
+        byte[] out = gray.getData();
+        StripeReader reader = readerFor(src);
+        int stripes = (height + STRIPE_ROWS - 1) / STRIPE_ROWS;
+        IntStream.range(0, stripes).parallel().forEach(s -> {
+            int[] row = new int[width];
+            for (int y = s * STRIPE_ROWS; y < Math.min(height, (s + 1) * STRIPE_ROWS); y++) {
+                reader.luminances(y, row);
+                for (int x = 0, k = gray.index(0, y); x < width; x++, k++) {
+                    out[k] = GRAY_LEVELS[row[x]];
+                }
+            }
+        });
+        return gray.toImage().getImage();
+    }
+
+    /**
+     * Luminance d'un pixel sRGB (0 à 255), en virgule fixe.
+     */
+    private static int luminance(int r, int g, int b) {
+        return (WEIGHT_R * r + WEIGHT_G * g + WEIGHT_B * b) >>> 16;
+    }
+
+    /**
+     * Lecture des luminances d'une ligne de l'image source.
+     */
+    @FunctionalInterface
+    private interface StripeReader {
+        void luminances(int y, int[] row);
+    }
+
+    /**
+     * Choisit la lecture la plus directe pour la disposition du raster source.
+     */
+    private static StripeReader readerFor(BufferedImage src) {
+        Raster raster = src.getRaster();
+        ColorModel cm = src.getColorModel();
+        boolean plainRgb = cm.getColorSpace().isCS_sRGB() && !cm.isAlphaPremultiplied();
+        int tx = -raster.getSampleModelTranslateX();
+        int ty = -raster.getSampleModelTranslateY();
+        int width = src.getWidth();
+
+        if (plainRgb && cm instanceof DirectColorModel
+                && raster.getDataBuffer() instanceof DataBufferInt buffer && buffer.getNumBanks() == 1
+                && raster.getSampleModel() instanceof SinglePixelPackedSampleModel model && hasByteSamples(model)) {
+            // Entiers empaquetés : bandes R, G, B (et A) dans l'ordre du modèle de couleur
+            int[] data = buffer.getData();
+            int[] shifts = model.getBitOffsets();
+            int base = buffer.getOffset() + model.getOffset(tx, ty);
+            int scanline = model.getScanlineStride();
+            return (y, row) -> {
+                for (int x = 0, k = base + y * scanline; x < width; x++, k++) {
+                    int p = data[k];
+                    row[x] = luminance((p >>> shifts[0]) & 0xFF, (p >>> shifts[1]) & 0xFF, (p >>> shifts[2]) & 0xFF);
+                }
+            };
+        }
+        if (plainRgb && cm instanceof ComponentColorModel && cm.getNumColorComponents() == 3
+                && raster.getDataBuffer() instanceof DataBufferByte buffer && buffer.getNumBanks() == 1
+                && raster.getSampleModel() instanceof ComponentSampleModel model && model.getNumBands() >= 3) {
+            // Octets entrelacés (BGR, ABGR, RGB...) : une case par composante
+            byte[] data = buffer.getData();
+            int[] bands = model.getBandOffsets();
+            int stride = model.getPixelStride();
+            int scanline = model.getScanlineStride();
+            int base = buffer.getOffset() + ty * scanline + tx * stride;     // début du pixel (0, 0), hors décalage des bandes
+            return (y, row) -> {
+                for (int x = 0, k = base + y * scanline; x < width; x++, k += stride) {
+                    row[x] = luminance(data[k + bands[0]] & 0xFF, data[k + bands[1]] & 0xFF, data[k + bands[2]] & 0xFF);
+                }
+            };
+        }
+        // Disposition quelconque : conversion par le modèle de couleur, une ligne à la fois
+        return (y, row) -> {
+            src.getRGB(0, y, width, 1, row, 0, width);
+            for (int x = 0; x < width; x++) {
+                int rgb = row[x];
+                row[x] = luminance((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF);
+            }
+        };
+    }
+
+    /**
+     * Vérifie que les trois composantes de couleur d'un modèle empaqueté font chacune 8 bits.
+     */
+    private static boolean hasByteSamples(SinglePixelPackedSampleModel model) {
+        if (model.getNumBands() < 3) {
+            return false;
+        }
+        int[] masks = model.getBitMasks();
+        int[] shifts = model.getBitOffsets();
+        for (int band = 0; band < 3; band++) {
+            if (masks[band] >>> shifts[band] != 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Niveau de gris stocké par {@code setRGB} dans une image {@link BufferedImage#TYPE_BYTE_GRAY}
+     * pour chaque gris sRGB (r = g = b).
+     */
+    private static byte[] grayLevels() {
+        ColorModel gray = new BufferedImage(1, 1, BufferedImage.TYPE_BYTE_GRAY).getColorModel();
+        byte[] levels = new byte[256];
+        for (int v = 0; v < 256; v++) {
+            byte[] pixel = (byte[]) gray.getDataElements((v << 16) | (v << 8) | v, null);
+            levels[v] = pixel[0];
+        }
+        return levels;
+    }
+}
@@ -1,13 +1,15 @@
 package core.image;
 import java.awt.image.BufferedImage;
 import java.awt.image.WritableRaster;
-import java.util.Random;
 
 /**
  * Simplification de la classe {@link BufferedImage} pour nos besoins (images greyscale)
  * @author p-cousin
- * @version 1.2
+ * Les traitements qui parcourent toute l'image passent par {@link GrayImage} (accès direct aux octets du raster)
+ * plutôt que par {@link #getPixel(int, int)} et {@link #setPixel(int, int, int)}.
+ * @version 1.5
  * @see BufferedImage
+ * @see GrayImage
  */
 public class Image{
 	private BufferedImage img;			// Image sous forme de BufferedImage
@@ -45,6 +47,46 @@ public class Image{
 		return this.img;
 	}
 
+	/**
+	 * Crée une copie indépendante de l'image (les pixels sont dupliqués)
+	 * @return copie de l'image
+	 */
+	public Image copy() {
+		BufferedImage copy = new BufferedImage(this.getImage().getColorModel(), this.getRaster().createCompatibleWritableRaster(), this.getImage().isAlphaPremultiplied(), null);
+		copy.getRaster().setRect(this.getRaster());
+		return new Image(copy);
+	}
+
+	/**
+	 * Crée une version sous-échantillonnée de l'image en ne conservant qu'un pixel sur {@code factor}
+	 * dans chaque direction (sans moyennage, le bruit garde donc le même écart type)
+	 * @param factor facteur de sous-échantillonnage (>= 1)
+	 * @return image sous-échantillonnée
+	 */
+	public Image subsample(int factor) {
+		if (factor <= 1) {
+			return this.copy();
+		}
+		int width = (this.getWidth() + factor - 1) / factor;
+		int height = (this.getHeight() + factor - 1) / factor;
+		GrayImage small = new GrayImage(width, height);
+		GrayImage source = GrayImage.isDirect(this) ? GrayImage.wrap(this) : null;
+		int[] row = new int[this.getWidth()];
+		int[] smallRow = new int[width];
+		for (int y = 0; y < height; y++) {
+			if (source != null) {
+				source.getRow(y * factor, row);											// ligne source conservée
+			} else {
+				this.getRaster().getPixels(0, y * factor, this.getWidth(), 1, row);
+			}
+			for (int x = 0; x < width; x++) {
+				smallRow[x] = row[x * factor];
+			}
+			small.putRow(y, smallRow);
+		}
+		return small.toImage();
+	}
+
 	/**
 	 * Raccourci pour la methode getRaster() de la classe {@link BufferedImage}
 	 * @return {@link WritableRaster} contenant les données de l'image
@@ -112,15 +154,21 @@ public class Image{
 	}
 	/**
 	 * Modifie l'image en lui ajoutant un bruit Gaussien paramétré par son écart type
+	 * Le bruit est tiré en parallèle par {@link NoiseGenerator}, avec une graine aléatoire.
 	 * @param sigma écart type du bruit Gaussien
 	 */
 	public void noisify(int sigma) {
-		Random r = new Random();
-		for (int y = 0; y < this.getHeight(); y ++) {
-			for (int x = 0; x < this.getWidth(); x ++) {
-				this.setPixel(x, y, (int) (this.getPixel(x,y) + r.nextGaussian() * sigma));		// ajout du bruit Gaussien. un dépassement de la valeur au dessus de 255 ou end essous de 0 est géré par la methode setPixel
-			}
-		}
+		NoiseGenerator.unseeded().apply(this, sigma);
+	}
+
+	/**
+	 * Modifie l'image en lui ajoutant un bruit Gaussien reproductible : la même graine donne le même bruit.
+	 * @param sigma écart type du bruit Gaussien
+	 * @param seed graine du générateur
+	 * @see NoiseGenerator
+	 */
+	public void noisify(double sigma, long seed) {
+		new NoiseGenerator(seed).apply(this, sigma);
 	}
 	
 	/**
@@ -134,30 +182,8 @@ public class Image{
 			return;
 		}
 		
-		// Créer une nouvelle image en niveaux de gris
-		BufferedImage grayImage = new BufferedImage(
-			this.getWidth(), 
-			this.getHeight(), 
-			BufferedImage.TYPE_BYTE_GRAY);
-		
-		// Copier les pixels en convertissant les couleurs en niveaux de gris
-		for (int y = 0; y < this.getHeight(); y++) {
-			for (int x = 0; x < this.getWidth(); x++) {
-				int rgb = this.getImage().getRGB(x, y);
-				
-				// Extraire les composantes RGB
-				int r = (rgb >> 16) & 0xFF;
-				int g = (rgb >> 8) & 0xFF;
-				int b = rgb & 0xFF;
-				
-				// Calculer la luminance (niveaux de gris)
-				int gray = (int) (0.2126 * r + 0.7152 * g + 0.0722 * b);
-				
-				// Définir le pixel en niveaux de gris
-				int grayRGB = (gray << 16) | (gray << 8) | gray;
-				grayImage.setRGB(x, y, grayRGB);
-			}
-		}
+		// Conversion en bloc, directement dans les tableaux des rasters et par bandes de lignes en parallèle
+		BufferedImage grayImage = GrayscaleConverter.convert(this.getImage());
 		
 		// Remplacer l'image originale par l'image en niveaux de gris
 		this.setImage(grayImage);
@@ -1,15 +1,26 @@
 package core.image;
+import java.awt.Dimension;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Iterator;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 
 
 /**
  * Représente un fichier d'image et définis toutes les méthodes utiles a sa manipulation
  * Cette classe hérite de la classe {@link Image}
+ * Une image peut aussi être lue partiellement (région, sous-échantillonnage) par un {@link ImageReader} :
+ * seules les données utiles sont décodées et gardées en mémoire, ce qui permet de prévisualiser
+ * ou d'analyser une très grande image sans la charger entièrement.
+ * L'image peut être sauvegardée par {@link ImageIO} ou par un {@link PngEncoder} (niveau de compression choisi).
  * @author p-cousin
- * @version 1.2
+ * @version 1.4
  * @see Image
  */
 public class ImageFile extends Image {
@@ -32,6 +43,25 @@ public class ImageFile extends Image {
 		this.convertToGrayscale();                  // convertir en niveaux de gris si nécessaire
 	}
 
+    /**
+     * Construit une instance de {@code ImageFile} à partir d'une partie seulement du fichier
+     * et convertit automatiquement l'image en niveaux de gris si nécessaire.
+     * Le pixel (x, y) de l'image lue est le pixel ({@code region.x + x * subsampling}, {@code region.y + y * subsampling})
+     * du fichier, comme pour {@link Image#subsample(int)}.
+     * @param filePath chemin de l'image
+     * @param region rectangle à lire, limité aux bornes de l'image (null pour l'image entière)
+     * @param subsampling un pixel lu sur {@code subsampling} dans chaque direction (1 pour tous les pixels)
+     * @throws IOException si le fichier ne peut pas être lu ou n'est pas une image reconnue
+     * @throws IllegalArgumentException si la région ne recouvre pas l'image ou si le pas est inférieur à 1
+     * @see ImageReadParam#setSourceRegion(Rectangle)
+     * @see ImageReadParam#setSourceSubsampling(int, int, int, int)
+     */
+    public ImageFile(String filePath, Rectangle region, int subsampling) throws IOException {
+	    super(read(new File(filePath), region, subsampling));
+		splitFilePath(filePath);
+		this.convertToGrayscale();
+	}
+
     /**
      * Construit une instance de {@code ImageFile} à partir d'une instance de {@link Image} et d'un nom (Downcast)
      * et convertit automatiquement l'image en niveaux de gris si nécessaire
@@ -116,6 +146,83 @@ public class ImageFile extends Image {
         }
     }
 
+    /**
+     * Lit les dimensions d'une image dans l'en-tête du fichier, sans décoder les pixels
+     * @param filePath chemin de l'image
+     * @return largeur et hauteur de l'image
+     * @throws IOException si le fichier ne peut pas être lu ou n'est pas une image reconnue
+     */
+    public static Dimension readSize(String filePath) throws IOException {
+        File file = new File(filePath);
+        try (ImageInputStream in = open(file)) {
+            ImageReader reader = readerFor(in, file);
+            try {
+                return new Dimension(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Décode une région d'une image, éventuellement sous-échantillonnée
+     * @param file fichier de l'image
+     * @param region rectangle à lire (null pour l'image entière)
+     * @param subsampling pas de lecture dans chaque direction
+     * @return image décodée
+     * @throws IOException
+     */
+    private static BufferedImage read(File file, Rectangle region, int subsampling) throws IOException {
+        if (subsampling < 1) {
+            throw new IllegalArgumentException("Le pas de sous-échantillonnage doit être au moins 1");
+        }
+        try (ImageInputStream in = open(file)) {
+            ImageReader reader = readerFor(in, file);
+            try {
+                ImageReadParam param = reader.getDefaultReadParam();
+                if (region != null) {
+                    Rectangle bounds = new Rectangle(reader.getWidth(0), reader.getHeight(0));
+                    Rectangle clipped = region.intersection(bounds);
+                    if (clipped.isEmpty()) {
+                        throw new IllegalArgumentException("La région " + region.x + "," + region.y + "," + region.width + ","
+                                                           + region.height + " est hors de l'image (" + bounds.width + "x" + bounds.height + ")");
+                    }
+                    param.setSourceRegion(clipped);
+                }
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Ouvre un flux de lecture sur un fichier d'image
+     */
+    private static ImageInputStream open(File file) throws IOException {
+        ImageInputStream in = ImageIO.createImageInputStream(file);
+        if (in == null) {
+            throw new IOException("Lecture impossible : " + file);
+        }
+        return in;
+    }
+
+    /**
+     * Premier lecteur {@link ImageIO} reconnaissant le flux, attaché au flux
+     */
+    private static ImageReader readerFor(ImageInputStream in, File file) throws IOException {
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+        if (!readers.hasNext()) {
+            throw new IOException("Format d'image non reconnu : " + file);
+        }
+        ImageReader reader = readers.next();
+        reader.setInput(in, true, true);
+        return reader;
+    }
+
     /**
      * Traite le chemin de l'image donné pour en extraire les variables d'instance {@code dir}, {@code name} et {@code ext}
      * @param filePath chemin de l'image
@@ -150,4 +257,22 @@ public class ImageFile extends Image {
             e.printStackTrace();
         }
     }
+
+    /**
+     * Sauvegarde l'instance d'image au format PNG avec un encodeur donné
+     * @param path chemin du fichier de sortie
+     * @param encoder encodeur PNG (niveau de compression), ou null pour l'écriture par défaut d'{@link ImageIO}
+     * @see #saveImage(String)
+     */
+    public void saveImage(String path, PngEncoder encoder) {
+        if (encoder == null) {
+            saveImage(path);
+            return;
+        }
+        try {
+            encoder.write(this, Paths.get(path));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
 }
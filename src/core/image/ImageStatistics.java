@@ -0,0 +1,156 @@
+package core.image;
+
+/**
+ * Statistiques locales d'une image à l'aide d'images intégrales.
+ *
+ * Les sommes cumulées des intensités et de leurs carrés sont calculées une seule fois, en une lecture
+ * du raster ligne par ligne : la somme, la moyenne et la variance de n'importe quel rectangle s'obtiennent
+ * ensuite en O(1) (quatre lectures par image intégrale), sans relire ses pixels. Les sommes sont gardées
+ * en {@code long}, ce qui reste exact pour toute image dont les images intégrales tiennent dans un tableau Java,
+ * soit un peu moins de 2^31 cases ((largeur+1) x (hauteur+1), environ 2 gigapixels) ; au-delà, la construction échoue.
+ *
+ * L'instance n'est pas modifiée après sa construction : elle peut être partagée entre plusieurs fils
+ * (par exemple entre les imagettes d'une même image, en décalant les coordonnées).
+ *
+ * @version 1.1
+ * @see Image
+ */
+public final class ImageStatistics {
+    private final int width;        // largeur de l'image
+    private final int height;       // hauteur de l'image
+    private final long[] sum;       // image intégrale des intensités ((width+1) x (height+1))
+    private final long[] sumSq;     // image intégrale des carrés des intensités
+
+    /**
+     * Calcule les images intégrales d'une image.
+     * @param img image en niveaux de gris
+     * @throws IllegalArgumentException si l'image est trop grande pour un tableau d'images intégrales
+     */
+    public ImageStatistics(Image img) {
+        int w = img.getWidth();
+        int h = img.getHeight();
+        int cells;
+        try {
+            cells = Math.multiplyExact(w + 1, h + 1);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Image trop grande pour des images intégrales : " + w + "x" + h);
+        }
+        this.width = w;
+        this.height = h;
+        this.sum = new long[cells];
+        this.sumSq = new long[cells];
+
+        int[] row = new int[w];
+        GrayImage gray = GrayImage.isDirect(img) ? GrayImage.wrap(img) : null;
+        for (int y = 0; y < h; y++) {
+            if (gray != null) {
+                gray.getRow(y, row);                                // une ligne de l'image
+            } else {
+                img.getRaster().getPixels(0, y, w, 1, row);
+            }
+            long rowSum = 0, rowSumSq = 0;
+            int above = y * (w + 1);
+            int current = (y + 1) * (w + 1);
+            for (int x = 0; x < w; x++) {
+                rowSum += row[x];
+                rowSumSq += (long) row[x] * row[x];
+                sum[current + x + 1] = sum[above + x + 1] + rowSum;
+                sumSq[current + x + 1] = sumSq[above + x + 1] + rowSumSq;
+            }
+        }
+    }
+
+    /**
+     * @return largeur de l'image
+     */
+    public int getWidth() { return width; }
+
+    /**
+     * @return hauteur de l'image
+     */
+    public int getHeight() { return height; }
+
+    /**
+     * Somme des intensités d'un rectangle.
+     * @param x abscisse du coin supérieur gauche
+     * @param y ordonnée du coin supérieur gauche
+     * @param w largeur du rectangle
+     * @param h hauteur du rectangle
+     * @return somme des intensités
+     * @throws IllegalArgumentException si le rectangle sort de l'image
+     */
+    public long sum(int x, int y, int w, int h) {
+        check(x, y, w, h);
+        return rectangle(sum, x, y, w, h);
+    }
+
+    /**
+     * Moyenne des intensités d'un rectangle.
+     * @param x abscisse du coin supérieur gauche
+     * @param y ordonnée du coin supérieur gauche
+     * @param w largeur du rectangle
+     * @param h hauteur du rectangle
+     * @return moyenne des intensités
+     * @throws IllegalArgumentException si le rectangle sort de l'image ou est vide
+     */
+    public double mean(int x, int y, int w, int h) {
+        check(x, y, w, h);
+        return (double) rectangle(sum, x, y, w, h) / ((long) w * h);
+    }
+
+    /**
+     * Variance des intensités d'un rectangle.
+     * @param x abscisse du coin supérieur gauche
+     * @param y ordonnée du coin supérieur gauche
+     * @param w largeur du rectangle
+     * @param h hauteur du rectangle
+     * @return variance des intensités
+     * @throws IllegalArgumentException si le rectangle sort de l'image ou est vide
+     */
+    public double variance(int x, int y, int w, int h) {
+        check(x, y, w, h);
+        double n = (double) w * h;
+        double m = rectangle(sum, x, y, w, h) / n;
+        return Math.max(0, rectangle(sumSq, x, y, w, h) / n - m * m);
+    }
+
+    /**
+     * Moyenne des intensités d'une zone carrée.
+     * @param x abscisse du coin supérieur gauche
+     * @param y ordonnée du coin supérieur gauche
+     * @param side taille du côté de la zone
+     * @return moyenne des intensités
+     */
+    public double mean(int x, int y, int side) {
+        return mean(x, y, side, side);
+    }
+
+    /**
+     * Variance des intensités d'une zone carrée.
+     * @param x abscisse du coin supérieur gauche
+     * @param y ordonnée du coin supérieur gauche
+     * @param side taille du côté de la zone
+     * @return variance des intensités
+     */
+    public double variance(int x, int y, int side) {
+        return variance(x, y, side, side);
+    }
+
+    /**
+     * Vérifie qu'un rectangle non vide est contenu dans l'image.
+     */
+    private void check(int x, int y, int w, int h) {
+        if (w <= 0 || h <= 0 || x < 0 || y < 0 || x + w > width || y + h > height) {
+            throw new IllegalArgumentException("Rectangle hors de l'image : (" + x + ", " + y + ", " + w + ", " + h + ")");
+        }
+    }
+
+    /**
+     * Somme d'un rectangle à partir d'une image intégrale (quatre lectures).
+     */
+    private long rectangle(long[] integral, int x, int y, int w, int h) {
+        int top = y * (width + 1);
+        int bottom = (y + h) * (width + 1);
+        return integral[bottom + x + w] - integral[bottom + x] - integral[top + x + w] + integral[top + x];
+    }
+}
@@ -0,0 +1,181 @@
+package core.image;
+
+import java.awt.image.WritableRaster;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Générateur de bruit gaussien additif, parallèle et reproductible.
+ *
+ * L'image est découpée en bandes de {@link #STRIPE_ROWS} lignes. Chaque bande reçoit son propre
+ * {@link SplittableRandom}, obtenu par divisions successives d'un générateur initialisé avec la graine :
+ * les bandes sont bruitées en parallèle, et le résultat ne dépend que de la graine (pas du nombre de fils
+ * ni de l'ordre d'exécution). Les tirages gaussiens utilisent la méthode ziggurat de Marsaglia et Tsang
+ * (une table de 128 couches : un entier aléatoire, une comparaison et une multiplication dans 98 % des cas),
+ * et les pixels sont lus et écrits ligne par ligne (voir {@link GrayImage}).
+ *
+ * Comme {@link Image#noisify(int)}, chaque pixel reçoit {@code (int) (pixel + sigma * g)}, limité entre 0 et 255.
+ *
+ * @version 1.0
+ * @see Image#noisify(int)
+ */
+public final class NoiseGenerator {
+    public static final int STRIPE_ROWS = 64;   // nombre de lignes par bande
+
+    private final long seed;    // graine du générateur
+
+    /**
+     * @param seed graine : la même graine donne le même bruit pour une image de mêmes dimensions
+     */
+    public NoiseGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @return un générateur de graine aléatoire (bruit différent à chaque appel)
+     */
+    public static NoiseGenerator unseeded() {
+        return new NoiseGenerator(new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Graine dérivée pour une image d'un lot, de sorte que chaque image reçoive un bruit différent
+     * mais reproductible, quel que soit l'ordre de traitement des images.
+     * @param name nom de l'image
+     * @return générateur propre à cette image
+     */
+    public NoiseGenerator forImage(String name) {
+        long h = seed ^ (name.hashCode() * 0x9E3779B97F4A7C15L);
+        return new NoiseGenerator(new SplittableRandom(h).nextLong());
+    }
+
+    /**
+     * @return graine du générateur
+     */
+    public long getSeed() { return seed; }
+
+    /**
+     * Ajoute un bruit gaussien à l'image, en place.
+     * @param img image à bruiter (niveaux de gris ; pour une autre image, seul le premier canal est bruité)
+     * @param sigma écart type du bruit
+     */
+    public void apply(Image img, double sigma) {
+        int width = img.getWidth();
+        int height = img.getHeight();
+        int stripes = (height + STRIPE_ROWS - 1) / STRIPE_ROWS;
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] randoms = new SplittableRandom[stripes];
+        for (int s = 0; s < stripes; s++) {
+            randoms[s] = root.split();
+        }
+        GrayImage gray = GrayImage.isDirect(img) ? GrayImage.wrap(img) : null;
+        WritableRaster raster = img.getRaster();
+        IntStream.range(0, stripes).parallel().forEach(s -> {
+            Ziggurat gaussian = new Ziggurat(randoms[s]);
+            int[] row = new int[width];
+            for (int y = s * STRIPE_ROWS; y < Math.min(height, (s + 1) * STRIPE_ROWS); y++) {
+                if (gray != null) {
+                    gray.getRow(y, row);
+                } else {
+                    raster.getSamples(0, y, width, 1, 0, row);
+                }
+                for (int x = 0; x < width; x++) {
+                    int grey = (int) (row[x] + gaussian.next() * sigma);
+                    row[x] = grey > 255 ? 255 : (grey < 0 ? 0 : grey);
+                }
+                if (gray != null) {
+                    gray.putRow(y, row);
+                } else {
+                    raster.setSamples(0, y, width, 1, 0, row);
+                }
+            }
+        });
+    }
+
+    /**
+     * Tirages de la loi normale centrée réduite par la méthode ziggurat (Marsaglia et Tsang, 2000),
+     * à partir d'entiers de 64 bits d'un {@link SplittableRandom} : les 32 bits de poids faible donnent
+     * la valeur et 7 autres bits, indépendants, la couche (dans la version d'origine, les 7 bits de poids faible
+     * servent aux deux, ce qui corrèle la couche et la valeur tirée). Les tables sont partagées et
+     * calculées une seule fois ; chaque instance n'est utilisée que par un seul fil.
+     */
+    private static final class Ziggurat {
+        private static final double R = 3.442619855899;         // abscisse de la dernière couche
+        private static final double M1 = 2147483648.0;          // 2^31
+        private static final int[] KN = new int[128];           // seuils d'acceptation immédiate
+        private static final double[] WN = new double[128];     // largeurs des couches / 2^31
+        private static final double[] FN = new double[128];     // densité aux bords des couches
+
+        static {
+            double dn = R;
+            double tn = dn;
+            double vn = 9.91256303526217e-3;                     // aire de chaque couche
+            double q = vn / Math.exp(-0.5 * dn * dn);
+            KN[0] = (int) ((dn / q) * M1);
+            KN[1] = 0;
+            WN[0] = q / M1;
+            WN[127] = dn / M1;
+            FN[0] = 1.0;
+            FN[127] = Math.exp(-0.5 * dn * dn);
+            for (int i = 126; i >= 1; i--) {
+                dn = Math.sqrt(-2.0 * Math.log(vn / dn + Math.exp(-0.5 * dn * dn)));
+                KN[i + 1] = (int) ((dn / tn) * M1);
+                tn = dn;
+                FN[i] = Math.exp(-0.5 * dn * dn);
+                WN[i] = dn / M1;
+            }
+        }
+
+        private final SplittableRandom random;
+
+        Ziggurat(SplittableRandom random) {
+            this.random = random;
+        }
+
+        /**
+         * @return un tirage de la loi normale centrée réduite
+         */
+        double next() {
+            long bits = random.nextLong();
+            int hz = (int) bits;                                // valeur signée sur 32 bits
+            int iz = (int) (bits >>> 32) & 127;                 // couche, sur des bits distincts
+            if (Math.abs(hz) < KN[iz]) {
+                return hz * WN[iz];                             // cas le plus fréquent : dans le rectangle de la couche
+            }
+            return fix(hz, iz);
+        }
+
+        /**
+         * Tirage hors du rectangle de la couche : queue de la loi (couche 0) ou bord de la couche.
+         */
+        private double fix(int hz, int iz) {
+            while (true) {
+                double x = hz * WN[iz];
+                if (iz == 0) {
+                    double y;
+                    do {
+                        x = -Math.log(uniform()) / R;
+                        y = -Math.log(uniform());
+                    } while (y + y < x * x);
+                    return hz > 0 ? R + x : -R - x;
+                }
+                if (FN[iz] + uniform() * (FN[iz - 1] - FN[iz]) < Math.exp(-0.5 * x * x)) {
+                    return x;
+                }
+                long bits = random.nextLong();
+                hz = (int) bits;
+                iz = (int) (bits >>> 32) & 127;
+                if (Math.abs(hz) < KN[iz]) {
+                    return hz * WN[iz];
+                }
+            }
+        }
+
+        /**
+         * @return un réel uniforme dans ]0, 1]
+         */
+        private double uniform() {
+            return 1.0 - random.nextDouble();
+        }
+    }
+}
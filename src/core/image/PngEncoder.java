@@ -0,0 +1,197 @@
+package core.image;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Écriture rapide d'images PNG en niveaux de gris 8 bits, avec un niveau de compression choisi.
+ *
+ * {@code ImageIO.write(..., "PNG", ...)} filtre et compresse toute l'image en un seul flux deflate, sur un seul cœur
+ * et à un niveau fixe. Ici, les octets sont lus directement dans le raster ({@link GrayImage}) et les lignes sont
+ * découpées en blocs d'environ {@link #BLOCK_BYTES} octets, filtrés puis compressés en parallèle, chacun par son propre
+ * {@link Deflater} (à la manière de pigz) : un bloc est amorcé par les 32 Kio de données filtrées qui le précèdent
+ * (dictionnaire, pour ne pas perdre de références en début de bloc) et se termine par un vidage synchrone, si bien
+ * que la concaténation des blocs forme un flux deflate unique et valide. La somme Adler-32 du flux zlib est mise
+ * à jour à l'écriture des blocs, dans l'ordre. Seuls quelques blocs par cœur sont en mémoire à la fois.
+ *
+ * Le filtrage des lignes est celui de {@link PngStreamWriter}. Au niveau 0, les données sont stockées sans
+ * compression ni filtrage (fichiers intermédiaires relus aussitôt). Les images qui ne sont pas en niveaux de gris
+ * 8 bits sont écrites par {@link ImageIO}, au même niveau de compression.
+ *
+ * @version 1.0
+ * @see PngStreamWriter
+ * @see ImageFile#saveImage(String, PngEncoder)
+ */
+public final class PngEncoder {
+    public static final int BLOCK_BYTES = 1 << 17;     // taille des données filtrées compressées par une tâche
+    private static final int WINDOW_BYTES = 1 << 15;    // fenêtre de deflate : taille du dictionnaire d'un bloc
+    private static final int ZLIB_METHOD = 0x78;        // deflate, fenêtre de 32 Kio
+
+    private final int level;        // niveau de compression, de 0 (stockage) à 9
+
+    /**
+     * @param level niveau de compression, de 0 (stockage sans compression) à 9 (compression maximale)
+     * @throws IllegalArgumentException si le niveau est hors de cet intervalle
+     */
+    public PngEncoder(int level) {
+        if (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Le niveau de compression doit être compris entre 0 et 9");
+        }
+        this.level = level;
+    }
+
+    /**
+     * @return niveau de compression, de 0 à 9
+     */
+    public int getLevel() { return level; }
+
+    /**
+     * Écrit une image au format PNG.
+     * @param img image à écrire
+     * @param path chemin du fichier (les dossiers parents sont créés si besoin, un fichier existant est remplacé)
+     * @throws IOException si l'écriture échoue
+     */
+    public void write(Image img, Path path) throws IOException {
+        if (!GrayImage.isDirect(img)) {
+            writeWithImageIO(img, path);
+            return;
+        }
+        GrayImage gray = GrayImage.wrap(img);
+        int rowBytes = gray.getWidth() + 1;
+        int rowsPerBlock = Math.max(1, BLOCK_BYTES / rowBytes);
+        int blocks = (gray.getHeight() + rowsPerBlock - 1) / rowsPerBlock;
+        int batch = 2 * ForkJoinPool.getCommonPoolParallelism();   // blocs compressés avant d'être écrits
+
+        try (DataOutputStream out = PngStreamWriter.create(path)) {
+            PngStreamWriter.writeHeader(out, gray.getWidth(), gray.getHeight());
+            OutputStream idat = new BufferedOutputStream(new PngStreamWriter.IdatStream(out), PngStreamWriter.CHUNK_BYTES);
+            idat.write(ZLIB_METHOD);
+            idat.write(zlibFlags());
+            Adler32 adler = new Adler32();
+            byte[] previous = null;     // dernier bloc filtré du lot précédent
+            for (int first = 0; first < blocks; first += batch) {
+                int count = Math.min(blocks, first + batch) - first;
+                int from = first;
+                byte[][] filtered = IntStream.range(0, count).parallel()
+                                             .mapToObj(b -> filter(gray, (from + b) * rowsPerBlock, rowsPerBlock))
+                                             .toArray(byte[][]::new);
+                byte[] before = previous;
+                List<byte[]> deflated = IntStream.range(0, count).parallel()
+                                                 .mapToObj(b -> deflate(filtered[b], b > 0 ? filtered[b - 1] : before,
+                                                                        from + b == blocks - 1))
+                                                 .toList();
+                for (int b = 0; b < count; b++) {
+                    adler.update(filtered[b]);
+                    idat.write(deflated.get(b));
+                }
+                previous = filtered[count - 1];
+            }
+            int sum = (int) adler.getValue();
+            idat.write(new byte[] {(byte) (sum >>> 24), (byte) (sum >>> 16), (byte) (sum >>> 8), (byte) sum});
+            idat.flush();
+            PngStreamWriter.writeChunk(out, "IEND", new byte[0], 0, 0);
+        }
+    }
+
+    /**
+     * Octet FLG de l'en-tête zlib : niveau de compression indicatif, sans dictionnaire, multiple de 31 avec CMF.
+     */
+    private int zlibFlags() {
+        int hint = level <= 1 ? 0 : level <= 5 ? 1 : level == 6 ? 2 : 3;
+        int flags = hint << 6;
+        return flags + 31 - ((ZLIB_METHOD << 8) + flags) % 31;
+    }
+
+    /**
+     * Filtre un bloc de lignes (type de filtre en tête de chaque ligne).
+     */
+    private byte[] filter(GrayImage gray, int firstRow, int rowCount) {
+        int width = gray.getWidth();
+        int rowBytes = width + 1;
+        int lastRow = Math.min(gray.getHeight(), firstRow + rowCount);
+        byte[] data = gray.getData();
+        byte[] filtered = new byte[(lastRow - firstRow) * rowBytes];
+        PngStreamWriter.RowFilter filter = new PngStreamWriter.RowFilter(width);
+        for (int y = firstRow, k = 0; y < lastRow; y++, k += rowBytes) {
+            if (level == Deflater.NO_COMPRESSION) {
+                System.arraycopy(data, gray.index(0, y), filtered, k + 1, width);   // filtre "aucun" (octet 0)
+            } else {
+                byte[] row = filter.apply(data, gray.index(0, y), y > 0 ? data : null, y > 0 ? gray.index(0, y - 1) : 0);
+                System.arraycopy(row, 0, filtered, k, rowBytes);
+            }
+        }
+        return filtered;
+    }
+
+    /**
+     * Compresse un bloc filtré en données deflate brutes. Le dernier bloc de l'image termine le flux,
+     * les autres se terminent par un vidage synchrone (aligné sur un octet).
+     * @param block lignes filtrées du bloc
+     * @param before bloc précédent, dont la fin sert de dictionnaire (null pour le premier bloc)
+     * @param last true pour le dernier bloc de l'image
+     */
+    private byte[] deflate(byte[] block, byte[] before, boolean last) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (before != null && level != Deflater.NO_COMPRESSION) {
+                int dictionary = Math.min(before.length, WINDOW_BYTES);
+                deflater.setDictionary(before, before.length - dictionary, dictionary);
+            }
+            deflater.setInput(block);
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(level == Deflater.NO_COMPRESSION
+                                                                        ? block.length + 1024 : block.length / 2);
+            byte[] buffer = new byte[PngStreamWriter.CHUNK_BYTES];
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    compressed.write(buffer, 0, deflater.deflate(buffer));
+                }
+            } else {
+                int n;
+                do {
+                    n = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    compressed.write(buffer, 0, n);
+                } while (n == buffer.length);
+            }
+            return compressed.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Écrit une image quelconque par {@link ImageIO}, au niveau de compression de l'encodeur.
+     */
+    private void writeWithImageIO(Image img, Path path) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Files.deleteIfExists(path);     // le flux de sortie ne tronque pas un fichier existant
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(path.toFile())) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality((Deflater.BEST_COMPRESSION - level) / 9f);     // niveau = 9 - 9 x qualité
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(img.getImage(), null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package core.image;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import javax.imageio.ImageIO;
+
+/**
+ * Classe de test pour l'écriture PNG de {@link PngEncoder}.
+ * Chaque image est écrite à plusieurs niveaux de compression puis relue par {@link ImageIO} :
+ * les pixels relus doivent être exactement ceux de l'image écrite. Les tailles testées couvrent :
+ * - les images d'une seule ligne (un seul bloc, éventuellement plus grand que {@link PngEncoder#BLOCK_BYTES})
+ * - les images de plusieurs blocs, dont le dernier est incomplet
+ * - les images de plus de blocs qu'un lot compressé en parallèle (dictionnaire repris d'un lot à l'autre)
+ *
+ * @version 1.0
+ * @see PngEncoder
+ */
+public class PngEncoderTest {
+    private static final int[] LEVELS = {0, 1, 6, 9};
+
+    /**
+     * Point d'entrée du programme de test ; se termine avec le code 1 si une image relue diffère.
+     *
+     * @param args Arguments de la ligne de commande (non utilisés)
+     */
+    public static void main(String[] args) throws IOException {
+        int rowBytes = 300 + 1;
+        int batchRows = 2 * ForkJoinPool.getCommonPoolParallelism() * (PngEncoder.BLOCK_BYTES / (512 + 1));
+        int[][] sizes = {
+            {1, 1},                                         // un seul pixel
+            {700, 1},                                       // une ligne, bloc incomplet
+            {PngEncoder.BLOCK_BYTES + 5, 1},                // une ligne plus longue qu'un bloc
+            {300, PngEncoder.BLOCK_BYTES / rowBytes},       // exactement un bloc
+            {300, 1000},                                    // plusieurs blocs, le dernier incomplet
+            {512, 2 * batchRows + 7},                       // plus de blocs qu'un lot, sur trois lots
+        };
+        int failures = 0;
+        Path file = Files.createTempFile("png-encoder-test", ".png");
+        try {
+            for (int[] size : sizes) {
+                Image img = pattern(size[0], size[1]);
+                for (int level : LEVELS) {
+                    new PngEncoder(level).write(img, file);
+                    BufferedImage read = ImageIO.read(file.toFile());
+                    String diff = compare(img, read);
+                    System.out.println(size[0] + "x" + size[1] + ", niveau " + level + " : "
+                                       + (diff == null ? "OK" : "ÉCHEC (" + diff + ")"));
+                    if (diff != null) {
+                        failures++;
+                    }
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        System.out.println(failures == 0 ? "Toutes les images relues sont identiques" : failures + " échec(s)");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Image en niveaux de gris mêlant dégradé (bien compressé) et bruit (peu compressible).
+     */
+    private static Image pattern(int width, int height) {
+        GrayImage gray = new GrayImage(width, height);
+        SplittableRandom random = new SplittableRandom(width * 31L + height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int base = (x + 2 * y) & 255;
+                gray.set(x, y, (x / 64) % 2 == 0 ? base : random.nextInt(256));
+            }
+        }
+        return gray.toImage();
+    }
+
+    /**
+     * @return null si l'image relue a les mêmes dimensions et les mêmes pixels, sinon la première différence
+     */
+    private static String compare(Image expected, BufferedImage read) {
+        if (read == null) {
+            return "image illisible";
+        }
+        if (read.getWidth() != expected.getWidth() || read.getHeight() != expected.getHeight()) {
+            return "dimensions " + read.getWidth() + "x" + read.getHeight();
+        }
+        Image actual = new Image(read);
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                if (actual.getPixel(x, y) != expected.getPixel(x, y)) {
+                    return "pixel (" + x + ", " + y + ") : " + actual.getPixel(x, y) + " au lieu de " + expected.getPixel(x, y);
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,255 @@
+package core.image;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Écriture d'une image PNG en niveaux de gris 8 bits ligne par ligne, sans garder l'image en mémoire.
+ *
+ * Les lignes sont filtrées au fil de l'eau (pour chaque ligne, le filtre PNG donnant la plus petite somme
+ * des valeurs absolues, comme le fait {@link javax.imageio.ImageIO}), compressées par un {@link Deflater} unique
+ * et écrites dans des blocs IDAT d'au plus {@link #CHUNK_BYTES} octets. Seules la ligne courante et la précédente
+ * sont conservées : un débruitage par bandes peut écrire chaque ligne dès qu'elle est terminée.
+ * Au niveau de compression 0, les données sont stockées telles quelles, sans filtrage.
+ *
+ * Le fichier n'est valide qu'une fois toutes les lignes écrites et le flux fermé.
+ *
+ * @version 1.1
+ * @see StripReader
+ * @see PngEncoder
+ */
+public final class PngStreamWriter implements AutoCloseable {
+    public static final int CHUNK_BYTES = 1 << 16;     // taille maximale des données d'un bloc IDAT
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    private final DataOutputStream out;     // fichier de sortie
+    private final DeflaterOutputStream deflated;    // données compressées, découpées en blocs IDAT
+    private final Deflater deflater;
+    private final int width;                // largeur de l'image
+    private final int height;               // hauteur de l'image
+    private final byte[] previous;          // ligne précédente (zéros avant la première ligne)
+    private final RowFilter filter;         // filtrage des lignes, ou null pour les stocker telles quelles
+    private int rows;                       // nombre de lignes déjà écrites
+
+    /**
+     * Crée le fichier et écrit son en-tête, avec le niveau de compression par défaut de {@link Deflater}.
+     * @param path chemin du fichier PNG (les dossiers parents sont créés si besoin)
+     * @param width largeur de l'image
+     * @param height hauteur de l'image
+     * @throws IOException si le fichier ne peut pas être créé
+     */
+    public PngStreamWriter(Path path, int width, int height) throws IOException {
+        this(path, width, height, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Crée le fichier et écrit son en-tête.
+     * @param path chemin du fichier PNG (les dossiers parents sont créés si besoin)
+     * @param width largeur de l'image
+     * @param height hauteur de l'image
+     * @param level niveau de compression (0 pour stocker sans compresser, jusqu'à 9 ; -1 pour le niveau par défaut)
+     * @throws IOException si le fichier ne peut pas être créé
+     */
+    public PngStreamWriter(Path path, int width, int height, int level) throws IOException {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Les dimensions de l'image doivent être strictement positives");
+        }
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Le niveau de compression doit être compris entre 0 et 9");
+        }
+        this.width = width;
+        this.height = height;
+        this.previous = new byte[width];
+        this.filter = level == Deflater.NO_COMPRESSION ? null : new RowFilter(width);
+        this.out = create(path);
+        writeHeader(out, width, height);
+        this.deflater = new Deflater(level);
+        this.deflated = new DeflaterOutputStream(new IdatStream(out), deflater, CHUNK_BYTES);
+    }
+
+    /**
+     * @return nombre de lignes déjà écrites
+     */
+    public int getRowCount() { return rows; }
+
+    /**
+     * Écrit la ligne suivante de l'image.
+     * @param row intensités de la ligne (au moins {@code width} octets, lus comme des valeurs de 0 à 255)
+     * @throws IOException si l'écriture échoue
+     * @throws IllegalStateException si toutes les lignes ont déjà été écrites
+     */
+    public void writeRow(byte[] row) throws IOException {
+        if (rows >= height) {
+            throw new IllegalStateException("Toutes les lignes de l'image ont déjà été écrites");
+        }
+        if (filter != null) {
+            deflated.write(filter.apply(row, 0, rows > 0 ? previous : null, 0), 0, width + 1);
+        } else {
+            deflated.write(0);      // filtre "aucun"
+            deflated.write(row, 0, width);
+        }
+        System.arraycopy(row, 0, previous, 0, width);
+        rows++;
+    }
+
+    /**
+     * Filtrage adaptatif des lignes : chaque ligne est filtrée par les cinq filtres PNG (aucun, gauche, haut,
+     * moyenne, Paeth ; un octet par pixel) et le filtre dont la somme des valeurs absolues des octets (signés)
+     * est la plus petite est retenu. Une instance garde ses tampons d'une ligne à l'autre : un fil par instance.
+     */
+    static final class RowFilter {
+        private final int width;
+        private final byte[][] filtered;    // ligne filtrée par chacun des cinq filtres (octet de filtre en tête)
+
+        RowFilter(int width) {
+            this.width = width;
+            this.filtered = new byte[5][width + 1];
+        }
+
+        /**
+         * Filtre une ligne.
+         * @param row tableau contenant la ligne
+         * @param rowOffset indice du premier pixel de la ligne
+         * @param above tableau contenant la ligne précédente, ou null pour la première ligne de l'image
+         * @param aboveOffset indice du premier pixel de la ligne précédente
+         * @return ligne filtrée ({@code width + 1} octets, type de filtre en tête), valable jusqu'à l'appel suivant
+         */
+        byte[] apply(byte[] row, int rowOffset, byte[] above, int aboveOffset) {
+            byte[] none = filtered[0], sub = filtered[1], up = filtered[2], average = filtered[3], paeth = filtered[4];
+            long[] scores = new long[5];
+            int a = 0, c = 0;       // voisins gauche et haut-gauche (0 en début de ligne)
+            for (int x = 0; x < width; x++) {
+                int v = row[rowOffset + x] & 0xFF;
+                int b = above != null ? above[aboveOffset + x] & 0xFF : 0;
+                byte fSub = (byte) (v - a), fUp = (byte) (v - b);
+                byte fAverage = (byte) (v - ((a + b) >> 1)), fPaeth = (byte) (v - paethPredictor(a, b, c));
+                none[x + 1] = (byte) v;
+                sub[x + 1] = fSub;
+                up[x + 1] = fUp;
+                average[x + 1] = fAverage;
+                paeth[x + 1] = fPaeth;
+                scores[0] += Math.abs((byte) v);
+                scores[1] += Math.abs(fSub);
+                scores[2] += Math.abs(fUp);
+                scores[3] += Math.abs(fAverage);
+                scores[4] += Math.abs(fPaeth);
+                a = v;
+                c = b;
+            }
+            int chosen = 0;
+            for (int f = 1; f < 5; f++) {
+                if (scores[f] < scores[chosen]) {
+                    chosen = f;
+                }
+            }
+            filtered[chosen][0] = (byte) chosen;
+            return filtered[chosen];
+        }
+    }
+
+    /**
+     * Prédicteur de Paeth : celui des voisins gauche, haut ou haut-gauche le plus proche de gauche + haut - haut-gauche.
+     */
+    private static int paethPredictor(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        return pa <= pb && pa <= pc ? a : (pb <= pc ? b : c);
+    }
+
+    /**
+     * Termine le flux compressé, écrit le bloc de fin et ferme le fichier.
+     * @throws IOException si l'écriture échoue
+     * @throws IllegalStateException si toutes les lignes n'ont pas été écrites (le fichier est fermé, mais incomplet)
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            deflated.finish();
+            writeChunk(out, "IEND", new byte[0], 0, 0);
+        } finally {
+            deflater.end();
+            out.close();
+        }
+        if (rows != height) {
+            throw new IllegalStateException("Image incomplète : " + rows + " lignes écrites sur " + height);
+        }
+    }
+
+    /**
+     * Crée le fichier de sortie (et ses dossiers parents si besoin).
+     */
+    static DataOutputStream create(Path path) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), CHUNK_BYTES + 12));
+    }
+
+    /**
+     * Écrit la signature PNG et l'en-tête d'une image en niveaux de gris 8 bits.
+     */
+    static void writeHeader(DataOutputStream out, int width, int height) throws IOException {
+        out.write(SIGNATURE);
+        ByteArrayOutputStream header = new ByteArrayOutputStream(13);
+        DataOutputStream h = new DataOutputStream(header);
+        h.writeInt(width);
+        h.writeInt(height);
+        h.writeByte(8);         // 8 bits par pixel
+        h.writeByte(0);         // niveaux de gris
+        h.writeByte(0);         // compression deflate
+        h.writeByte(0);         // filtrage adaptatif
+        h.writeByte(0);         // non entrelacé
+        writeChunk(out, "IHDR", header.toByteArray(), 0, header.size());
+    }
+
+    /**
+     * Écrit un bloc PNG : longueur, type, données et CRC du type et des données.
+     */
+    static void writeChunk(DataOutputStream out, String type, byte[] data, int offset, int length) throws IOException {
+        byte[] name = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(name);
+        crc.update(data, offset, length);
+        out.writeInt(length);
+        out.write(name);
+        out.write(data, offset, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * Flux recevant les données compressées et les écrivant dans des blocs IDAT d'au plus {@link #CHUNK_BYTES} octets.
+     */
+    static final class IdatStream extends OutputStream {
+        private final DataOutputStream out;     // fichier PNG
+
+        IdatStream(DataOutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            for (int done = 0; done < len; ) {
+                int n = Math.min(CHUNK_BYTES, len - done);
+                writeChunk(out, "IDAT", b, off + done, n);
+                done += n;
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package core.image;
+
+import java.awt.Rectangle;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Lecture d'une image par bandes horizontales, sans jamais la décoder entièrement.
+ *
+ * Le fichier reste ouvert ; chaque demande de lignes est servie par la dernière bande décodée si elle la contient,
+ * sinon une nouvelle bande de {@link #getStripHeight()} lignes (au moins) est décodée à partir de la première ligne
+ * demandée ({@link ImageReadParam#setSourceRegion}). Des demandes successives de lignes croissantes, qui se recouvrent
+ * (patchs d'une bande et marge de la suivante), ne décodent donc chaque partie de l'image qu'une ou deux fois.
+ * La mémoire utilisée dépend de la hauteur des bandes et de la largeur de l'image, pas de sa hauteur.
+ *
+ * Comme {@link ImageFile}, les bandes sont converties en niveaux de gris 8 bits si nécessaire.
+ * Le coût d'une bande dépend du format : un TIFF ne lit que les lignes de la bande, un PNG décompresse
+ * le flux depuis le début de l'image jusqu'à la fin de la bande.
+ *
+ * @version 1.1
+ * @see ImageFile#ImageFile(String, Rectangle, int)
+ */
+public final class StripReader implements AutoCloseable {
+    private final File file;                // fichier lu
+    private final ImageInputStream in;      // flux ouvert sur le fichier
+    private final ImageReader reader;       // lecteur attaché au flux
+    private final int width;                // largeur de l'image
+    private final int height;               // hauteur de l'image
+    private final int stripHeight;          // nombre de lignes décodées à la fois
+    private Image strip;                    // dernière bande décodée (null avant la première lecture)
+    private int stripY;                     // ordonnée de la première ligne de la bande
+    private int decodedStrips;              // nombre de bandes décodées depuis l'ouverture
+
+    /**
+     * Ouvre une image pour la lire par bandes.
+     * @param filePath chemin de l'image
+     * @param stripHeight nombre de lignes décodées à la fois (strictement positif)
+     * @throws IOException si le fichier ne peut pas être lu ou n'est pas une image reconnue
+     */
+    public StripReader(String filePath, int stripHeight) throws IOException {
+        if (stripHeight <= 0) {
+            throw new IllegalArgumentException("La hauteur des bandes doit être strictement positive");
+        }
+        this.file = new File(filePath);
+        this.in = ImageIO.createImageInputStream(file);
+        if (in == null) {
+            throw new IOException("Lecture impossible : " + file);
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+        if (!readers.hasNext()) {
+            in.close();
+            throw new IOException("Format d'image non reconnu : " + file);
+        }
+        this.reader = readers.next();
+        try {
+            reader.setInput(in, false, true);
+            this.width = reader.getWidth(0);
+            this.height = reader.getHeight(0);
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+        this.stripHeight = stripHeight;
+    }
+
+    /**
+     * @return largeur de l'image
+     */
+    public int getWidth() { return width; }
+
+    /**
+     * @return hauteur de l'image
+     */
+    public int getHeight() { return height; }
+
+    /**
+     * @return nombre de lignes décodées à la fois
+     */
+    public int getStripHeight() { return stripHeight; }
+
+    /**
+     * @return nombre de bandes décodées depuis l'ouverture du fichier
+     */
+    public int getDecodedStrips() { return decodedStrips; }
+
+    /**
+     * Lignes consécutives de l'image, en niveaux de gris. L'image renvoyée partage les pixels de la bande décodée :
+     * elle reste valable jusqu'à la lecture suivante et ne doit pas être modifiée.
+     * Une demande ne peut pas dépasser la hauteur des bandes, qui borne la mémoire utilisée.
+     * @param firstRow ordonnée de la première ligne
+     * @param rowCount nombre de lignes (au plus {@link #getStripHeight()})
+     * @return image de {@code rowCount} lignes dont la ligne 0 est la ligne {@code firstRow} du fichier
+     * @throws IOException si la bande ne peut pas être décodée
+     * @throws IllegalArgumentException si les lignes sortent de l'image ou sont plus nombreuses que les lignes d'une bande
+     */
+    public Image rows(int firstRow, int rowCount) throws IOException {
+        if (firstRow < 0 || rowCount <= 0 || firstRow + rowCount > height) {
+            throw new IllegalArgumentException("Lignes hors de l'image : " + firstRow + " à " + (firstRow + rowCount - 1));
+        }
+        if (rowCount > stripHeight) {
+            throw new IllegalArgumentException(rowCount + " lignes demandées pour des bandes de " + stripHeight + " lignes");
+        }
+        if (strip == null || firstRow < stripY || firstRow + rowCount > stripY + strip.getHeight()) {
+            decode(firstRow, Math.min(height - firstRow, stripHeight));
+        }
+        return new Image(strip.getImage().getSubimage(0, firstRow - stripY, width, rowCount));
+    }
+
+    /**
+     * Décode une nouvelle bande et la convertit en niveaux de gris.
+     */
+    private void decode(int firstRow, int rowCount) throws IOException {
+        strip = null;   // l'ancienne bande peut être libérée pendant le décodage
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceRegion(new Rectangle(0, firstRow, width, rowCount));
+        Image decoded = new Image(reader.read(0, param));
+        decoded.convertToGrayscale();
+        strip = decoded;
+        stripY = firstRow;
+        decodedStrips++;
+    }
+
+    /**
+     * Ferme le fichier.
+     * @throws IOException si le flux ne peut pas être fermé
+     */
+    @Override
+    public void close() throws IOException {
+        strip = null;
+        if (reader != null) {
+            reader.dispose();
+        }
+        in.close();
+    }
+}
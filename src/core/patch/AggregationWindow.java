@@ -0,0 +1,120 @@
+package core.patch;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fenêtre de pondération des patchs lors de la reconstruction.
+ *
+ * Chaque pixel d'un patch contribue à l'image avec un poids qui ne dépend que de sa position dans le patch :
+ * le centre du patch, mieux débruité que ses bords, peut ainsi compter davantage que ses bords
+ * dans les zones de superposition, ce qui adoucit les jointures. Le poids 2D est le produit
+ * de deux profils 1D ; il est strictement positif partout, y compris sur le bord de l'image.
+ *
+ * Les poids sont calculés une seule fois par taille de patch puis conservés dans une table (s² valeurs) :
+ * chaque contribution se réduit alors à une multiplication-addition.
+ *
+ * @version 1.0
+ * @see PatchAggregator
+ */
+public enum AggregationWindow {
+    /** Poids uniforme : moyenne simple des patchs qui recouvrent un pixel. */
+    FLAT,
+    /** Profil triangulaire, maximal au centre du patch. */
+    LINEAR,
+    /** Profil de Hann (cosinus surélevé). */
+    HANN,
+    /** Profil de Kaiser de paramètre {@link #KAISER_BETA}. */
+    KAISER;
+
+    public static final AggregationWindow DEFAULT = FLAT;
+    public static final double KAISER_BETA = 4.0;      // compromis entre lissage des jointures et perte de résolution
+
+    private final Map<Integer, float[]> tables = new ConcurrentHashMap<>();    // table des poids par taille de patch
+
+    /**
+     * Retourne une copie de la table des poids d'un patch.
+     * @param side taille du côté des patchs
+     * @return poids des s² pixels du patch, dans l'ordre des lignes
+     */
+    public float[] weights(int side) {
+        return table(side).clone();
+    }
+
+    /**
+     * Table des poids partagée (ne doit pas être modifiée).
+     * @param side taille du côté des patchs
+     * @return poids des s² pixels du patch, dans l'ordre des lignes
+     */
+    float[] table(int side) {
+        if (side <= 0) {
+            throw new IllegalArgumentException("La taille des patchs doit être strictement positive");
+        }
+        return tables.computeIfAbsent(side, this::compute);
+    }
+
+    /**
+     * Calcule la table des poids : produit des profils horizontal et vertical.
+     */
+    private float[] compute(int side) {
+        double[] profile = new double[side];
+        for (int i = 0; i < side; i++) {
+            profile[i] = profile(i, side);
+        }
+        float[] table = new float[side * side];
+        for (int y = 0; y < side; y++) {
+            for (int x = 0; x < side; x++) {
+                table[y * side + x] = (float) (profile[y] * profile[x]);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Valeur du profil 1D en un pixel, normalisée à 1 au centre du patch.
+     * La position est prise au milieu d'intervalles réguliers ({@code (i + 1) / (side + 1)})
+     * pour qu'aucun pixel n'ait un poids nul.
+     */
+    private double profile(int i, int side) {
+        double t = (i + 1.0) / (side + 1.0);               // position dans ]0, 1[
+        return switch (this) {
+            case FLAT -> 1.0;
+            case LINEAR -> 1.0 - Math.abs(2 * t - 1);
+            case HANN -> Math.pow(Math.sin(Math.PI * t), 2);
+            case KAISER -> {
+                double r = 2 * t - 1;
+                yield besselI0(KAISER_BETA * Math.sqrt(1 - r * r)) / besselI0(KAISER_BETA);
+            }
+        };
+    }
+
+    /**
+     * Fonction de Bessel modifiée de première espèce d'ordre 0 (série entière).
+     */
+    private static double besselI0(double x) {
+        double sum = 1.0;
+        double term = 1.0;
+        double q = x * x / 4;
+        for (int k = 1; k < 50 && term > 1e-12 * sum; k++) {
+            term *= q / ((double) k * k);
+            sum += term;
+        }
+        return sum;
+    }
+
+    /**
+     * Lit le nom d'une fenêtre (insensible à la casse).
+     * @param name "flat", "linear", "hann" ou "kaiser"
+     * @return fenêtre correspondante
+     * @throws IllegalArgumentException si le nom n'est pas reconnu
+     */
+    public static AggregationWindow parse(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Fenêtre de reconstruction non supportée: " + name
+                                               + ". Utilisez 'flat', 'linear', 'hann' ou 'kaiser'");
+        }
+    }
+}
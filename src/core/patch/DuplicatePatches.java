@@ -0,0 +1,195 @@
+package core.patch;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import core.image.GrayImage;
+import core.image.Image;
+
+/**
+ * Détection des patchs identiques pixel à pixel (images de synthèse, captures d'écran, images très quantifiées).
+ *
+ * Chaque patch reçoit une empreinte de 64 bits calculée sur le raster ligne par ligne : une empreinte
+ * glissante de {@code s} pixels est mise à jour en O(1) le long de chaque ligne, puis les empreintes
+ * des {@code s} lignes d'un patch sont combinées. Le calcul coûte donc O(largeur x hauteur) plus O(s)
+ * par patch, au lieu de O(s²) par patch. Deux patchs de même empreinte sont ensuite comparés pixel
+ * à pixel : une collision ne peut pas réunir deux patchs différents.
+ *
+ * Les patchs identiques forment un groupe représenté par son premier patch ; l'ACP n'a besoin
+ * de projeter et de débruiter que ces représentants, chacun pondéré par la taille de son groupe.
+ *
+ * @version 1.0
+ * @see PatchMatrix
+ */
+public final class DuplicatePatches {
+    private static final long ROW_BASE = 0x100000001B3L;        // base de l'empreinte le long d'une ligne
+    private static final long COLUMN_BASE = 0x9E3779B97F4A7C15L; // base de la combinaison des lignes
+
+    private final int[] groupOf;            // groupe de chaque patch
+    private final int[] representatives;    // premier patch de chaque groupe
+    private final int[] multiplicities;     // nombre de patchs de chaque groupe
+
+    private DuplicatePatches(int[] groupOf, int[] representatives, int[] multiplicities) {
+        this.groupOf = groupOf;
+        this.representatives = representatives;
+        this.multiplicities = multiplicities;
+    }
+
+    /**
+     * Regroupe les patchs identiques d'une matrice de patchs.
+     * @param img image (ou imagette) dont les patchs ont été extraits
+     * @param patches patchs extraits de {@code img}
+     * @return groupes de patchs identiques
+     */
+    public static DuplicatePatches find(Image img, PatchMatrix patches) {
+        long[] hashes = hashes(img, patches);
+        int count = patches.getCount();
+        int[] groupOf = new int[count];
+        int[] representatives = new int[count];
+        int[] multiplicities = new int[count];
+        int groups = 0;
+        Map<Long, Integer> first = new HashMap<>();
+        for (int j = 0; j < count; j++) {
+            Integer g = first.get(hashes[j]);
+            if (g != null && patches.sameColumns(representatives[g], j)) {
+                groupOf[j] = g;
+                multiplicities[g]++;
+            } else {
+                // Nouvelle empreinte, ou collision entre deux patchs différents (le second reste seul)
+                if (g == null) {
+                    first.put(hashes[j], groups);
+                }
+                groupOf[j] = groups;
+                representatives[groups] = j;
+                multiplicities[groups] = 1;
+                groups++;
+            }
+        }
+        int[] reps = new int[groups];
+        int[] mult = new int[groups];
+        System.arraycopy(representatives, 0, reps, 0, groups);
+        System.arraycopy(multiplicities, 0, mult, 0, groups);
+        return new DuplicatePatches(groupOf, reps, mult);
+    }
+
+    /**
+     * Empreinte de chaque patch, calculée en une lecture du raster. Les empreintes des {@code s} dernières
+     * lignes sont gardées dans un tampon circulaire ; un patch est traité dès que sa dernière ligne est lue.
+     */
+    private static long[] hashes(Image img, PatchMatrix patches) {
+        int side = patches.getSide();
+        int w = img.getWidth();
+        int count = patches.getCount();
+        int lastRow = 0;
+        for (int j = 0; j < count; j++) {
+            lastRow = Math.max(lastRow, patches.getYOrigin(j) + side);
+        }
+
+        // Patchs classés par la ligne où ils se terminent (tri par dénombrement)
+        int[] start = new int[lastRow + 1];
+        for (int j = 0; j < count; j++) {
+            start[patches.getYOrigin(j) + side]++;
+        }
+        for (int y = 0, total = 0; y <= lastRow; y++) {
+            int n = start[y];
+            start[y] = total;
+            total += n;
+        }
+        int[] byEnd = new int[count];
+        int[] filled = start.clone();
+        for (int j = 0; j < count; j++) {
+            byEnd[filled[patches.getYOrigin(j) + side]++] = j;
+        }
+
+        long rowPower = 1;              // ROW_BASE^(s-1), pour retirer le pixel qui sort de la fenêtre
+        for (int i = 1; i < side; i++) {
+            rowPower *= ROW_BASE;
+        }
+        long[][] rowHashes = new long[side][Math.max(0, w - side + 1)];
+        long[] hashes = new long[count];
+        int[] row = new int[w];
+        GrayImage gray = GrayImage.isDirect(img) ? GrayImage.wrap(img) : null;
+        for (int y = 0; y < lastRow; y++) {
+            if (gray != null) {
+                gray.getRow(y, row);
+            } else {
+                img.getRaster().getPixels(0, y, w, 1, row);
+            }
+            long[] current = rowHashes[y % side];
+            long h = 0;
+            for (int x = 0; x < side; x++) {
+                h = h * ROW_BASE + row[x];
+            }
+            current[0] = h;
+            for (int x = 1; x + side <= w; x++) {
+                h = (h - row[x - 1] * rowPower) * ROW_BASE + row[x + side - 1];
+                current[x] = h;
+            }
+
+            // Patchs dont la dernière ligne est y : combinaison des s empreintes de lignes
+            int end = y + 1;
+            int to = end < lastRow ? start[end + 1] : count;
+            for (int p = start[end]; p < to; p++) {
+                int j = byEnd[p];
+                int x0 = patches.getXOrigin(j);
+                int y0 = patches.getYOrigin(j);
+                long combined = 0;
+                for (int r = 0; r < side; r++) {
+                    combined = combined * COLUMN_BASE + rowHashes[(y0 + r) % side][x0];
+                }
+                hashes[j] = mix(combined);
+            }
+        }
+        return hashes;
+    }
+
+    /**
+     * Mélange final des bits d'une empreinte (fonction de finalisation de MurmurHash3).
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * @return nombre total de patchs
+     */
+    public int getPatchCount() { return groupOf.length; }
+
+    /**
+     * @return nombre de patchs distincts (un par groupe)
+     */
+    public int getUniqueCount() { return representatives.length; }
+
+    /**
+     * @return nombre de patchs identiques à un patch précédent
+     */
+    public int getDuplicateCount() { return groupOf.length - representatives.length; }
+
+    /**
+     * @return proportion de patchs identiques à un patch précédent (entre 0 et 1)
+     */
+    public double getDuplicateRatio() {
+        return groupOf.length == 0 ? 0 : (double) getDuplicateCount() / groupOf.length;
+    }
+
+    /**
+     * @param j indice d'un patch
+     * @return groupe du patch (indice dans {@link #getRepresentatives()})
+     */
+    public int groupOf(int j) { return groupOf[j]; }
+
+    /**
+     * @return indice du premier patch de chaque groupe
+     */
+    public int[] getRepresentatives() { return representatives.clone(); }
+
+    /**
+     * @return nombre de patchs de chaque groupe
+     */
+    public int[] getMultiplicities() { return multiplicities.clone(); }
+}
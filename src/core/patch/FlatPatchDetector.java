@@ -0,0 +1,140 @@
+package core.patch;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.math3.distribution.ChiSquaredDistribution;
+
+import core.image.Image;
+import core.image.ImageStatistics;
+import core.image.ImageTile;
+
+/**
+ * Détection des patchs uniformes (ciel, murs, fonds unis) à l'aide d'images intégrales.
+ *
+ * La moyenne et la variance de n'importe quel patch sont lues en O(1) dans les {@link ImageStatistics}
+ * de l'image, sans relire ses pixels. Un patch dont la variance est nettement inférieure à celle du bruit
+ * ne contient aucune structure exploitable par l'ACP : il peut être remplacé directement par sa moyenne.
+ *
+ * Sur un patch uniforme de n = side² pixels, n·v/σ² suit une loi du χ² à n - 1 degrés de liberté
+ * (v étant la variance empirique du patch) : v fluctue autour de σ², et un seuil placé à σ² laisserait passer
+ * les patchs faiblement texturés dont le bruit tiré est un peu faible. Le seuil est donc le quantile inférieur
+ * {@link #FLAT_QUANTILE} de cette loi, σ² · χ²(n - 1, FLAT_QUANTILE) / n : la marge se resserre
+ * quand les patchs grandissent, leur variance empirique étant plus précise.
+ *
+ * Les statistiques d'une image peuvent être partagées entre ses imagettes : les coordonnées des patchs
+ * d'une imagette sont alors décalées de la position de l'imagette dans l'image.
+ *
+ * @version 1.2
+ * @see Patch
+ * @see PatchExtractor
+ * @see ImageStatistics
+ */
+public class FlatPatchDetector {
+    /**
+     * Part des patchs de bruit pur classés uniformes : quantile inférieur de la loi du χ² utilisé comme seuil.
+     * 5 % garde une marge nette sous σ² (environ 0,68 σ² pour des patchs 7×7) sans écarter presque tous les patchs plats.
+     */
+    public static final double FLAT_QUANTILE = 0.05;
+
+    private static final Map<Integer, Double> THRESHOLDS = new ConcurrentHashMap<>();   // seuil / σ² par taille de patch
+
+    private final ImageStatistics statistics;   // images intégrales de l'image entière
+    private final int offsetX;                  // position de la région testée dans l'image
+    private final int offsetY;
+
+    /**
+     * Calcule les images intégrales de l'image.
+     * @param img image (ou imagette) dont les patchs seront testés
+     */
+    public FlatPatchDetector(Image img) {
+        this(new ImageStatistics(img), 0, 0);
+    }
+
+    /**
+     * Réutilise les statistiques déjà calculées d'une image pour tester les patchs d'une de ses régions.
+     * @param statistics statistiques de l'image entière
+     * @param region image entière, ou imagette de cette image (les coordonnées sont décalées de sa position)
+     */
+    public FlatPatchDetector(ImageStatistics statistics, Image region) {
+        this(statistics, region instanceof ImageTile tile ? tile.getPosX() : 0,
+             region instanceof ImageTile tile ? tile.getPosY() : 0);
+    }
+
+    /**
+     * Réutilise les statistiques déjà calculées d'une image.
+     * @param statistics statistiques de l'image entière
+     * @param offsetX abscisse de la région testée dans l'image
+     * @param offsetY ordonnée de la région testée dans l'image
+     */
+    public FlatPatchDetector(ImageStatistics statistics, int offsetX, int offsetY) {
+        this.statistics = statistics;
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
+    }
+
+    /**
+     * Moyenne des intensités d'une zone carrée.
+     * @param x abscisse du coin supérieur gauche (dans la région)
+     * @param y ordonnée du coin supérieur gauche (dans la région)
+     * @param side taille du côté de la zone
+     * @return moyenne des intensités
+     */
+    public double mean(int x, int y, int side) {
+        return statistics.mean(offsetX + x, offsetY + y, side);
+    }
+
+    /**
+     * Variance des intensités d'une zone carrée.
+     * @param x abscisse du coin supérieur gauche (dans la région)
+     * @param y ordonnée du coin supérieur gauche (dans la région)
+     * @param side taille du côté de la zone
+     * @return variance des intensités
+     */
+    public double variance(int x, int y, int side) {
+        return statistics.variance(offsetX + x, offsetY + y, side);
+    }
+
+    /**
+     * Indique si un patch est uniforme, c'est-à-dire si sa variance reste sous le seuil {@link #threshold(int, double)}.
+     * @param patch patch extrait de l'image utilisée à la construction
+     * @param sigma écart type du bruit
+     * @return true si le patch peut être remplacé par sa moyenne
+     */
+    public boolean isFlat(Patch patch, double sigma) {
+        return isFlat(patch.getXOrigin(), patch.getYOrigin(), patch.getSide(), sigma);
+    }
+
+    /**
+     * Indique si la zone carrée est uniforme, c'est-à-dire si sa variance reste sous le seuil {@link #threshold(int, double)}.
+     * @param x abscisse du coin supérieur gauche
+     * @param y ordonnée du coin supérieur gauche
+     * @param side taille du côté de la zone
+     * @param sigma écart type du bruit
+     * @return true si la zone peut être remplacée par sa moyenne
+     */
+    public boolean isFlat(int x, int y, int side, double sigma) {
+        return variance(x, y, side) <= threshold(side, sigma);
+    }
+
+    /**
+     * Variance maximale d'un patch uniforme : σ² · χ²(n - 1, {@link #FLAT_QUANTILE}) / n, avec n = side².
+     * @param side taille du côté des patchs
+     * @param sigma écart type du bruit
+     * @return seuil de variance
+     */
+    public static double threshold(int side, double sigma) {
+        return sigma * sigma * THRESHOLDS.computeIfAbsent(side, FlatPatchDetector::computeThreshold);
+    }
+
+    /**
+     * Quantile de la loi du χ² ramené à σ² = 1 (un patch d'un seul pixel n'est uniforme que s'il est constant).
+     */
+    private static double computeThreshold(int side) {
+        int n = side * side;
+        if (n < 2) {
+            return 0;
+        }
+        return new ChiSquaredDistribution(n - 1).inverseCumulativeProbability(FLAT_QUANTILE) / n;
+    }
+}
@@ -0,0 +1,238 @@
+package core.patch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+
+import core.image.Image;
+
+/**
+ * Matrice des patchs d'une grille stockée hors du tas Java, pour les images trop grandes
+ * pour une {@link PatchMatrix} (un 100 mégapixels en patchs 31x31 représente plusieurs Go de doubles).
+ *
+ * Chaque pixel est gardé sur un octet (niveaux de gris 0-255, comme dans une {@link PatchMatrix} 8 bits),
+ * les patchs étant rangés à la suite, ligne de la grille après ligne de la grille, comme
+ * {@link PatchExtractor#extractPatchBand}. Le stockage est découpé en blocs d'au plus
+ * {@link #CHUNK_BYTES} octets contenant chacun un nombre entier de patchs, ce qui dépasse la limite
+ * de 2 Go d'un {@link ByteBuffer}. Les blocs sont alloués en mémoire directe ({@link Storage#DIRECT})
+ * ou projetés depuis un fichier temporaire ({@link Storage#MAPPED}) supprimé à la fermeture :
+ * le ramasse-miettes ne les parcourt jamais.
+ *
+ * Les calculs (covariance, projection, reconstruction) lisent la matrice par bandes de lignes de la grille
+ * ({@link #rows}), copiées telles quelles dans de petites {@link PatchMatrix} sur le tas. Les lectures ne modifient pas
+ * l'état des blocs : plusieurs bandes peuvent être lues en parallèle.
+ *
+ * @version 1.1
+ * @see PatchMatrix
+ * @see PatchGrid
+ */
+public final class OffHeapPatchMatrix implements AutoCloseable {
+    public static final long CHUNK_BYTES = 1L << 30;       // taille maximale d'un bloc (1 Go)
+    private static final int BAND_PATCHES = 2048;          // nombre approximatif de patchs extraits à la fois
+
+    /**
+     * Support des blocs de stockage.
+     */
+    public enum Storage {
+        /** Mémoire directe du processus (limitée par -XX:MaxDirectMemorySize). */
+        DIRECT,
+        /** Fichier temporaire projeté en mémoire : le système pagine les blocs sur disque au besoin. */
+        MAPPED;
+
+        /**
+         * Lit le nom d'un support (insensible à la casse).
+         * @param name "direct" ou "mapped"
+         * @return support correspondant
+         * @throws IllegalArgumentException si le nom n'est pas reconnu
+         */
+        public static Storage parse(String name) {
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Stockage hors tas non supporté: " + name
+                                                   + ". Utilisez 'direct' ou 'mapped'");
+            }
+        }
+    }
+
+    private final int side;             // taille du côté des patchs
+    private final int dimension;        // s², nombre d'octets d'un patch
+    private final int[] xs;             // abscisses des colonnes de la grille
+    private final int[] ys;             // ordonnées des lignes de la grille
+    private final PatchGrid.BorderPolicy border;    // lecture des pixels hors de l'image
+    private final int chunkPatches;     // nombre de patchs par bloc
+    private final Storage storage;
+    private final ByteBuffer[] chunks;  // blocs de stockage
+    private final FileChannel channel;  // fichier temporaire (null en mémoire directe)
+
+    private OffHeapPatchMatrix(int side, int[] xs, int[] ys, PatchGrid.BorderPolicy border, Storage storage)
+            throws IOException {
+        this.side = side;
+        this.dimension = side * side;
+        this.xs = xs;
+        this.ys = ys;
+        this.border = border;
+        this.storage = storage;
+        this.chunkPatches = (int) Math.max(1, CHUNK_BYTES / dimension);
+        int count = getCount();
+        this.chunks = new ByteBuffer[(count + chunkPatches - 1) / chunkPatches];
+        if (storage == Storage.MAPPED) {
+            Path file = Files.createTempFile("patchs", ".bin");
+            this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                                            StandardOpenOption.DELETE_ON_CLOSE);
+        } else {
+            this.channel = null;
+        }
+        try {
+            for (int c = 0; c < chunks.length; c++) {
+                long bytes = (long) Math.min(chunkPatches, count - c * chunkPatches) * dimension;
+                chunks[c] = channel != null
+                    ? channel.map(FileChannel.MapMode.READ_WRITE, (long) c * chunkPatches * dimension, bytes)
+                    : ByteBuffer.allocateDirect((int) bytes);
+            }
+        } catch (IOException | OutOfMemoryError e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Extrait tous les patchs d'une grille dans un stockage hors tas, bande par bande.
+     * @param img image à découper en patchs (niveaux de gris)
+     * @param grid grille d'extraction
+     * @param storage support des blocs
+     * @return matrice des patchs, à fermer après usage
+     * @throws IOException si le fichier temporaire ne peut pas être créé
+     * @throws IllegalArgumentException si le patch est plus grand que l'image
+     */
+    public static OffHeapPatchMatrix extract(Image img, PatchGrid grid, Storage storage) throws IOException {
+        int side = grid.getSide();
+        if (img.getWidth() < side || img.getHeight() < side) {
+            throw new IllegalArgumentException("Le patch est plus grand que l'image");
+        }
+        int[] xs = grid.positions(img.getWidth());
+        int[] ys = grid.positions(img.getHeight());
+        if ((long) xs.length * ys.length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Trop de patchs pour une seule matrice : augmentez le pas d'extraction");
+        }
+        OffHeapPatchMatrix matrix = new OffHeapPatchMatrix(side, xs, ys, grid.getBorder(), storage);
+        int bandRows = Math.max(1, BAND_PATCHES / xs.length);
+        try {
+            for (int first = 0; first < ys.length; first += bandRows) {
+                PatchMatrix band = PatchExtractor.extractPatchBand(img, side, xs, ys, first,
+                                                                   Math.min(bandRows, ys.length - first), grid.getBorder());
+                if (band.isWide()) {
+                    throw new IllegalArgumentException("Le stockage hors tas n'accepte que des images 8 bits");
+                }
+                matrix.write(first * xs.length, band.getBytes(), band.getCount());
+            }
+        } catch (RuntimeException e) {
+            matrix.close();
+            throw e;
+        }
+        return matrix;
+    }
+
+    /**
+     * Copie des patchs consécutifs dans les blocs, en passant d'un bloc au suivant si nécessaire.
+     */
+    private void write(int firstPatch, byte[] bytes, int count) {
+        for (int done = 0; done < count; ) {
+            int j = firstPatch + done;
+            int inChunk = j % chunkPatches;
+            int n = Math.min(count - done, chunkPatches - inChunk);
+            chunks[j / chunkPatches].put(inChunk * dimension, bytes, done * dimension, n * dimension);
+            done += n;
+        }
+    }
+
+    /**
+     * Lit une bande de lignes de la grille dans une matrice sur le tas.
+     * @param firstRow indice de la première ligne de la bande
+     * @param rowCount nombre de lignes de la bande
+     * @return matrice des patchs de la bande, dans l'ordre de {@link PatchExtractor#extractPatchBand}
+     */
+    public PatchMatrix rows(int firstRow, int rowCount) {
+        if (firstRow < 0 || rowCount <= 0 || firstRow + rowCount > ys.length) {
+            throw new IllegalArgumentException("Bande hors de la grille");
+        }
+        int count = xs.length * rowCount;
+        int[] bandXs = new int[count];
+        int[] bandYs = new int[count];
+        for (int r = 0, k = 0; r < rowCount; r++) {
+            for (int i = 0; i < xs.length; i++, k++) {
+                bandXs[k] = xs[i];
+                bandYs[k] = ys[firstRow + r];
+            }
+        }
+        PatchMatrix band = new PatchMatrix(side, bandXs, bandYs);
+        byte[] bytes = band.getBytes();
+        int firstPatch = firstRow * xs.length;
+        for (int done = 0; done < count; ) {
+            int j = firstPatch + done;
+            int inChunk = j % chunkPatches;
+            int n = Math.min(count - done, chunkPatches - inChunk);
+            chunks[j / chunkPatches].get(inChunk * dimension, bytes, done * dimension, n * dimension);
+            done += n;
+        }
+        return band;
+    }
+
+    /**
+     * @return taille du côté des patchs
+     */
+    public int getSide() { return side; }
+
+    /**
+     * @return s², nombre de pixels d'un patch
+     */
+    public int getDimension() { return dimension; }
+
+    /**
+     * @return nombre total de patchs
+     */
+    public int getCount() { return xs.length * ys.length; }
+
+    /**
+     * @return abscisses des colonnes de la grille
+     */
+    public int[] getXPositions() { return xs.clone(); }
+
+    /**
+     * @return ordonnées des lignes de la grille
+     */
+    public int[] getYPositions() { return ys.clone(); }
+
+    /**
+     * @return politique de bord de la grille extraite
+     */
+    public PatchGrid.BorderPolicy getBorder() { return border; }
+
+    /**
+     * @return nombre d'octets stockés hors tas
+     */
+    public long getByteSize() { return (long) getCount() * dimension; }
+
+    /**
+     * @return support des blocs
+     */
+    public Storage getStorage() { return storage; }
+
+    /**
+     * Libère les blocs. Le fichier temporaire éventuel est supprimé ; la mémoire projetée ou directe
+     * est rendue au système dès que les blocs ne sont plus référencés.
+     * @throws IOException si le fichier temporaire ne peut pas être fermé
+     */
+    @Override
+    public void close() throws IOException {
+        Arrays.fill(chunks, null);
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
@@ -3,8 +3,10 @@ package core.patch;
  * Classe représentant un patch carré tiré d'une image.
  * Un "patch" est une petite zone de taille s x s de l'image qui retient ses valeurs de pixels 
  * et sa position initiale dans l'image source.
+ * Un patch possède ses pixels et peut être modifié ; les traitements qui ne font que le lire
+ * acceptent un {@link ReadablePatch}.
  */
-public class Patch {
+public class Patch implements ReadablePatch {
 
     private int side;       // taille du coté des patchs
     private int[] pixels;   // tableau de valeurs de Gris (taille side²)
@@ -0,0 +1,181 @@
+package core.patch;
+
+import core.image.GrayImage;
+import core.image.Image;
+
+/**
+ * Accumulateur de patchs débruités : chaque patch ajoute ses valeurs pondérées à une somme par pixel
+ * et ses poids à un poids total par pixel ; l'image finale est la moyenne pondérée des contributions.
+ * Les poids d'un pixel dépendent de sa position dans le patch (voir {@link AggregationWindow}) ;
+ * avec la fenêtre {@link AggregationWindow#FLAT}, c'est la moyenne simple.
+ *
+ * Les patchs peuvent être ajoutés dans n'importe quel ordre et par petits lots (une bande de patchs
+ * à la fois, par exemple) : seuls deux tableaux de la taille de l'image sont conservés, quel que soit
+ * le nombre de patchs. Chaque ajout est une simple boucle sur les lignes du patch, sans tri des patchs
+ * ni image intermédiaire ; la normalisation finale écrit directement dans le tableau d'octets du résultat.
+ * Les patchs d'une grille rembourrée (voir {@link PatchGrid#isPadded()}) peuvent déborder de l'image ou de leur
+ * imagette, de chaque côté : seule la partie visible de chaque patch est accumulée, les bornes des boucles étant calculées
+ * une fois par patch. Les imagettes ajoutées doivent être entièrement contenues dans l'image.
+ *
+ * @version 1.5
+ * @see PatchExtractor#extractPatchBand
+ * @see PatchExtractor#reconstructPatchs(java.util.List, int, int)
+ */
+public class PatchAggregator {
+    private final int width;        // largeur de l'image reconstruite
+    private final int height;       // hauteur de l'image reconstruite
+    private final float[] sum;      // somme des contributions de chaque pixel
+    private final float[] weight;   // somme des poids des contributions de chaque pixel
+    private final AggregationWindow window;     // pondération des pixels d'un patch
+
+    /**
+     * Accumulateur calculant la moyenne simple des contributions.
+     * @param width largeur de l'image reconstruite
+     * @param height hauteur de l'image reconstruite
+     */
+    public PatchAggregator(int width, int height) {
+        this(width, height, AggregationWindow.FLAT);
+    }
+
+    /**
+     * @param width largeur de l'image reconstruite
+     * @param height hauteur de l'image reconstruite
+     * @param window fenêtre de pondération des pixels des patchs
+     */
+    public PatchAggregator(int width, int height, AggregationWindow window) {
+        this.width = width;
+        this.height = height;
+        this.sum = new float[width * height];
+        this.weight = new float[width * height];
+        this.window = window;
+    }
+
+    /**
+     * @return fenêtre de pondération des pixels des patchs
+     */
+    public AggregationWindow getWindow() { return window; }
+
+    /**
+     * Ajoute un patch stocké dans une colonne d'une matrice (s² x M).
+     * @param V matrice des patchs, un patch par colonne
+     * @param column indice du patch dans la matrice
+     * @param side taille du côté des patchs
+     * @param xOrigin abscisse du coin supérieur gauche du patch dans l'image
+     * @param yOrigin ordonnée du coin supérieur gauche du patch dans l'image
+     */
+    public void add(double[][] V, int column, int side, int xOrigin, int yOrigin) {
+        float[] table = window.table(side);
+        int xFrom = Math.max(0, -xOrigin);
+        int yFrom = Math.max(0, -yOrigin);
+        int xTo = Math.min(side, width - xOrigin);
+        int yTo = Math.min(side, height - yOrigin);
+        for (int y = yFrom; y < yTo; y++) {
+            int out = (yOrigin + y) * width + xOrigin + xFrom;
+            int in = y * side + xFrom;
+            for (int x = xFrom; x < xTo; x++, out++, in++) {
+                sum[out] += table[in] * (float) V[in][column];
+                weight[out] += table[in];
+            }
+        }
+    }
+
+    /**
+     * Ajoute un patch à sa position dans l'image.
+     * @param patch patch à ajouter
+     */
+    public void add(ReadablePatch patch) {
+        add(patch, 0, 0);
+    }
+
+    /**
+     * Ajoute un patch dont l'origine est relative à une imagette.
+     * @param patch patch à ajouter
+     * @param offsetX abscisse de l'imagette dans l'image
+     * @param offsetY ordonnée de l'imagette dans l'image
+     */
+    public void add(ReadablePatch patch, int offsetX, int offsetY) {
+        add(patch, offsetX, offsetY, width - offsetX, height - offsetY);
+    }
+
+    /**
+     * Ajoute un patch dont l'origine est relative à une imagette, en ne gardant que sa partie contenue dans l'imagette.
+     * @param patch patch à ajouter
+     * @param offsetX abscisse de l'imagette dans l'image
+     * @param offsetY ordonnée de l'imagette dans l'image
+     * @param regionWidth largeur de l'imagette
+     * @param regionHeight hauteur de l'imagette
+     */
+    public void add(ReadablePatch patch, int offsetX, int offsetY, int regionWidth, int regionHeight) {
+        int side = patch.getSide();
+        int xOrigin = patch.getXOrigin() + offsetX;
+        int yOrigin = patch.getYOrigin() + offsetY;
+        int xFrom = Math.max(0, -patch.getXOrigin());  // colonnes à gauche de l'imagette
+        int yFrom = Math.max(0, -patch.getYOrigin());  // lignes au-dessus de l'imagette
+        int xTo = Math.min(side, Math.min(regionWidth, width - offsetX) - patch.getXOrigin());   // colonnes visibles
+        int yTo = Math.min(side, Math.min(regionHeight, height - offsetY) - patch.getYOrigin()); // lignes visibles
+        float[] table = window.table(side);
+        if (patch instanceof PatchView view) {
+            // Lecture directe dans le tableau partagé par la vue
+            byte[] data = view.getData();
+            for (int y = yFrom; y < yTo; y++) {
+                int out = (yOrigin + y) * width + xOrigin + xFrom;
+                int in = view.getOffset() + y * view.getStride() + xFrom;
+                int w = y * side + xFrom;
+                for (int x = xFrom; x < xTo; x++, out++, in++, w++) {
+                    sum[out] += table[w] * (data[in] & 0xFF);
+                    weight[out] += table[w];
+                }
+            }
+        } else {
+            int[] pixels = patch.getPixels();
+            for (int y = yFrom; y < yTo; y++) {
+                int out = (yOrigin + y) * width + xOrigin + xFrom;
+                int in = y * side + xFrom;
+                for (int x = xFrom; x < xTo; x++, out++, in++) {
+                    sum[out] += table[in] * pixels[in];
+                    weight[out] += table[in];
+                }
+            }
+        }
+    }
+
+    /**
+     * Ajoute tous les pixels d'une image (une imagette) à sa position dans l'image reconstruite, avec un poids 1.
+     * @param img image à ajouter
+     * @param xOrigin abscisse de l'image ajoutée
+     * @param yOrigin ordonnée de l'image ajoutée
+     */
+    public void add(Image img, int xOrigin, int yOrigin) {
+        int[] row = new int[img.getWidth()];
+        GrayImage gray = GrayImage.isDirect(img) ? GrayImage.wrap(img) : null;
+        for (int y = 0; y < img.getHeight(); y++) {
+            if (gray != null) {
+                gray.getRow(y, row);
+            } else {
+                img.getRaster().getPixels(0, y, img.getWidth(), 1, row);
+            }
+            int out = (yOrigin + y) * width + xOrigin;
+            for (int x = 0; x < row.length; x++, out++) {
+                sum[out] += row[x];
+                weight[out] += 1f;
+            }
+        }
+    }
+
+    /**
+     * Calcule la moyenne des contributions de chaque pixel, arrondie et limitée entre 0 et 255.
+     * Les pixels qu'aucun patch ne couvre restent noirs.
+     * @return image reconstruite en niveaux de gris
+     */
+    public Image toImage() {
+        GrayImage result = new GrayImage(width, height);
+        byte[] pixels = result.getData();       // tableau contigu, une ligne après l'autre
+        for (int k = 0; k < pixels.length; k++) {
+            if (weight[k] > 0) {
+                int grey = Math.round(sum[k] / weight[k]);
+                pixels[k] = (byte) Math.min(255, Math.max(0, grey));
+            }
+        }
+        return result.toImage();
+    }
+}
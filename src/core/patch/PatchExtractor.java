@@ -1,10 +1,9 @@
 package core.patch;
-import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
 
 import core.image.Image;
 import core.image.ImageTile;
@@ -13,39 +12,54 @@ import core.image.ImageTile;
  * Cette classe permet de gérer les patchs (Stockés sous forme de liste) au sein d'une image.
  * Elle utilise les classes {@link Patch} et {@link Image}
  * @author p-cousin
- * @version 1.1
+ * @version 1.6
  * @see Patch
+ * @see PatchGrid
  * @see Image
  */
 public class PatchExtractor {
-	public static double patchCountMultiplier = 2.0; // multiplicateur du nombre de patchs en ordonnée et en abscisse. par exemple si 4x4 patch couvrent l'image, avec patchCountMultiplier=1.5 on utilisera une grille de (4x1.5)x(4x1.5)
-
 	/**
 	 * Cette methode créée une liste de patchs carrés, couvrant toute l'image. la taille des patchs est déterminé par le paramtètre {@code side}
+	 * (grille par défaut, voir {@link PatchGrid#of(int)})
 	 * @param img image à découper en patchs
 	 * @param side taille du coté des patchs
 	 * @return liste de patchs couvrant toute l'image
 	 */
 	public static List<Patch> extractPatchs(Image img, int side) {
+		return extractPatchs(img, PatchGrid.of(side));
+	}
+
+	/**
+	 * Cette methode créée une liste de patchs carrés, couvrant toute l'image, aux positions d'une grille donnée
+	 * @param img image à découper en patchs
+	 * @param grid grille d'extraction (taille des patchs et densité)
+	 * @return liste de patchs couvrant toute l'image
+	 */
+	public static List<Patch> extractPatchs(Image img, PatchGrid grid) {
+		int side = grid.getSide();
 		try {
 			if (img.getWidth() < side || img.getHeight() < side) {				// vérification de la taille du patch
 				throw(new PatchException());
 			}
-			int countX = (int) (Math.ceil((double) img.getWidth() * patchCountMultiplier / side));		// Calcul du nombre de patchs nécessaire sur l'axe des abscisses
-			int countY = (int) (Math.ceil((double) img.getHeight() * patchCountMultiplier / side));		// Calcul du nombre de patchs nécessaire sur l'axe des ordonnées
+			int[][] origins = grid.origins(img.getWidth(), img.getHeight());	// coordonnées des patchs de la grille
 			
 			List<Patch> patchList = new ArrayList<>();							// liste des patchs
-
-			for (int j = 0; j < countY; j++) {									// Parcours de la grille de patchs
-				int y = (j * (img.getHeight() - side)) / (countY - 1);			// Calcul de la coordonnée sur l'axe des ordonnées
-				for (int i = 0; i < countX; i++) {												
-					int x = (i * (img.getWidth() - side)) / (countX - 1);		// Calcul de la coordonnée sur l'axe des abscisses
-					x = Math.min(x, img.getWidth() - side);						// Verification des coordonnées pour eviter que le patch dépasse de l'image
-					y = Math.min(y, img.getHeight() - side);
-					int[] pixels = new int[side * side];						// création du tableau de valeurs a extraire
-					img.getRaster().getPixels(x, y, side, side, pixels);		// obtention des données
-					patchList.add(new Patch(pixels, x, y, side));				// ajout a la liste de patchs
+			if (grid.isPadded()) {												// patchs débordant de l'image : lecture par le bord virtuel
+				PatchMatrix matrix = newMatrix(img, side, origins[0], origins[1]);
+				fillPadded(img, matrix, grid.getBorder());
+				for (int k = 0; k < matrix.getCount(); k++) {
+					int[] pixels = matrix.column(k, new int[matrix.getDimension()]);
+					patchList.add(new Patch(pixels, origins[0][k], origins[1][k], side));
 				}
+				return patchList;
+			}
+
+			for (int k = 0; k < origins[0].length; k++) {						// Parcours de la grille de patchs
+				int x = origins[0][k];
+				int y = origins[1][k];
+				int[] pixels = new int[side * side];							// création du tableau de valeurs a extraire
+				img.getRaster().getPixels(x, y, side, side, pixels);			// obtention des données
+				patchList.add(new Patch(pixels, x, y, side));					// ajout a la liste de patchs
 			}		
 			return patchList;
 		}
@@ -56,78 +70,293 @@ public class PatchExtractor {
 	}
 
 	/**
-	 * Reconstruit une image a partir d'une liste de patchs et de ses dimensions
-	 * @param patchList	liste de patchs carrés couvrant l'image organisés en grille 
+	 * Extrait les mêmes patchs que {@link #extractPatchs(Image, int)}, mais directement dans une {@link PatchMatrix} :
+	 * les pixels sont lus dans le tableau d'octets du raster et écrits à la suite dans un seul tableau, sans objet
+	 * {@link Patch} ni tableau intermédiaire par patch.
+	 * @param img image à découper en patchs
+	 * @param side taille du coté des patchs
+	 * @return matrice des patchs couvrant toute l'image, ou null si le patch est plus grand que l'image
+	 */
+	public static PatchMatrix extractPatchMatrix(Image img, int side) {
+		return extractPatchMatrix(img, PatchGrid.of(side));
+	}
+
+	/**
+	 * Extrait les patchs d'une grille donnée directement dans une {@link PatchMatrix}.
+	 * @param img image à découper en patchs
+	 * @param grid grille d'extraction (taille des patchs et densité)
+	 * @return matrice des patchs couvrant toute l'image, ou null si le patch est plus grand que l'image
+	 */
+	public static PatchMatrix extractPatchMatrix(Image img, PatchGrid grid) {
+		int side = grid.getSide();
+		if (img.getWidth() < side || img.getHeight() < side) {					// vérification de la taille du patch
+			System.err.println("Le patch est plus grand que l'image");
+			return null;
+		}
+		int[][] origins = grid.origins(img.getWidth(), img.getHeight());
+		PatchMatrix matrix = newMatrix(img, side, origins[0], origins[1]);
+		if (grid.isPadded()) {
+			fillPadded(img, matrix, grid.getBorder());
+		} else {
+			fill(img, matrix, 0);
+		}
+		return matrix;
+	}
+
+	/**
+	 * Extrait une bande de la grille dense de pas {@code stride} (voir {@link #gridPositions(int, int, int)}) :
+	 * tous les patchs dont l'ordonnée est {@code ys[firstRow]}, ..., {@code ys[firstRow + rowCount - 1]}.
+	 * Extraire la grille bande par bande permet d'utiliser un pas très fin (jusqu'à 1) sans garder
+	 * tous les patchs de l'image en mémoire.
+	 * @param img image à découper en patchs
+	 * @param side taille du coté des patchs
+	 * @param xs abscisses des colonnes de la grille
+	 * @param ys ordonnées des lignes de la grille
+	 * @param firstRow indice de la première ligne de la bande
+	 * @param rowCount nombre de lignes de la bande
+	 * @return matrice des patchs de la bande
+	 */
+	public static PatchMatrix extractPatchBand(Image img, int side, int[] xs, int[] ys, int firstRow, int rowCount) {
+		return extractPatchBand(img, side, xs, ys, firstRow, rowCount, PatchGrid.BorderPolicy.INSIDE);
+	}
+
+	/**
+	 * Extrait une bande d'une grille dont les patchs peuvent déborder de l'image (voir {@link PatchGrid#isPadded()}).
+	 * @param img image à découper en patchs
+	 * @param side taille du coté des patchs
+	 * @param xs abscisses des colonnes de la grille
+	 * @param ys ordonnées des lignes de la grille
+	 * @param firstRow indice de la première ligne de la bande
+	 * @param rowCount nombre de lignes de la bande
+	 * @param border lecture des pixels hors de l'image
+	 * @return matrice des patchs de la bande
+	 */
+	public static PatchMatrix extractPatchBand(Image img, int side, int[] xs, int[] ys, int firstRow, int rowCount,
+											   PatchGrid.BorderPolicy border) {
+		if (img.getWidth() < side || img.getHeight() < side) {
+			throw new IllegalArgumentException("Le patch est plus grand que l'image");
+		}
+		int count = xs.length * rowCount;
+		int[] bandXs = new int[count];
+		int[] bandYs = new int[count];
+		for (int j = 0, k = 0; j < rowCount; j++) {
+			for (int i = 0; i < xs.length; i++, k++) {
+				bandXs[k] = xs[i];
+				bandYs[k] = ys[firstRow + j];
+			}
+		}
+		PatchMatrix matrix = newMatrix(img, side, bandXs, bandYs);
+		if (border != PatchGrid.BorderPolicy.INSIDE) {
+			fillPadded(img, matrix, border);
+		} else {
+			fill(img, matrix, 0);
+		}
+		return matrix;
+	}
+
+	/**
+	 * Extrait une bande d'une grille (patchs entièrement dans l'image) à partir d'une bande de lignes de l'image seulement :
+	 * la ligne 0 de {@code strip} est la ligne {@code stripY} de l'image. Les origines des patchs restent celles de l'image
+	 * entière, ce qui permet de lire une très grande image bande par bande (voir {@link core.image.StripReader}).
+	 * @param strip lignes de l'image contenant tous les patchs de la bande
+	 * @param stripY ordonnée, dans l'image, de la première ligne de {@code strip}
+	 * @param side taille du coté des patchs
+	 * @param xs abscisses des colonnes de la grille
+	 * @param ys ordonnées des lignes de la grille (dans l'image entière)
+	 * @param firstRow indice de la première ligne de la bande
+	 * @param rowCount nombre de lignes de la bande
+	 * @return matrice des patchs de la bande
+	 * @throws IllegalArgumentException si un patch de la bande sort de {@code strip}
+	 */
+	public static PatchMatrix extractPatchBand(Image strip, int stripY, int side, int[] xs, int[] ys, int firstRow, int rowCount) {
+		if (ys[firstRow] < stripY || ys[firstRow + rowCount - 1] + side > stripY + strip.getHeight()
+				|| xs[xs.length - 1] + side > strip.getWidth()) {
+			throw new IllegalArgumentException("La bande de patchs dépasse les lignes d'image fournies");
+		}
+		int count = xs.length * rowCount;
+		int[] bandXs = new int[count];
+		int[] bandYs = new int[count];
+		for (int j = 0, k = 0; j < rowCount; j++) {
+			for (int i = 0; i < xs.length; i++, k++) {
+				bandXs[k] = xs[i];
+				bandYs[k] = ys[firstRow + j];
+			}
+		}
+		PatchMatrix matrix = newMatrix(strip, side, bandXs, bandYs);
+		fill(strip, matrix, stripY);
+		return matrix;
+	}
+
+	/**
+	 * Positions des patchs sur un axe pour une grille de pas fixe : 0, stride, 2 x stride, ...
+	 * complétées si besoin par {@code length - side} pour que le dernier patch touche le bord.
+	 * @param length longueur de l'axe (largeur ou hauteur de l'image)
+	 * @param side taille du coté des patchs
+	 * @param stride pas entre deux patchs (1 pour un échantillonnage complet)
+	 * @return positions croissantes des patchs sur l'axe
+	 */
+	public static int[] gridPositions(int length, int side, int stride) {
+		return PatchGrid.withStride(side, stride).positions(length);
+	}
+
+	/**
+	 * Alloue une matrice de patchs dont le type de pixels (8 ou 16 bits) suit celui du raster de l'image.
+	 */
+	private static PatchMatrix newMatrix(Image img, int side, int[] xs, int[] ys) {
+		return new PatchMatrix(side, xs, ys, img.getRaster().getSampleModel().getSampleSize(0) > 8);
+	}
+
+	/**
+	 * Remplit une matrice de patchs à partir du raster de l'image, aux origines qu'elle contient.
+	 * Les octets sont copiés directement du tableau du raster quand c'est possible, une ligne de patch à la fois.
+	 * @param img image source
+	 * @param matrix matrice à remplir
+	 * @param yOffset ordonnée, dans le repère des origines, de la première ligne de {@code img}
+	 */
+	private static void fill(Image img, PatchMatrix matrix, int yOffset) {
+		int side = matrix.getSide();
+		int dim = matrix.getDimension();
+
+		Raster raster = img.getRaster();
+		if (!matrix.isWide() && raster.getDataBuffer() instanceof DataBufferByte buffer
+				&& raster.getSampleModel() instanceof ComponentSampleModel model
+				&& model.getNumBands() == 1 && buffer.getNumBanks() == 1) {
+			// Copie directe des octets (y compris pour une imagette qui partage le tableau de l'image complète)
+			byte[] bytes = buffer.getData();
+			byte[] data = matrix.getBytes();
+			int scanline = model.getScanlineStride();
+			int pixelStride = model.getPixelStride();
+			int base = buffer.getOffset() + model.getOffset(-raster.getSampleModelTranslateX(), -raster.getSampleModelTranslateY());
+			for (int k = 0; k < matrix.getCount(); k++) {
+				int out = k * dim;
+				for (int y = 0; y < side; y++, out += side) {
+					int in = base + (matrix.getYOrigin(k) - yOffset + y) * scanline + matrix.getXOrigin(k) * pixelStride;
+					if (pixelStride == 1) {
+						System.arraycopy(bytes, in, data, out, side);
+					} else {
+						for (int x = 0; x < side; x++, in += pixelStride) {
+							data[out + x] = bytes[in];
+						}
+					}
+				}
+			}
+		} else {
+			// Autre format de raster (ou pixels 16 bits) : lecture ligne par ligne
+			int[] row = new int[side];
+			for (int k = 0; k < matrix.getCount(); k++) {
+				for (int y = 0; y < side; y++) {
+					raster.getPixels(matrix.getXOrigin(k), matrix.getYOrigin(k) - yOffset + y, side, 1, row);
+					for (int x = 0; x < side; x++) {
+						matrix.set(y * side + x, k, row[x]);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Remplit une matrice de patchs pouvant déborder de l'image. Chaque axe est d'abord converti en une table
+	 * d'indices (identité dans l'image, symétrie ou répétition du bord au-delà) : tous les patchs sont ensuite
+	 * lus par la même boucle, sans cas particulier pour ceux du bord ni copie rembourrée de l'image.
+	 * @param img image source
+	 * @param matrix matrice à remplir (patchs débordant éventuellement de chaque côté de l'image)
+	 * @param border lecture des pixels hors de l'image
+	 */
+	private static void fillPadded(Image img, PatchMatrix matrix, PatchGrid.BorderPolicy border) {
+		int side = matrix.getSide();
+		int dim = matrix.getDimension();
+		int width = img.getWidth();
+		int height = img.getHeight();
+		int minX = 0, minY = 0, maxX = 0, maxY = 0;
+		for (int k = 0; k < matrix.getCount(); k++) {
+			minX = Math.min(minX, matrix.getXOrigin(k));
+			minY = Math.min(minY, matrix.getYOrigin(k));
+			maxX = Math.max(maxX, matrix.getXOrigin(k) + side);
+			maxY = Math.max(maxY, matrix.getYOrigin(k) + side);
+		}
+		int[] xMap = new int[maxX - minX];										// abscisse virtuelle - minX -> abscisse lue
+		int[] yMap = new int[maxY - minY];										// ordonnée virtuelle - minY -> ordonnée lue
+		for (int x = 0; x < xMap.length; x++) {
+			xMap[x] = border.map(minX + x, width);
+		}
+		for (int y = 0; y < yMap.length; y++) {
+			yMap[y] = border.map(minY + y, height);
+		}
+
+		Raster raster = img.getRaster();
+		if (!matrix.isWide() && raster.getDataBuffer() instanceof DataBufferByte buffer
+				&& raster.getSampleModel() instanceof ComponentSampleModel model
+				&& model.getNumBands() == 1 && buffer.getNumBanks() == 1) {
+			// Tables converties en décalages dans le tableau d'octets du raster
+			byte[] bytes = buffer.getData();
+			byte[] data = matrix.getBytes();
+			int base = buffer.getOffset() + model.getOffset(-raster.getSampleModelTranslateX(), -raster.getSampleModelTranslateY());
+			for (int x = 0; x < xMap.length; x++) {
+				xMap[x] *= model.getPixelStride();
+			}
+			for (int y = 0; y < yMap.length; y++) {
+				yMap[y] = base + yMap[y] * model.getScanlineStride();
+			}
+			for (int k = 0; k < matrix.getCount(); k++) {
+				int out = k * dim;
+				int x0 = matrix.getXOrigin(k) - minX;
+				int y0 = matrix.getYOrigin(k) - minY;
+				for (int y = 0; y < side; y++) {
+					int row = yMap[y0 + y];
+					for (int x = 0; x < side; x++) {
+						data[out++] = bytes[row + xMap[x0 + x]];
+					}
+				}
+			}
+		} else {
+			// Autre format de raster (ou pixels 16 bits) : lecture pixel par pixel
+			for (int k = 0; k < matrix.getCount(); k++) {
+				int x0 = matrix.getXOrigin(k) - minX;
+				int y0 = matrix.getYOrigin(k) - minY;
+				for (int y = 0; y < side; y++) {
+					for (int x = 0; x < side; x++) {
+						matrix.set(y * side + x, k, raster.getSample(xMap[x0 + x], yMap[y0 + y], 0));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reconstruit une image a partir d'une liste de patchs et de ses dimensions.
+	 * Chaque pixel reçoit la moyenne des patchs qui le recouvrent (voir {@link PatchAggregator}) :
+	 * les patchs peuvent être dans n'importe quel ordre et se superposer de façon quelconque.
+	 * @param patchList	liste de patchs carrés couvrant l'image
 	 * @param width largeur de l'image
 	 * @param height hauteur de l'image
 	 * @return une image reconstruite
+	 * @version 2.0
 	 * @see Image
 	 */
 	public static Image reconstructPatchs(List<Patch> patchList, int width, int height) {
+		return reconstructPatchs(patchList, width, height, AggregationWindow.FLAT);
+	}
+
+	/**
+	 * Reconstruit une image a partir d'une liste de patchs, chaque pixel d'un patch étant pondéré
+	 * selon sa position dans le patch (voir {@link AggregationWindow})
+	 * @param patchList	liste de patchs carrés couvrant l'image
+	 * @param width largeur de l'image
+	 * @param height hauteur de l'image
+	 * @param window fenêtre de pondération des patchs
+	 * @return une image reconstruite
+	 * @see Image
+	 */
+	public static Image reconstructPatchs(List<Patch> patchList, int width, int height, AggregationWindow window) {
 		try {
 			if (patchList.isEmpty()) {																				// vérification de la validité de la liste de patchs
 				throw(new PatchException());
 			}
-			else {
-				Map<Integer, List<Patch>> rowMap = new TreeMap<>();													// Map des patchs classés par lignes
-				int side = patchList.get(0).getSide();															// coté d'un patch : tous les patchs sont de même dimension
-				
-				for (Patch patch : patchList) {																		// parcours des patchs
-					rowMap.computeIfAbsent(patch.getYOrigin(), k -> new ArrayList<>()).add(patch);					// classement du patch en fonction de son ordonnée
-				}
-				
-				List<List<Patch>> patchRows = new ArrayList<>();													// liste de lignes de patchs représentés sous forme de liste
-				
-				for (List<Patch> row : rowMap.values()) {															// tri des patchs dans patchRows par abscisse croissante
-					row.sort(Comparator.comparingInt(Patch::getXOrigin));
-					patchRows.add(row);
-				}
-				
-				List<ImageTile> tileRows = new ArrayList<>();														// liste des lignes completes sous forme d'imagettes
-				
-				for (List<Patch> row : patchRows) {																	// parcours des lignes : on moyenne chaque ligne sur la jointure verticale des patchs
-					// création de l'imagette de la ligne et ajout du premier patch a celle-ci
-					tileRows.add(new ImageTile(new BufferedImage(width, side, BufferedImage.TYPE_BYTE_GRAY), row.get(0).getXOrigin(), row.get(0).getYOrigin()));
-					tileRows.get(tileRows.size() - 1).getRaster().setPixels(row.get(0).getXOrigin(), 0, side, side, row.get(0).getPixels());
-					for (int i = 0; i < row.size() - 1; i ++) {														// parcours des patchs 2 a 2
-						Patch left = row.get(i);																	// patch "de gauche"
-						Patch right = row.get(i + 1);																// patch "de droite"
-						int overlapStart = right.getXOrigin();														// coordonée du début de la zone de superposition
-						int overlapWidth = left.getXOrigin() + side - overlapStart;									// largeur de la zone de superpositon
-						// ajout du patch de droite a l'imagette de la ligne (le patch de gauche a déja été ajouté au tour d'avant)
-						tileRows.get(tileRows.size() - 1).getRaster().setPixels(overlapStart, 0, side, side, right.getPixels());
-						// moyennage de l'overlap seulement s'il existe
-						if (overlapWidth > 0) {																		// moyennage de zone de superposition seulement si elle existe
-							for (int x = 0; x <= overlapWidth; x ++) {												// parcours sur la largeur de la zone de superposition
-								for (int y = 0; y < side; y ++) {													// parcours sur la hauteur du patch
-									int leftPixel = left.getPixel(side - 1 - overlapWidth + x,y);					// valeurs des pixels qui se superposent
-									int rightPixel = right.getPixel(x, y);
-									int grey = ((overlapWidth - x) * leftPixel + x * rightPixel) / overlapWidth;	// valeur finale du pixel calculée par moyenne pondérée linéaire
-									tileRows.get(tileRows.size() - 1).setPixel(overlapStart + x, y, grey);			// ecriture de la valeur sur l'imagette
-								}
-							}
-						}
-					}
-				}
-				for (int row = 0; row < tileRows.size() - 1; row ++) {												// parcours des lignes sous forme d'imagette 2 par 2
-					ImageTile top = tileRows.get(row);																// ligne "du dessus"
-					ImageTile bottom = tileRows.get(row + 1);														// ligne "du dessous"
-					int overlapStart = bottom.getPosY();															// ordonnée de début de la zone de superpostion
-					int overlapHeight = top.getPosY() + side - overlapStart;										// hauteur de la zone de superposition
-					if (overlapHeight > 0) {																		// moyennage de la zone de superpositon seulement si elle existe
-						for (int y = 0; y <= overlapHeight; y ++) {													// parcours sur la hauteur de la zone de superposition
-							for (int x = 0; x < width; x ++) {														// parcours sur la largeur de l'imagette
-								int topPixel = top.getPixel(x, side - 1 - overlapHeight + y);						// valeurs des pixels qui se superposent
-								int bottomPixel = bottom.getPixel(x, y);
-								int grey = ((overlapHeight - y) * topPixel + y * bottomPixel) / overlapHeight;		// valeur finale du pixel calculée par moyenne pondérée linéaire
-								top.setPixel(x, side - 1 - overlapHeight + y, grey);								// ecriture de la valeur sur les deux imagettes aux coordonnées correspondantes
-								bottom.setPixel(x, y, grey);
-							}
-						}
-					}
-				}
-				return reconstructImageTiles(tileRows, width, height);												// fusion des imagettes pour obtenir l'image finale (la superposition des imagettes n'est plus un probleme car elles contiennent les memes valeurs sur ces zones)
+			PatchAggregator aggregator = new PatchAggregator(width, height, window);								// tampons de somme et de poids
+			for (Patch patch : patchList) {
+				aggregator.add(patch);
 			}
+			return aggregator.toImage();
 		}
 		catch (PatchException e) {
 			System.err.println("Liste des patchs vides");
@@ -221,41 +450,14 @@ public class PatchExtractor {
 	 * @param tileList liste des imagettes
 	 * @param width largeur de l'image a reconstruire
 	 * @param height hauteur de l'image a reconstruire
-	 * @version 2.0
-	 * @return l'image obtenue en recollant les imagettes
+	 * @version 2.1
+	 * @return l'image obtenue en recollant les imagettes (moyenne des imagettes sur leurs zones communes)
 	 */
 	public static Image reconstructImageTiles(List<ImageTile> tileList, int width, int height) {
-		Image result = new Image(new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY));
-		int[][] pixelCounts = new int[height][width]; // Compteur de contributions pour chaque pixel
-		int[][] pixelSums = new int[height][width];   // Somme des valeurs pour chaque pixel
-
-		// Accumulation des valeurs et comptage des contributions (çàd nombre de patchs contribuant a la valeur de chaque pixel)
+		PatchAggregator aggregator = new PatchAggregator(width, height);		// somme et nombre de contributions pour chaque pixel
 		for (ImageTile tile : tileList) {
-			int[] pixels = new int[tile.getWidth() * tile.getHeight()];
-			tile.getRaster().getPixels(0, 0, tile.getWidth(), tile.getHeight(), pixels);
-			
-			for (int y = 0; y < tile.getHeight(); y++) {
-				for (int x = 0; x < tile.getWidth(); x++) {
-					int globalX = tile.getPosX() + x;
-					int globalY = tile.getPosY() + y;
-					if (globalX < width && globalY < height) {
-						pixelSums[globalY][globalX] += pixels[y * tile.getWidth() + x];
-						pixelCounts[globalY][globalX]++;
-					}
-				}
-			}
+			aggregator.add(tile, tile.getPosX(), tile.getPosY());
 		}
-
-		// Calcul de la moyenne pour chaque pixel et écriture dans l'image finale
-		for (int y = 0; y < height; y++) {
-			for (int x = 0; x < width; x++) {
-				if (pixelCounts[y][x] > 0) {
-					int averageValue = pixelSums[y][x] / pixelCounts[y][x];
-					result.setPixel(x, y, averageValue);
-				}
-			}
-		}
-
-		return result;
+		return aggregator.toImage();											// moyenne des contributions, écrite directement dans l'image finale
 	}
 }
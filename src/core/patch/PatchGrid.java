@@ -0,0 +1,281 @@
+package core.patch;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Description immuable d'une grille de patchs : taille du côté, densité de la grille et traitement des bords.
+ *
+ * La densité s'exprime de deux façons :
+ * <ul>
+ *   <li>par un multiplicateur : si 4x4 patchs juxtaposés couvrent l'image, un multiplicateur de 1.5
+ *       donne une grille de (4x1.5)x(4x1.5) patchs répartis régulièrement entre les deux bords ;</li>
+ *   <li>par un pas fixe : un patch tous les {@code stride} pixels (1 pour tous les patchs de l'image).</li>
+ * </ul>
+ * Par défaut ({@link BorderPolicy#INSIDE}), les patchs restent dans l'image et le dernier patch de chaque axe
+ * est collé au bord, ce qui rend irréguliers les recouvrements près des bords. Avec un bord rembourré
+ * ({@link BorderPolicy#REFLECT}, {@link BorderPolicy#REPLICATE}), tous les patchs sont placés à un pas
+ * exactement régulier et débordent des deux côtés de l'image : la grille commence à {@code -(côté - pas)},
+ * si bien que les premiers pixels sont couverts par autant de patchs que ceux du milieu, et se poursuit
+ * jusqu'à couvrir de même les derniers. Les pixels hors de l'image sont lus virtuellement, par symétrie
+ * ou répétition du bord, sans copier l'image.
+ * Une grille ne contient aucun état modifiable : la même instance peut être partagée par plusieurs
+ * débruitages exécutés en même temps, chacun avec sa propre densité.
+ *
+ * @version 1.2
+ * @see PatchExtractor
+ */
+public final class PatchGrid {
+    public static final double DEFAULT_MULTIPLIER = 2.0;   // densité historique des grilles d'extraction
+
+    /**
+     * Traitement des bords de l'image.
+     */
+    public enum BorderPolicy {
+        /** Les patchs restent entièrement dans l'image ; le dernier patch de chaque axe est collé au bord. */
+        INSIDE,
+        /** Grille régulière ; hors de l'image, symétrie par rapport au pixel du bord (..., 2, 1, 0, 1, 2, ...). */
+        REFLECT,
+        /** Grille régulière ; hors de l'image, répétition du pixel du bord (..., 0, 0, 0, 1, 2, ...). */
+        REPLICATE;
+
+        /**
+         * Pixel de l'image lu à une coordonnée virtuelle.
+         * @param i coordonnée virtuelle sur un axe (éventuellement hors de l'image)
+         * @param length longueur de l'axe
+         * @return coordonnée du pixel lu, entre 0 et {@code length - 1}
+         */
+        public int map(int i, int length) {
+            if (i >= 0 && i < length) {
+                return i;
+            }
+            if (this == REFLECT && length > 1) {
+                int period = 2 * (length - 1);
+                int k = Math.floorMod(i, period);
+                return k < length ? k : period - k;
+            }
+            return Math.min(Math.max(i, 0), length - 1);
+        }
+
+        /**
+         * Lit le nom d'une politique de bord (insensible à la casse).
+         * @param name "inside", "reflect" ou "replicate"
+         * @return politique correspondante
+         * @throws IllegalArgumentException si le nom n'est pas reconnu
+         */
+        public static BorderPolicy parse(String name) {
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Politique de bord non supportée: " + name
+                                                   + ". Utilisez 'inside', 'reflect' ou 'replicate'");
+            }
+        }
+    }
+
+    private final int side;                 // taille du côté des patchs
+    private final int stride;               // pas fixe entre deux patchs, 0 si la grille utilise le multiplicateur
+    private final double multiplier;        // multiplicateur du nombre de patchs (si stride == 0)
+    private final BorderPolicy border;      // traitement des bords
+
+    private PatchGrid(int side, int stride, double multiplier, BorderPolicy border) {
+        if (side <= 0) {
+            throw new IllegalArgumentException("La taille des patchs doit être strictement positive");
+        }
+        if (stride < 0) {
+            throw new IllegalArgumentException("Le pas d'extraction doit être strictement positif");
+        }
+        if (stride == 0 && !(multiplier > 0)) {
+            throw new IllegalArgumentException("Le multiplicateur du nombre de patchs doit être strictement positif");
+        }
+        this.side = side;
+        this.stride = stride;
+        this.multiplier = multiplier;
+        this.border = Objects.requireNonNull(border, "La politique de bord ne peut pas être nulle");
+    }
+
+    /**
+     * Grille par défaut : patchs répartis avec le multiplicateur {@link #DEFAULT_MULTIPLIER}.
+     * @param side taille du côté des patchs
+     * @return grille correspondante
+     */
+    public static PatchGrid of(int side) {
+        return withMultiplier(side, DEFAULT_MULTIPLIER);
+    }
+
+    /**
+     * Grille de patchs répartis régulièrement, en nombre proportionnel à la taille de l'image.
+     * @param side taille du côté des patchs
+     * @param multiplier multiplicateur du nombre de patchs en abscisse et en ordonnée
+     * @return grille correspondante
+     */
+    public static PatchGrid withMultiplier(int side, double multiplier) {
+        return new PatchGrid(side, 0, multiplier, BorderPolicy.INSIDE);
+    }
+
+    /**
+     * Grille de pas fixe.
+     * @param side taille du côté des patchs
+     * @param stride pas entre deux patchs (1 pour un échantillonnage complet)
+     * @return grille correspondante
+     */
+    public static PatchGrid withStride(int side, int stride) {
+        if (stride <= 0) {
+            throw new IllegalArgumentException("Le pas d'extraction doit être strictement positif");
+        }
+        return new PatchGrid(side, stride, 0, BorderPolicy.INSIDE);
+    }
+
+    /**
+     * @param side nouvelle taille du côté des patchs
+     * @return une grille de même densité et mêmes bords, avec une autre taille de patch
+     */
+    public PatchGrid withSide(int side) {
+        return side == this.side ? this : new PatchGrid(side, stride, multiplier, border);
+    }
+
+    /**
+     * @param border nouvelle politique de bord
+     * @return une grille de même taille et même densité, avec une autre politique de bord
+     */
+    public PatchGrid withBorder(BorderPolicy border) {
+        return border == this.border ? this : new PatchGrid(side, stride, multiplier, border);
+    }
+
+    /**
+     * @return taille du côté des patchs
+     */
+    public int getSide() { return side; }
+
+    /**
+     * @return pas entre deux patchs, ou 0 si la grille est définie par un multiplicateur
+     */
+    public int getStride() { return stride; }
+
+    /**
+     * @return multiplicateur du nombre de patchs, ou 0 si la grille est de pas fixe
+     */
+    public double getMultiplier() { return multiplier; }
+
+    /**
+     * @return politique de bord
+     */
+    public BorderPolicy getBorder() { return border; }
+
+    /**
+     * @return true si la grille est de pas fixe
+     */
+    public boolean isStrided() { return stride > 0; }
+
+    /**
+     * @return true si les patchs peuvent déborder de l'image (bord rembourré virtuellement)
+     */
+    public boolean isPadded() { return border != BorderPolicy.INSIDE; }
+
+    /**
+     * Pas entre deux patchs d'une grille rembourrée : le pas fixe, ou le côté divisé par le multiplicateur.
+     * @return pas entre deux patchs consécutifs, au moins 1
+     */
+    public int step() {
+        return isStrided() ? stride : Math.max(1, (int) Math.round(side / multiplier));
+    }
+
+    /**
+     * Positions des patchs sur un axe.
+     * @param length longueur de l'axe (largeur ou hauteur de l'image)
+     * @return positions croissantes des coins supérieurs gauches sur l'axe (négatives au début d'une grille rembourrée)
+     * @throws IllegalArgumentException si le patch est plus grand que l'axe
+     */
+    public int[] positions(int length) {
+        if (length < side) {
+            throw new IllegalArgumentException("Le patch est plus grand que l'image");
+        }
+        int last = length - side;
+        if (isPadded()) {
+            int step = step();
+            int first;
+            int count;
+            if (step < side) {
+                // -(side - step), -(side - 2 x step), ... : chaque pixel, des bords compris, est couvert par tous
+                // les patchs dont l'origine est à moins d'un côté avant lui, soit jusqu'à la dernière origine <= length - 1
+                first = step - side;
+                count = (length - 1 - first) / step + 1;
+            } else {
+                // Patchs disjoints : 0, step, 2 x step, ... jusqu'à couvrir l'axe
+                first = 0;
+                count = (last + step - 1) / step + 1;
+            }
+            int[] positions = new int[count];
+            for (int k = 0; k < count; k++) {
+                positions[k] = first + k * step;
+            }
+            return positions;
+        }
+        if (isStrided()) {
+            // 0, stride, 2 x stride, ... complétées si besoin par le patch collé au bord
+            int count = last / stride + 1;
+            boolean aligned = last % stride == 0;
+            int[] positions = new int[aligned ? count : count + 1];
+            for (int k = 0; k < count; k++) {
+                positions[k] = k * stride;
+            }
+            if (!aligned) {
+                positions[count] = last;
+            }
+            return positions;
+        }
+        // Patchs répartis entre les deux bords
+        int count = (int) Math.ceil(length * multiplier / side);
+        if (count <= 1) {
+            return new int[] {0};
+        }
+        int[] positions = new int[count];
+        for (int k = 0; k < count; k++) {
+            positions[k] = Math.min((int) ((long) k * last / (count - 1)), last);
+        }
+        return positions;
+    }
+
+    /**
+     * Coordonnées des patchs de la grille couvrant une image, ligne par ligne.
+     * @param width largeur de l'image
+     * @param height hauteur de l'image
+     * @return tableau {abscisses, ordonnées} des coins supérieurs gauches des patchs
+     * @throws IllegalArgumentException si le patch est plus grand que l'image
+     */
+    public int[][] origins(int width, int height) {
+        int[] columns = positions(width);
+        int[] rows = positions(height);
+        int[] xs = new int[columns.length * rows.length];
+        int[] ys = new int[columns.length * rows.length];
+        int k = 0;
+        for (int y : rows) {
+            for (int x : columns) {
+                xs[k] = x;
+                ys[k] = y;
+                k++;
+            }
+        }
+        return new int[][] {xs, ys};
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PatchGrid)) return false;
+        PatchGrid other = (PatchGrid) o;
+        return side == other.side && stride == other.stride
+            && Double.compare(multiplier, other.multiplier) == 0 && border == other.border;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(side, stride, multiplier, border);
+    }
+
+    @Override
+    public String toString() {
+        String density = isStrided() ? "pas=" + stride : "multiplicateur=" + multiplier;
+        return "PatchGrid[côté=" + side + ", " + density + ", bords=" + border + "]";
+    }
+}
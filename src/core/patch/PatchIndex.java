@@ -0,0 +1,289 @@
+package core.patch;
+
+import java.util.function.IntPredicate;
+
+/**
+ * Index de recherche des patchs les plus semblables, construit sur des clés de faible dimension
+ * (par exemple les coordonnées des patchs sur les premières composantes principales).
+ *
+ * Les clés sont rangées dans un arbre k-d implicite : le tableau des indices est réordonné de façon que
+ * chaque nœud soit le point médian de sa plage, la plage étant coupée selon la coordonnée la plus étalée.
+ * La recherche des k plus proches voisins parcourt d'abord le côté du plan de coupe qui contient la requête,
+ * puis n'explore l'autre côté que s'il peut encore contenir un point plus proche que le k-ième trouvé :
+ * le coût d'une requête est d'ordre log M au lieu de M comparaisons en dimension s².
+ *
+ * L'index peut ne porter que sur une partie des points (par exemple les patchs d'une fenêtre de l'image) :
+ * les clés restent partagées et les indices rendus sont ceux de l'ensemble complet.
+ *
+ * L'index n'est pas modifié après sa construction : plusieurs recherches peuvent être faites en parallèle.
+ *
+ * @version 1.1
+ * @see PatchMatrix
+ */
+public class PatchIndex {
+    private static final int LEAF_SIZE = 8;     // en dessous, les plages sont parcourues entièrement
+
+    private final double[] keys;        // clés des points, {@code dimension} valeurs par point à la suite
+    private final int dimension;        // dimension des clés
+    private final int[] order;          // indices des points, réordonnés en arbre
+    private final byte[] splitAxis;     // coordonnée de coupe du nœud placé à chaque position de order
+
+    /**
+     * Construit l'index.
+     * @param keys clés des points, {@code dimension} valeurs par point à la suite (non copié)
+     * @param dimension dimension des clés
+     * @throws IllegalArgumentException si les dimensions sont incohérentes
+     */
+    public PatchIndex(double[] keys, int dimension) {
+        this(keys, dimension, null);
+    }
+
+    /**
+     * Construit l'index sur une partie des points.
+     * @param keys clés de tous les points, {@code dimension} valeurs par point à la suite (non copié)
+     * @param dimension dimension des clés
+     * @param subset indices des points à indexer (copié), ou null pour tous les points
+     * @throws IllegalArgumentException si les dimensions sont incohérentes
+     */
+    public PatchIndex(double[] keys, int dimension, int[] subset) {
+        if (dimension <= 0 || dimension > Byte.MAX_VALUE || keys.length % dimension != 0) {
+            throw new IllegalArgumentException("Dimensions des clés incohérentes");
+        }
+        this.keys = keys;
+        this.dimension = dimension;
+        if (subset != null) {
+            this.order = subset.clone();
+        } else {
+            this.order = new int[keys.length / dimension];
+            for (int j = 0; j < order.length; j++) {
+                order[j] = j;
+            }
+        }
+        this.splitAxis = new byte[order.length];
+        build(0, order.length);
+    }
+
+    /**
+     * @return nombre de points indexés
+     */
+    public int size() { return order.length; }
+
+    /**
+     * @return dimension des clés
+     */
+    public int getDimension() { return dimension; }
+
+    /**
+     * Cherche les {@code k} points les plus proches d'un point indexé (le point lui-même compris).
+     * @param query indice du point de référence
+     * @param k nombre de voisins voulus
+     * @param accept filtre des candidats (par exemple une fenêtre de recherche autour du patch), ou null
+     * @return indices des voisins, du plus proche au plus éloigné (moins de k si le filtre en écarte trop)
+     */
+    public int[] nearest(int query, int k, IntPredicate accept) {
+        double[] point = new double[dimension];
+        System.arraycopy(keys, query * dimension, point, 0, dimension);
+        return nearest(point, k, accept);
+    }
+
+    /**
+     * Cherche les {@code k} points les plus proches d'une clé.
+     * @param point clé de la requête
+     * @param k nombre de voisins voulus
+     * @param accept filtre des candidats, ou null pour tous les accepter
+     * @return indices des voisins, du plus proche au plus éloigné (moins de k si le filtre en écarte trop)
+     */
+    public int[] nearest(double[] point, int k, IntPredicate accept) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("Le nombre de voisins doit être strictement positif");
+        }
+        Neighbours neighbours = new Neighbours(Math.min(k, order.length));
+        search(point, 0, order.length, accept, neighbours);
+        return neighbours.sorted();
+    }
+
+    /**
+     * Range la plage [lo, hi) de order en sous-arbre : médiane au milieu, points plus petits avant, plus grands après.
+     */
+    private void build(int lo, int hi) {
+        if (hi - lo <= LEAF_SIZE) {
+            return;
+        }
+        int axis = widestAxis(lo, hi);
+        int mid = (lo + hi) >>> 1;
+        select(lo, hi - 1, mid, axis);
+        splitAxis[mid] = (byte) axis;
+        build(lo, mid);
+        build(mid + 1, hi);
+    }
+
+    /**
+     * Coordonnée sur laquelle les points de la plage sont le plus étalés.
+     */
+    private int widestAxis(int lo, int hi) {
+        int best = 0;
+        double bestSpread = -1;
+        for (int d = 0; d < dimension; d++) {
+            double min = Double.MAX_VALUE, max = -Double.MAX_VALUE;
+            for (int p = lo; p < hi; p++) {
+                double v = keys[order[p] * dimension + d];
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+            }
+            if (max - min > bestSpread) {
+                bestSpread = max - min;
+                best = d;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Sélection rapide (Hoare) : place en position {@code nth} le point de rang {@code nth} selon la coordonnée {@code axis}.
+     */
+    private void select(int lo, int hi, int nth, int axis) {
+        while (lo < hi) {
+            double pivot = keys[order[(lo + hi) >>> 1] * dimension + axis];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (keys[order[i] * dimension + axis] < pivot) i++;
+                while (keys[order[j] * dimension + axis] > pivot) j--;
+                if (i <= j) {
+                    int tmp = order[i];
+                    order[i] = order[j];
+                    order[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+            if (nth <= j) {
+                hi = j;
+            } else if (nth >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Parcours du sous-arbre [lo, hi).
+     */
+    private void search(double[] point, int lo, int hi, IntPredicate accept, Neighbours neighbours) {
+        if (hi - lo <= LEAF_SIZE) {
+            for (int p = lo; p < hi; p++) {
+                offer(point, order[p], accept, neighbours);
+            }
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        offer(point, order[mid], accept, neighbours);
+        int axis = splitAxis[mid];
+        double diff = point[axis] - keys[order[mid] * dimension + axis];
+        if (diff < 0) {
+            search(point, lo, mid, accept, neighbours);
+            if (diff * diff < neighbours.worst()) {
+                search(point, mid + 1, hi, accept, neighbours);
+            }
+        } else {
+            search(point, mid + 1, hi, accept, neighbours);
+            if (diff * diff < neighbours.worst()) {
+                search(point, lo, mid, accept, neighbours);
+            }
+        }
+    }
+
+    /**
+     * Propose un point comme voisin.
+     */
+    private void offer(double[] point, int j, IntPredicate accept, Neighbours neighbours) {
+        if (accept != null && !accept.test(j)) {
+            return;
+        }
+        double d = 0;
+        int base = j * dimension;
+        for (int c = 0; c < dimension; c++) {
+            double diff = point[c] - keys[base + c];
+            d += diff * diff;
+        }
+        neighbours.offer(j, d);
+    }
+
+    /**
+     * Les k meilleurs voisins trouvés jusqu'ici, dans un tas dont la racine est le plus éloigné.
+     */
+    private static final class Neighbours {
+        private final int[] indices;
+        private final double[] distances;
+        private int size;
+
+        Neighbours(int capacity) {
+            this.indices = new int[capacity];
+            this.distances = new double[capacity];
+        }
+
+        /**
+         * @return distance au carré du plus éloigné des voisins retenus (infinie tant que le tas n'est pas plein)
+         */
+        double worst() {
+            return size < indices.length ? Double.POSITIVE_INFINITY : distances[0];
+        }
+
+        void offer(int index, double distance) {
+            if (size < indices.length) {
+                // Insertion puis remontée
+                int i = size++;
+                while (i > 0 && distances[(i - 1) / 2] < distance) {
+                    indices[i] = indices[(i - 1) / 2];
+                    distances[i] = distances[(i - 1) / 2];
+                    i = (i - 1) / 2;
+                }
+                indices[i] = index;
+                distances[i] = distance;
+            } else if (distance < distances[0]) {
+                // Remplacement de la racine puis descente
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= size) break;
+                    if (child + 1 < size && distances[child + 1] > distances[child]) child++;
+                    if (distances[child] <= distance) break;
+                    indices[i] = indices[child];
+                    distances[i] = distances[child];
+                    i = child;
+                }
+                indices[i] = index;
+                distances[i] = distance;
+            }
+        }
+
+        /**
+         * @return indices des voisins, du plus proche au plus éloigné (le tas est vidé)
+         */
+        int[] sorted() {
+            int[] result = new int[size];
+            for (int k = size - 1; k >= 0; k--) {
+                result[k] = indices[0];
+                // Retrait de la racine : le dernier élément redescend
+                size--;
+                int last = indices[size];
+                double lastDistance = distances[size];
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= size) break;
+                    if (child + 1 < size && distances[child + 1] > distances[child]) child++;
+                    if (distances[child] <= lastDistance) break;
+                    indices[i] = indices[child];
+                    distances[i] = distances[child];
+                    i = child;
+                }
+                if (size > 0) {
+                    indices[i] = last;
+                    distances[i] = lastDistance;
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package core.patch;
+
+import java.util.Arrays;
+
+/**
+ * Matrice des patchs vectorisés (s² x M) stockée dans un seul bloc contigu, colonne par colonne :
+ * les s² pixels du patch j occupent les cases {@code [j*s², (j+1)*s²)}, dans l'ordre des lignes du patch.
+ * Les coordonnées d'origine de chaque patch sont conservées à part, sans objet {@link Patch} par patch.
+ *
+ * Les pixels sont gardés tels qu'ils sont lus dans le raster : un octet par pixel pour une image 8 bits,
+ * deux octets pour une image 16 bits (voir {@link #isWide()}), soit quatre à huit fois moins qu'un tableau
+ * d'{@code int} ou de {@code double}. Les calculs en virgule flottante passent par les accesseurs de colonne
+ * ({@link #column(int, double[])}) et par le centrage en bloc ({@link #center}), qui écrivent dans des
+ * tableaux fournis par l'appelant.
+ *
+ * Ce format est rempli directement depuis le raster par {@link PatchExtractor#extractPatchMatrix}
+ * et lu tel quel par le calcul de la covariance.
+ *
+ * @version 2.0
+ * @see PatchExtractor
+ */
+public class PatchMatrix {
+    private final int side;         // taille du côté des patchs
+    private final int dimension;    // s², nombre de pixels d'un patch
+    private final byte[] bytes;     // pixels 8 bits, un patch après l'autre (null si 16 bits)
+    private final short[] shorts;   // pixels 16 bits, un patch après l'autre (null si 8 bits)
+    private final int[] xOrigins;   // abscisse du coin supérieur gauche de chaque patch
+    private final int[] yOrigins;   // ordonnée du coin supérieur gauche de chaque patch
+
+    /**
+     * Alloue une matrice vide de pixels 8 bits pour les patchs dont les origines sont données.
+     * @param side taille du côté des patchs
+     * @param xOrigins abscisses des coins supérieurs gauches
+     * @param yOrigins ordonnées des coins supérieurs gauches
+     */
+    public PatchMatrix(int side, int[] xOrigins, int[] yOrigins) {
+        this(side, xOrigins, yOrigins, false);
+    }
+
+    /**
+     * Alloue une matrice vide pour les patchs dont les origines sont données.
+     * @param side taille du côté des patchs
+     * @param xOrigins abscisses des coins supérieurs gauches
+     * @param yOrigins ordonnées des coins supérieurs gauches
+     * @param wide true pour des pixels 16 bits, false pour des pixels 8 bits
+     */
+    public PatchMatrix(int side, int[] xOrigins, int[] yOrigins, boolean wide) {
+        if (xOrigins.length != yOrigins.length) {
+            throw new IllegalArgumentException("Il faut autant d'abscisses que d'ordonnées");
+        }
+        this.side = side;
+        this.dimension = side * side;
+        this.xOrigins = xOrigins;
+        this.yOrigins = yOrigins;
+        int size = Math.multiplyExact(dimension, xOrigins.length);
+        this.bytes = wide ? null : new byte[size];
+        this.shorts = wide ? new short[size] : null;
+    }
+
+    /**
+     * @return taille du côté des patchs
+     */
+    public int getSide() { return side; }
+
+    /**
+     * @return nombre de pixels d'un patch (s²)
+     */
+    public int getDimension() { return dimension; }
+
+    /**
+     * @return nombre de patchs (M)
+     */
+    public int getCount() { return xOrigins.length; }
+
+    /**
+     * @return true si les pixels sont stockés sur 16 bits, false sur 8 bits
+     */
+    public boolean isWide() { return shorts != null; }
+
+    /**
+     * @return les pixels 8 bits, un patch après l'autre (partagé, pas de copie), ou null si la matrice est en 16 bits
+     */
+    public byte[] getBytes() { return bytes; }
+
+    /**
+     * @return les pixels 16 bits, un patch après l'autre (partagé, pas de copie), ou null si la matrice est en 8 bits
+     */
+    public short[] getShorts() { return shorts; }
+
+    /**
+     * @param j indice du patch
+     * @return abscisse du coin supérieur gauche du patch dans l'image
+     */
+    public int getXOrigin(int j) { return xOrigins[j]; }
+
+    /**
+     * @param j indice du patch
+     * @return ordonnée du coin supérieur gauche du patch dans l'image
+     */
+    public int getYOrigin(int j) { return yOrigins[j]; }
+
+    /**
+     * @param i indice du pixel dans le patch vectorisé (de 0 à s²-1)
+     * @param j indice du patch
+     * @return valeur du pixel
+     */
+    public int get(int i, int j) { return sample(j * dimension + i); }
+
+    /**
+     * @param i indice du pixel dans le patch vectorisé (de 0 à s²-1)
+     * @param j indice du patch
+     * @param value nouvelle valeur du pixel (tronquée à 8 ou 16 bits)
+     */
+    public void set(int i, int j, int value) {
+        int k = j * dimension + i;
+        if (shorts != null) {
+            shorts[k] = (short) value;
+        } else {
+            bytes[k] = (byte) value;
+        }
+    }
+
+    /**
+     * Valeur non signée d'une case du bloc de pixels.
+     */
+    private int sample(int k) {
+        return shorts != null ? shorts[k] & 0xFFFF : bytes[k] & 0xFF;
+    }
+
+    /**
+     * Copie les pixels d'un patch dans un tableau d'entiers.
+     * @param j indice du patch
+     * @param out tableau de destination (au moins s² cases)
+     * @return {@code out}
+     */
+    public int[] column(int j, int[] out) {
+        for (int i = 0, k = j * dimension; i < dimension; i++, k++) {
+            out[i] = sample(k);
+        }
+        return out;
+    }
+
+    /**
+     * Copie les pixels d'un patch dans un tableau de doubles.
+     * @param j indice du patch
+     * @param out tableau de destination (au moins s² cases)
+     * @return {@code out}
+     */
+    public double[] column(int j, double[] out) {
+        for (int i = 0, k = j * dimension; i < dimension; i++, k++) {
+            out[i] = sample(k);
+        }
+        return out;
+    }
+
+    /**
+     * Ajoute les pixels de tous les patchs, chacun éventuellement pondéré, à une somme par pixel.
+     * @param weights nombre de répétitions de chaque patch (null pour un poids 1)
+     * @param sum somme des patchs (taille s²), mise à jour
+     */
+    public void accumulate(int[] weights, double[] sum) {
+        int count = getCount();
+        for (int j = 0, k = 0; j < count; j++) {
+            int w = weights == null ? 1 : weights[j];
+            for (int i = 0; i < dimension; i++, k++) {
+                sum[i] += (double) w * sample(k);
+            }
+        }
+    }
+
+    /**
+     * Centre tous les patchs en bloc et les écrit transposés, une ligne contiguë par pixel :
+     * {@code out[i][j] = pixel i du patch j - mean[i]}. Le tableau est fourni par l'appelant,
+     * ce qui permet de réutiliser le même tampon d'une bande de patchs à la suivante.
+     * @param mean vecteur moyen à retrancher (taille s²), ou null pour une simple transposition
+     * @param out matrice de destination (s² lignes d'au moins M cases)
+     * @return {@code out}
+     */
+    public double[][] center(double[] mean, double[][] out) {
+        int count = getCount();
+        if (out.length < dimension || (dimension > 0 && out[0].length < count)) {
+            throw new IllegalArgumentException("Tampon de centrage trop petit");
+        }
+        if (bytes != null) {
+            for (int j = 0, k = 0; j < count; j++) {
+                for (int i = 0; i < dimension; i++, k++) {
+                    out[i][j] = (bytes[k] & 0xFF) - (mean == null ? 0 : mean[i]);
+                }
+            }
+        } else {
+            for (int j = 0, k = 0; j < count; j++) {
+                for (int i = 0; i < dimension; i++, k++) {
+                    out[i][j] = (shorts[k] & 0xFFFF) - (mean == null ? 0 : mean[i]);
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Compare deux patchs pixel à pixel.
+     * @param a indice du premier patch
+     * @param b indice du second patch
+     * @return true si les deux patchs ont exactement les mêmes pixels
+     */
+    public boolean sameColumns(int a, int b) {
+        int from = a * dimension;
+        int other = b * dimension;
+        return bytes != null ? Arrays.equals(bytes, from, from + dimension, bytes, other, other + dimension)
+                             : Arrays.equals(shorts, from, from + dimension, shorts, other, other + dimension);
+    }
+
+    /**
+     * Extrait une sous-matrice composée de certains patchs.
+     * @param columns indices des patchs à conserver, dans l'ordre voulu
+     * @return nouvelle matrice contenant une copie des patchs choisis
+     */
+    public PatchMatrix select(int[] columns) {
+        int[] xs = new int[columns.length];
+        int[] ys = new int[columns.length];
+        for (int k = 0; k < columns.length; k++) {
+            xs[k] = xOrigins[columns[k]];
+            ys[k] = yOrigins[columns[k]];
+        }
+        PatchMatrix subset = new PatchMatrix(side, xs, ys, isWide());
+        for (int k = 0; k < columns.length; k++) {
+            if (bytes != null) {
+                System.arraycopy(bytes, columns[k] * dimension, subset.bytes, k * dimension, dimension);
+            } else {
+                System.arraycopy(shorts, columns[k] * dimension, subset.shorts, k * dimension, dimension);
+            }
+        }
+        return subset;
+    }
+}
@@ -0,0 +1,100 @@
+package core.patch;
+
+/**
+ * Patch sans copie de pixels : une simple vue sur un tableau d'octets existant (tampon de patchs débruités,
+ * par exemple). Seuls l'origine, la taille du côté, le pas entre deux lignes et la référence au tableau
+ * sont conservés, soit quelques octets par patch au lieu de 4 x s².
+ *
+ * La vue se lit comme tout {@link ReadablePatch} : {@link #getPixel(int, int)} accède directement au tableau,
+ * {@link #getPixels()} renvoie une copie. Elle est immuable ; ce n'est pas un {@link Patch}, dont les pixels
+ * et la position peuvent être remplacés.
+ *
+ * @version 1.1
+ * @see ReadablePatch
+ * @see PatchAggregator
+ */
+public final class PatchView implements ReadablePatch {
+    private final byte[] data;      // tableau partagé contenant les pixels
+    private final int offset;       // indice du pixel (0, 0) du patch dans le tableau
+    private final int stride;       // écart entre deux lignes du patch dans le tableau
+    private final int xOrigin;      // abscisse du coin gauche supérieur du patch dans l'image d'origine
+    private final int yOrigin;      // ordonnée du coin gauche supérieur du patch dans l'image d'origine
+    private final int side;         // taille du coté du patch
+
+    /**
+     * Constructeur de la classe PatchView
+     * @param data tableau d'octets contenant les pixels (non copié)
+     * @param offset indice du pixel supérieur gauche du patch dans {@code data}
+     * @param stride écart, dans {@code data}, entre deux lignes consécutives du patch
+     * @param xOrigin abscisse dans l'image d'origine
+     * @param yOrigin ordonnée dans l'image d'origine
+     * @param side coté des patchs en pixels
+     */
+    public PatchView(byte[] data, int offset, int stride, int xOrigin, int yOrigin, int side) {
+        this.data = data;
+        this.offset = offset;
+        this.stride = stride;
+        this.xOrigin = xOrigin;
+        this.yOrigin = yOrigin;
+        this.side = side;
+    }
+
+    @Override
+    public int getSide() { return side; }
+
+    @Override
+    public int getXOrigin() { return xOrigin; }
+
+    @Override
+    public int getYOrigin() { return yOrigin; }
+
+    /**
+     * Retourne une copie des pixels du patch
+     * @return Un nouveau tableau contenant les valeurs de gris (taille side²)
+     */
+    @Override
+    public int[] getPixels() {
+        int[] pixels = new int[side * side];
+        for (int y = 0; y < side; y++) {
+            int in = offset + y * stride;
+            for (int x = 0; x < side; x++) {
+                pixels[y * side + x] = data[in + x] & 0xFF;
+            }
+        }
+        return pixels;
+    }
+
+    /**
+     * Retourne la valeur de gris d'un pixel particulier du patch, lue directement dans le tableau partagé
+     * @param x Colonne index dans le patch (de 0 à s-1)
+     * @param y Ligne index dans le patch (de 0 à s-1)
+     * @return Valeur Gris (0–255)
+     */
+    @Override
+    public int getPixel(int x, int y) {
+        return data[offset + y * stride + x] & 0xFF;
+    }
+
+    /**
+     * @return le tableau partagé contenant les pixels
+     */
+    byte[] getData() { return data; }
+
+    /**
+     * @return l'indice du pixel (0, 0) du patch dans le tableau partagé
+     */
+    int getOffset() { return offset; }
+
+    /**
+     * @return l'écart entre deux lignes du patch dans le tableau partagé
+     */
+    int getStride() { return stride; }
+
+    /**
+     * Procédé utile pour décrire un patch.
+     */
+    @Override
+    public String toString() {
+        return "PatchView (" + xOrigin + ", " + yOrigin + ") size " + side + "x" + side;
+    }
+}
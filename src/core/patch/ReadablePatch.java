@@ -0,0 +1,50 @@
+package core.patch;
+
+/**
+ * Patch carré vu en lecture seule : taille du côté, position dans l'image d'origine et valeurs de gris.
+ * C'est tout ce dont ont besoin les traitements qui consomment des patchs sans les modifier, comme
+ * l'agrégation des patchs débruités ({@link PatchAggregator}).
+ *
+ * {@link Patch} possède ses pixels et peut être modifié ; {@link PatchView} lit les siens dans un tableau
+ * partagé, sans copie, et ne peut pas l'être.
+ *
+ * @version 1.0
+ * @see Patch
+ * @see PatchView
+ */
+public interface ReadablePatch {
+
+    /**
+     * @return taille du coté du patch en pixels
+     */
+    int getSide();
+
+    /**
+     * @return nombre de pixels du patch (side²)
+     */
+    default int getSize() {
+        return getSide() * getSide();
+    }
+
+    /**
+     * @return abscisse du coin supérieur gauche du patch dans l'image d'origine
+     */
+    int getXOrigin();
+
+    /**
+     * @return ordonnée du coin supérieur gauche du patch dans l'image d'origine
+     */
+    int getYOrigin();
+
+    /**
+     * @param x Colonne index dans le patch (de 0 à s-1)
+     * @param y Ligne index dans le patch (de 0 à s-1)
+     * @return Valeur Gris (0–255)
+     */
+    int getPixel(int x, int y);
+
+    /**
+     * @return valeurs de gris du patch ligne par ligne (taille side²), à ne pas modifier
+     */
+    int[] getPixels();
+}
@@ -0,0 +1,119 @@
+package core.patch;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import core.image.PngStreamWriter;
+
+/**
+ * Accumulateur de patchs débruités limité à une fenêtre glissante de lignes de l'image.
+ *
+ * Comme {@link PatchAggregator}, chaque pixel reçoit la moyenne pondérée des patchs qui le couvrent, avec le même
+ * ordre d'accumulation et le même arrondi ; mais seules les lignes qui peuvent encore recevoir des patchs sont gardées.
+ * Les patchs doivent être ajoutés par ordonnée croissante de bande : dès que l'appelant sait qu'aucun patch
+ * ne touchera plus les lignes situées avant une ordonnée donnée, {@link #flush} les normalise, les écrit
+ * et les retire de la fenêtre. La mémoire dépend alors de la hauteur des bandes de patchs, pas de celle de l'image.
+ *
+ * @version 1.0
+ * @see PatchAggregator
+ * @see PngStreamWriter
+ */
+public class StripAggregator {
+    private final int width;        // largeur de l'image reconstruite
+    private final int height;       // hauteur de l'image reconstruite
+    private final AggregationWindow window;     // pondération des pixels d'un patch
+    private float[] sum;            // somme des contributions des lignes de la fenêtre
+    private float[] weight;         // somme des poids des contributions des lignes de la fenêtre
+    private int firstRow;           // ordonnée, dans l'image, de la première ligne de la fenêtre
+    private int rows;               // nombre de lignes allouées dans la fenêtre
+
+    /**
+     * @param width largeur de l'image reconstruite
+     * @param height hauteur de l'image reconstruite
+     * @param window fenêtre de pondération des pixels des patchs
+     */
+    public StripAggregator(int width, int height, AggregationWindow window) {
+        this.width = width;
+        this.height = height;
+        this.window = window;
+        this.sum = new float[0];
+        this.weight = new float[0];
+    }
+
+    /**
+     * @return ordonnée de la première ligne non encore écrite
+     */
+    public int getFirstRow() { return firstRow; }
+
+    /**
+     * Ajoute un patch stocké dans une colonne d'une matrice (s² x M).
+     * @param V matrice des patchs, un patch par colonne
+     * @param column indice du patch dans la matrice
+     * @param side taille du côté des patchs
+     * @param xOrigin abscisse du coin supérieur gauche du patch dans l'image
+     * @param yOrigin ordonnée du coin supérieur gauche du patch dans l'image
+     * @throws IllegalArgumentException si le patch touche des lignes déjà écrites
+     */
+    public void add(double[][] V, int column, int side, int xOrigin, int yOrigin) {
+        if (yOrigin < firstRow) {
+            throw new IllegalArgumentException("Le patch touche des lignes déjà écrites (ligne " + yOrigin + ")");
+        }
+        int xTo = Math.min(side, width - xOrigin);
+        int yTo = Math.min(side, height - yOrigin);
+        ensureRows(yOrigin + yTo - firstRow);
+        float[] table = window.table(side);
+        for (int y = 0; y < yTo; y++) {
+            int out = (yOrigin - firstRow + y) * width + xOrigin;
+            int in = y * side;
+            for (int x = 0; x < xTo; x++, out++, in++) {
+                sum[out] += table[in] * (float) V[in][column];
+                weight[out] += table[in];
+            }
+        }
+    }
+
+    /**
+     * Normalise et écrit les lignes terminées, puis les retire de la fenêtre. Les pixels qu'aucun patch
+     * ne couvre sont noirs, comme dans {@link PatchAggregator#toImage()}.
+     * @param untilRow ordonnée de la première ligne qui peut encore recevoir des patchs (exclue)
+     * @param out destination des lignes
+     * @throws IOException si l'écriture échoue
+     */
+    public void flush(int untilRow, PngStreamWriter out) throws IOException {
+        int count = Math.min(untilRow, height) - firstRow;
+        if (count <= 0) {
+            return;
+        }
+        ensureRows(count);
+        byte[] row = new byte[width];
+        for (int y = 0; y < count; y++) {
+            for (int x = 0, k = y * width; x < width; x++, k++) {
+                if (weight[k] > 0) {
+                    int grey = Math.round(sum[k] / weight[k]);
+                    row[x] = (byte) Math.min(255, Math.max(0, grey));
+                } else {
+                    row[x] = 0;
+                }
+            }
+            out.writeRow(row);
+        }
+        // Les lignes restantes remontent en tête de la fenêtre
+        int kept = (rows - count) * width;
+        System.arraycopy(sum, count * width, sum, 0, kept);
+        System.arraycopy(weight, count * width, weight, 0, kept);
+        Arrays.fill(sum, kept, sum.length, 0f);
+        Arrays.fill(weight, kept, weight.length, 0f);
+        firstRow += count;
+    }
+
+    /**
+     * Agrandit la fenêtre pour qu'elle contienne au moins {@code needed} lignes.
+     */
+    private void ensureRows(int needed) {
+        if (needed > rows) {
+            sum = Arrays.copyOf(sum, needed * width);
+            weight = Arrays.copyOf(weight, needed * width);
+            rows = needed;
+        }
+    }
+}
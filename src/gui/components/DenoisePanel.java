@@ -66,7 +66,7 @@ public class DenoisePanel extends VBox {
 
         Label shrinkMethodLabel = new Label("Méthode de réduction");
         shrinkMethodCombo = new ComboBox<>(
-                FXCollections.observableArrayList("VisuShrink", "Bayes"));
+                FXCollections.observableArrayList("VisuShrink", "Bayes", "Wiener"));
         shrinkMethodCombo.setValue("VisuShrink");
         shrinkMethodCombo.setMaxWidth(Double.MAX_VALUE);
 
@@ -138,7 +138,11 @@ public class DenoisePanel extends VBox {
             String type = denoiseTypeCombo.getValue();
             boolean isGlobal = type.equalsIgnoreCase("Global");
             String threshold = thresholdTypeCombo.getValue().toLowerCase();
-            String shrink = shrinkMethodCombo.getValue().equals("VisuShrink") ? "v" : "b";
+            String shrink = switch (shrinkMethodCombo.getValue()) {
+                case "VisuShrink" -> "v";
+                case "Wiener" -> "w";
+                default -> "b";
+            };
             double sigma = sigmaSlider.getValue();
             double patchPercent = patchSizeSlider.getValue() / 100.0;
 